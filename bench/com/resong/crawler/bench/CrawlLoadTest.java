@@ -0,0 +1,340 @@
+package com.resong.crawler.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.resong.crawler.resources.BestFirstCrawler;
+import com.resong.crawler.resources.BreadthCrawler;
+import com.resong.crawler.resources.CrawlResult;
+import com.resong.crawler.resources.CrawlResultSink;
+import com.resong.crawler.resources.Crawler;
+import com.resong.crawler.resources.DepthCrawler;
+import com.resong.crawler.resources.MeasuringFetcher;
+import com.resong.crawler.resources.ParallelBreadthCrawler;
+import com.resong.crawler.resources.ParallelDepthCrawler;
+import com.resong.crawler.resources.VirtualThreadCrawler;
+
+/**
+ * Measures whole crawls against a SyntheticWebServer on this machine, so
+ * the numbers don't depend on the internet. Each crawler is run from the
+ * same seed page until it has crawled the same number of pages, and the
+ * crawlers that download several pages at once are run once for each
+ * number of workers, giving a scaling curve. For every run it prints the
+ * pages crawled each second, the median and 99th percentile download
+ * latency, and the most heap used and pages waiting in the frontier at
+ * any time.
+ *
+ * Usage: CrawlLoadTest [options]
+ *
+ *   --pages N          pages in the graph (default 100000)
+ *   --hosts N          hosts the pages are spread over (default 16)
+ *   --degree MIN,MAX   fewest and most links on a page (default 2,100)
+ *   --exponent X       exponent of the power law of links (default 2.1)
+ *   --locality X       share of links to the same host (default 0.67)
+ *   --chars N          mean characters of text on a page (default 2048)
+ *   --density X        share of pages containing the keyword (default 0.01)
+ *   --latency MS       mean latency of the hosts (default 10)
+ *   --jitter MS        most jitter added to each request (default 10)
+ *   --seed N           seed of the graph (default 42)
+ *   --crawlers LIST    any of bfs, dfs, best, pbfs, pdfs and virtual
+ *                      (default bfs,dfs,pbfs,pdfs,virtual)
+ *   --workers LIST     numbers of workers for pbfs, pdfs and virtual
+ *                      (default 1,2,4,8,16,32)
+ *   --max-pages N      pages crawled in each run (default 2000)
+ *   --depth N          maximum page depth (default 8)
+ *   --links N          maximum number of links followed (default 100000)
+ *   --warmup N         pages crawled before measuring (default 500)
+ */
+public class CrawlLoadTest {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The time between two samples of the heap and frontier, in milliseconds
+    private static final long SAMPLE_MILLIS = 5;
+
+    // The crawlers that download several pages at once
+    private static final List<String> PARALLEL_CRAWLERS = List.of("pbfs", "pdfs", "virtual");
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The settings of the graph
+    private int pages = 100000;
+    private int hosts = 16;
+    private int minDegree = 2;
+    private int maxDegree = 100;
+    private double exponent = 2.1;
+    private double locality = 2 / 3.0;
+    private int chars = 2048;
+    private double density = 0.01;
+    private double latency = 10;
+    private double jitter = 10;
+    private long seed = 42;
+
+    // The settings of the crawls
+    private List<String> crawlers = List.of("bfs", "dfs", "pbfs", "pdfs", "virtual");
+    private List<Integer> workers = List.of(1, 2, 4, 8, 16, 32);
+    private int maxPages = 2000;
+    private int depth = 8;
+    private int links = 100000;
+    private int warmup = 500;
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Runs the load test
+     * @param args The options
+     * @throws Exception If the server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+
+        CrawlLoadTest test = new CrawlLoadTest();
+        try {
+            test.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: CrawlLoadTest [--pages N] [--hosts N] [--degree MIN,MAX] [--exponent X]"
+                    + " [--locality X] [--chars N] [--density X] [--latency MS] [--jitter MS] [--seed N]"
+                    + " [--crawlers LIST] [--workers LIST] [--max-pages N] [--depth N] [--links N] [--warmup N]");
+            System.exit(2);
+        }
+        test.run();
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Reads the options
+     * @param args The options
+     * @throws IllegalArgumentException If an option is not valid
+     */
+    private void parse(String[] args) {
+
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("No value for " + args[i]);
+            }
+            String value = args[++i];
+            try {
+                switch (args[i - 1]) {
+                    case "--pages": this.pages = Integer.parseInt(value); break;
+                    case "--hosts": this.hosts = Integer.parseInt(value); break;
+                    case "--degree":
+                        String[] range = value.split(",");
+                        this.minDegree = Integer.parseInt(range[0].trim());
+                        this.maxDegree = Integer.parseInt(range[range.length - 1].trim());
+                        break;
+                    case "--exponent": this.exponent = Double.parseDouble(value); break;
+                    case "--locality": this.locality = Double.parseDouble(value); break;
+                    case "--chars": this.chars = Integer.parseInt(value); break;
+                    case "--density": this.density = Double.parseDouble(value); break;
+                    case "--latency": this.latency = Double.parseDouble(value); break;
+                    case "--jitter": this.jitter = Double.parseDouble(value); break;
+                    case "--seed": this.seed = Long.parseLong(value); break;
+                    case "--crawlers": this.crawlers = List.of(value.split(",")); break;
+                    case "--workers":
+                        List<Integer> counts = new ArrayList<Integer>();
+                        for (String count : value.split(",")) {
+                            counts.add(Integer.parseInt(count.trim()));
+                        }
+                        this.workers = counts;
+                        break;
+                    case "--max-pages": this.maxPages = Integer.parseInt(value); break;
+                    case "--depth": this.depth = Integer.parseInt(value); break;
+                    case "--links": this.links = Integer.parseInt(value); break;
+                    case "--warmup": this.warmup = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+                }
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Bad value for " + args[i - 1] + ": " + value);
+            }
+        }
+
+        for (String crawler : this.crawlers) {
+            if (!List.of("bfs", "dfs", "best", "pbfs", "pdfs", "virtual").contains(crawler)) {
+                throw new IllegalArgumentException("Unknown crawler " + crawler);
+            }
+        }
+    }
+
+    /**
+     * Serves the graph and runs every crawl against it
+     * @throws Exception If the server cannot be started
+     */
+    private void run() throws Exception {
+
+        SyntheticWebGraph graph = new SyntheticWebGraph(this.pages, this.hosts, this.seed);
+        graph.setOutDegree(this.minDegree, this.maxDegree, this.exponent);
+        graph.setLocality(this.locality);
+        graph.setPageChars(this.chars);
+        graph.setKeyword("needle", this.density);
+        graph.setLatency(this.latency, this.jitter);
+
+        SyntheticWebServer server = new SyntheticWebServer(graph);
+        server.start();
+
+        try {
+            System.out.printf("# %d pages on %d hosts, %d-%d links (exponent %.2f, %.0f%% local), %d chars,"
+                    + " %.1f%% matching, latency %.1f ms + %.1f ms jitter, seed %d%n",
+                    this.pages, this.hosts, this.minDegree, this.maxDegree, this.exponent, this.locality * 100,
+                    this.chars, this.density * 100, this.latency, this.jitter, this.seed);
+
+            // Warm up the JIT and the connections so the first run isn't
+            // measured cold
+            if (this.warmup > 0) {
+                this.crawl(graph, this.crawlers.get(0), this.workers.get(this.workers.size() - 1), this.warmup);
+            }
+
+            System.out.printf("%-8s %7s %7s %7s %6s %8s %9s %8s %8s %9s %9s%n", "crawler", "workers", "pages",
+                    "matches", "failed", "seconds", "pages/s", "p50 ms", "p99 ms", "heap MB", "frontier");
+
+            for (String crawler : this.crawlers) {
+                List<Integer> counts = PARALLEL_CRAWLERS.contains(crawler) ? this.workers : List.of(1);
+                for (int count : counts) {
+                    Run run = this.crawl(graph, crawler, count, this.maxPages);
+                    System.out.printf("%-8s %7d %7d %7d %6d %8.2f %9.1f %8.1f %8.1f %9.1f %9d%n",
+                            crawler, count, run.pages.get(), run.matches.get(), run.failures.get(), run.seconds,
+                            run.pages.get() / run.seconds, run.p50, run.p99, run.peakHeap / 1048576.0, run.peakFrontier);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Crawls the graph from its first page until the given number of pages
+     * have been crawled or none are left
+     * @param graph The graph, being served
+     * @param name The name of the crawler
+     * @param workers The number of workers, for the parallel crawlers
+     * @param limit The number of pages to crawl
+     * @return The measurements of the crawl
+     */
+    private Run crawl(SyntheticWebGraph graph, String name, int workers, int limit) {
+
+        final Run run = new Run();
+        final Crawler[] crawler = new Crawler[1];
+
+        // Count the results, stopping the crawl once there are enough
+        CrawlResultSink sink = new CrawlResultSink() {
+            public boolean add(CrawlResult result) {
+                if (result.isMatch()) {
+                    run.matches.incrementAndGet();
+                }
+                if (!result.getErrorMessage().isEmpty()) {
+                    run.failures.incrementAndGet();
+                }
+                if (run.pages.incrementAndGet() >= limit) {
+                    crawler[0].stop();
+                }
+                return true;
+            }
+        };
+
+        crawler[0] = newCrawler(name, graph.getKeyword(), sink, workers);
+        crawler[0].setMaxDepth(this.depth);
+        crawler[0].setMaxLinks(this.links);
+        crawler[0].setPrintProgress(false);
+        crawler[0].setRetainText(false);
+        MeasuringFetcher fetcher = new MeasuringFetcher(crawler[0].getFetcher());
+        crawler[0].setFetcher(fetcher);
+
+        // Sample the heap and the frontier while the crawl runs
+        System.gc();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "load-test-sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        sampler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                run.peakHeap = Math.max(run.peakHeap, memory.getHeapMemoryUsage().getUsed());
+                run.peakFrontier = Math.max(run.peakFrontier, crawler[0].getFrontierSize());
+            }
+        }, 0, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        crawler[0].search(graph.address(0));
+        run.seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+
+        sampler.shutdown();
+        try {
+            sampler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        long[] latencies = fetcher.getLatencies();
+        run.p50 = MeasuringFetcher.percentile(latencies, 50);
+        run.p99 = MeasuringFetcher.percentile(latencies, 99);
+        return run;
+    }
+
+    /**
+     * Returns a new crawler
+     * @param name The name of the crawler
+     * @param keyword The keyword to search for
+     * @param sink Where the crawler puts its results
+     * @param workers The number of workers, for the parallel crawlers
+     * @return The crawler
+     */
+    static Crawler newCrawler(String name, String keyword, CrawlResultSink sink, int workers) {
+
+        switch (name) {
+            case "bfs":
+                return new BreadthCrawler(keyword, sink);
+            case "dfs":
+                return new DepthCrawler(keyword, sink);
+            case "best":
+                return new BestFirstCrawler(keyword, sink);
+            case "pbfs":
+                return new ParallelBreadthCrawler(keyword, sink, workers);
+            case "pdfs":
+                return new ParallelDepthCrawler(keyword, sink, workers);
+            case "virtual":
+                return new VirtualThreadCrawler(keyword, sink, workers);
+            default:
+                throw new IllegalArgumentException("Unknown crawler " + name);
+        }
+    }
+
+    /**
+     * The measurements of one crawl
+     */
+    private static class Run {
+
+        // The number of pages crawled, matched and failed
+        final AtomicLong pages = new AtomicLong();
+        final AtomicLong matches = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+
+        // How long the crawl took, in seconds
+        double seconds;
+
+        // The median and 99th percentile download latency, in milliseconds
+        double p50;
+        double p99;
+
+        // The most heap used and pages waiting at any sample
+        volatile long peakHeap;
+        volatile long peakFrontier;
+    }
+}
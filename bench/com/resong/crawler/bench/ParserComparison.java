@@ -0,0 +1,204 @@
+package com.resong.crawler.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.resong.crawler.resources.HtmlTokenizer;
+import com.resong.crawler.resources.Page;
+import com.resong.crawler.resources.WebHelper;
+
+/**
+ * Compares the throughput of the Swing HTML parser used through PageParser
+ * with that of the HtmlTokenizer, on a directory of stored HTML pages. Each
+ * parser parses every page of the corpus repeatedly, after a warm-up, and
+ * the pages are checked to hold the same links and, white space aside, the
+ * same text either way.
+ *
+ * Usage: ParserComparison corpus-directory [iterations] [charset]
+ */
+public class ParserComparison {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The number of times the corpus is parsed by default
+    private static final int DEFAULT_ITERATIONS = 20;
+
+    // The number of times the corpus is parsed before timing starts
+    private static final int WARMUP_ITERATIONS = 5;
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Runs the comparison
+     * @param args The corpus directory, and optionally the number of
+     *             iterations and the character set of the pages
+     * @throws Exception If the corpus cannot be read or a page cannot be
+     *                   parsed
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1) {
+            System.err.println("Usage: ParserComparison corpus-directory [iterations] [charset]");
+            System.exit(1);
+        }
+
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        Charset charset = (args.length > 2) ? Charset.forName(args[2]) : StandardCharsets.UTF_8;
+
+        List<byte[]> corpus = load(Paths.get(args[0]));
+        long bytes = 0;
+        for (byte[] document : corpus) {
+            bytes += document.length;
+        }
+        System.out.printf("%d pages, %.1f MB%n", corpus.size(), bytes / 1e6);
+
+        // Check that both parsers agree before timing them
+        int linkDifferences = 0;
+        int textDifferences = 0;
+        for (byte[] document : corpus) {
+            Page swing = new Page("corpus");
+            Page tokenized = new Page("corpus");
+            parseWithSwing(swing, document, charset);
+            parseWithTokenizer(tokenized, document, charset);
+
+            if (!links(swing).equals(links(tokenized))) {
+                linkDifferences++;
+            }
+            if (!withoutSpace(swing.getText()).equals(withoutSpace(tokenized.getText()))) {
+                textDifferences++;
+            }
+        }
+        System.out.printf("pages with different links: %d, different text: %d%n",
+                linkDifferences, textDifferences);
+
+        double swingSeconds = time(corpus, charset, iterations, false);
+        double tokenizerSeconds = time(corpus, charset, iterations, true);
+
+        report("Swing parser", bytes * iterations, corpus.size() * iterations, swingSeconds);
+        report("HtmlTokenizer", bytes * iterations, corpus.size() * iterations, tokenizerSeconds);
+        System.out.printf("speed-up: %.1fx%n", swingSeconds / tokenizerSeconds);
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Reads every .html and .htm file under a directory
+     * @param directory The directory holding the corpus
+     * @return The contents of each file
+     * @throws IOException If a file cannot be read
+     */
+    private static List<byte[]> load(Path directory) throws IOException {
+
+        List<byte[]> corpus = new ArrayList<byte[]>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Iterator<Path> it = paths.iterator(); it.hasNext();) {
+                Path path = it.next();
+                String name = path.getFileName().toString().toLowerCase();
+                if (Files.isRegularFile(path) && (name.endsWith(".html") || name.endsWith(".htm"))) {
+                    corpus.add(Files.readAllBytes(path));
+                }
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Parses the whole corpus repeatedly with one of the parsers
+     * @param corpus The pages to parse
+     * @param charset The character set of the pages
+     * @param iterations The number of times to parse the corpus
+     * @param tokenizer Whether to use the HtmlTokenizer rather than Swing
+     * @return The number of seconds taken, not counting the warm-up
+     * @throws IOException If a page cannot be parsed
+     */
+    private static double time(List<byte[]> corpus, Charset charset, int iterations, boolean tokenizer)
+            throws IOException {
+
+        long start = 0;
+        for (int i = -WARMUP_ITERATIONS; i < iterations; i++) {
+            if (i == 0) {
+                start = System.nanoTime();
+            }
+            for (byte[] document : corpus) {
+                Page page = new Page("corpus");
+                if (tokenizer) {
+                    parseWithTokenizer(page, document, charset);
+                } else {
+                    parseWithSwing(page, document, charset);
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Parses a page with the Swing HTML parser
+     * @param page The Page to populate
+     * @param document The HTML of the page
+     * @param charset The character set of the page
+     * @throws IOException If the page cannot be parsed
+     */
+    private static void parseWithSwing(Page page, byte[] document, Charset charset) throws IOException {
+        WebHelper.parsePage(page, new InputStreamReader(new ByteArrayInputStream(document), charset));
+    }
+
+    /**
+     * Parses a page with the HtmlTokenizer of the current thread
+     * @param page The Page to populate
+     * @param document The HTML of the page
+     * @param charset The character set of the page
+     */
+    private static void parseWithTokenizer(Page page, byte[] document, Charset charset) {
+        HtmlTokenizer.forCurrentThread().parse(page, document, 0, document.length, charset);
+    }
+
+    /**
+     * Prints the throughput of one parser
+     * @param name The name of the parser
+     * @param bytes The number of bytes parsed
+     * @param pages The number of pages parsed
+     * @param seconds The number of seconds taken
+     */
+    private static void report(String name, long bytes, long pages, double seconds) {
+        System.out.printf("%-14s %8.1f MB/s %10.0f pages/s%n", name, bytes / 1e6 / seconds, pages / seconds);
+    }
+
+    /**
+     * Returns the addresses of the links on a page, in order
+     * @param page The parsed page
+     * @return The addresses of its links
+     */
+    private static List<String> links(Page page) {
+
+        List<String> result = new ArrayList<String>();
+        for (Iterator<Page> it = page.linkedPageIterator(); it.hasNext();) {
+            result.add(it.next().getAddress());
+        }
+        return result;
+    }
+
+    /**
+     * Removes all white space from text
+     * @param text The text
+     * @return The text without white space
+     */
+    private static String withoutSpace(String text) {
+        return text.replaceAll("\\s+", "");
+    }
+}
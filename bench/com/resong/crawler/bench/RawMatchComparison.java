@@ -0,0 +1,191 @@
+package com.resong.crawler.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.resong.crawler.resources.ByteKeywordSearch;
+import com.resong.crawler.resources.HtmlTokenizer;
+import com.resong.crawler.resources.KeywordAutomaton;
+import com.resong.crawler.resources.Page;
+
+/**
+ * Compares three ways of checking large pages for a single keyword: parsing
+ * the page, keeping its text and calling Page.containsText; matching the
+ * decoded text while the page is parsed; and searching the raw bytes with
+ * ByteKeywordSearch while the page is parsed. The pages are built by joining
+ * the HTML files of a corpus directory until each is at least the requested
+ * size, and each way of matching is timed over all of them after a warm-up.
+ *
+ * Usage: RawMatchComparison corpus-directory keyword [page-megabytes] [iterations]
+ */
+public class RawMatchComparison {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The size of each page by default, in megabytes
+    private static final int DEFAULT_PAGE_MEGABYTES = 4;
+
+    // The number of times the pages are matched by default
+    private static final int DEFAULT_ITERATIONS = 10;
+
+    // The number of times the pages are matched before timing starts
+    private static final int WARMUP_ITERATIONS = 3;
+
+    // The character set of the pages
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Runs the comparison
+     * @param args The corpus directory, the keyword, and optionally the size
+     *             of each page in megabytes and the number of iterations
+     * @throws Exception If the corpus cannot be read
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.err.println("Usage: RawMatchComparison corpus-directory keyword [page-megabytes] [iterations]");
+            System.exit(1);
+        }
+
+        String keyword = args[1];
+        int pageBytes = ((args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PAGE_MEGABYTES) << 20;
+        int iterations = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_ITERATIONS;
+
+        if (ByteKeywordSearch.of(keyword, CHARSET) == null) {
+            System.err.println("The keyword cannot be searched for in raw bytes");
+            System.exit(1);
+        }
+
+        List<byte[]> pages = largePages(Paths.get(args[0]), pageBytes);
+        long bytes = 0;
+        for (byte[] document : pages) {
+            bytes += document.length;
+        }
+        System.out.printf("%d pages, %.1f MB, keyword \"%s\"%n", pages.size(), bytes / 1e6, keyword);
+
+        KeywordAutomaton automaton = KeywordAutomaton.of(keyword);
+
+        // Report how often the ways of matching agree; raw bytes also match
+        // inside markup, so they may find the keyword on more pages
+        int[] found = new int[3];
+        for (byte[] document : pages) {
+            for (int way = 0; way < found.length; way++) {
+                if (match(document, keyword, automaton, way)) {
+                    found[way]++;
+                }
+            }
+        }
+        System.out.printf("pages matched: containsText %d, text while parsing %d, raw bytes %d%n",
+                found[0], found[1], found[2]);
+
+        String[] names = { "containsText", "text matching", "raw bytes" };
+        double[] seconds = new double[names.length];
+        for (int way = 0; way < names.length; way++) {
+            seconds[way] = time(pages, keyword, automaton, way, iterations);
+            double megabytes = bytes * (double) iterations / 1e6;
+            System.out.printf("%-14s %8.1f MB/s%n", names[way], megabytes / seconds[way]);
+        }
+        System.out.printf("raw bytes speed-up over containsText: %.1fx%n", seconds[0] / seconds[2]);
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Joins the .html and .htm files under a directory into pages of at
+     * least the specified size
+     * @param directory The directory holding the corpus
+     * @param pageBytes The smallest size of a page, in bytes
+     * @return The pages
+     * @throws IOException If a file cannot be read
+     */
+    private static List<byte[]> largePages(Path directory, int pageBytes) throws IOException {
+
+        List<byte[]> pages = new ArrayList<byte[]>();
+        ByteArrayOutputStream page = new ByteArrayOutputStream();
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Iterator<Path> it = paths.iterator(); it.hasNext();) {
+                Path path = it.next();
+                String name = path.getFileName().toString().toLowerCase();
+                if (Files.isRegularFile(path) && (name.endsWith(".html") || name.endsWith(".htm"))) {
+                    page.write(Files.readAllBytes(path));
+                    if (page.size() >= pageBytes) {
+                        pages.add(page.toByteArray());
+                        page.reset();
+                    }
+                }
+            }
+        }
+
+        // Keep what is left over only if there is no full page
+        if (pages.isEmpty() && page.size() > 0) {
+            pages.add(page.toByteArray());
+        }
+        return pages;
+    }
+
+    /**
+     * Matches every page repeatedly in one way
+     * @param pages The pages to match
+     * @param keyword The keyword
+     * @param automaton The keyword, compiled
+     * @param way 0 for containsText, 1 for text matching, 2 for raw bytes
+     * @param iterations The number of times to match the pages
+     * @return The number of seconds taken, not counting the warm-up
+     */
+    private static double time(List<byte[]> pages, String keyword, KeywordAutomaton automaton, int way,
+            int iterations) {
+
+        long start = 0;
+        for (int i = -WARMUP_ITERATIONS; i < iterations; i++) {
+            if (i == 0) {
+                start = System.nanoTime();
+            }
+            for (byte[] document : pages) {
+                match(document, keyword, automaton, way);
+            }
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Parses a page and checks it for the keyword in one way
+     * @param document The HTML of the page
+     * @param keyword The keyword
+     * @param automaton The keyword, compiled
+     * @param way 0 for containsText, 1 for text matching, 2 for raw bytes
+     * @return True, if the page contains the keyword; false, otherwise
+     */
+    private static boolean match(byte[] document, String keyword, KeywordAutomaton automaton, int way) {
+
+        Page page = new Page("corpus");
+        if (way > 0) {
+            page.matchWhileParsing(automaton, false, false);
+            page.matchRawBytes(way == 2);
+        }
+
+        HtmlTokenizer.forCurrentThread().parse(page, document, 0, document.length, CHARSET);
+
+        if (way > 0) {
+            return page.getKeywordCounter().anyFound();
+        }
+        return page.containsText(keyword);
+    }
+}
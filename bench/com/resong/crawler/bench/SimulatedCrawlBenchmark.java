@@ -0,0 +1,296 @@
+package com.resong.crawler.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.resong.crawler.resources.CrawlResult;
+import com.resong.crawler.resources.CrawlResultSink;
+import com.resong.crawler.resources.Crawler;
+import com.resong.crawler.structures.set.BloomFilterSet;
+
+/**
+ * Measures how fast the crawlers work through pages when downloading costs
+ * nothing, by crawling a SyntheticWebGraph through a SimulatedFetcher. What
+ * is left is the crawler's own work on each page: keeping links the crawl
+ * will not follow off the page, checking links against the visited set,
+ * and adding and removing pages from the frontier. Each crawler is run a
+ * few times to warm up, then timed over several runs; the crawlers that
+ * crawl on the calling thread also report the bytes allocated per page.
+ * The memory taken by the URL dictionary, and by the Bloom filter if there
+ * is one, at the end of the last run is reported too, so the default set
+ * of ids can be compared with a Bloom filter.
+ *
+ * Usage: SimulatedCrawlBenchmark [options]
+ *
+ *   --pages N          pages in the graph (default 1000000)
+ *   --hosts N          hosts the pages are spread over (default 1000)
+ *   --degree MIN,MAX   fewest and most links on a page (default 2,100)
+ *   --exponent X       exponent of the power law of links (default 2.1)
+ *   --locality X       share of links to the same host (default 0.67)
+ *   --chars N          mean characters of text on a page (default 256)
+ *   --density X        share of pages containing the keyword (default 0.01)
+ *   --seed N           seed of the graph (default 42)
+ *   --crawlers LIST    any of bfs, dfs, best, pbfs, pdfs and virtual
+ *                      (default bfs,dfs,best)
+ *   --workers N        workers for pbfs, pdfs and virtual (default 4)
+ *   --visited SET      ids or bloom: keep visited links as a set of ids or
+ *                      in a Bloom filter with a 1% error rate (default ids)
+ *   --max-pages N      pages crawled in each run (default 200000)
+ *   --depth N          maximum page depth (default 1000)
+ *   --links N          maximum number of links followed (default 10000000)
+ *   --warmup N         runs before timing (default 3)
+ *   --runs N           timed runs (default 5)
+ */
+public class SimulatedCrawlBenchmark {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The crawlers that crawl on the calling thread
+    private static final List<String> SERIAL_CRAWLERS = List.of("bfs", "dfs", "best");
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The settings of the graph
+    private int pages = 1000000;
+    private int hosts = 1000;
+    private int minDegree = 2;
+    private int maxDegree = 100;
+    private double exponent = 2.1;
+    private double locality = 2 / 3.0;
+    private int chars = 256;
+    private double density = 0.01;
+    private long seed = 42;
+
+    // The settings of the crawls
+    private List<String> crawlers = List.of("bfs", "dfs", "best");
+    private int workers = 4;
+    private boolean bloom = false;
+    private int maxPages = 200000;
+    private int depth = 1000;
+    private int links = 10000000;
+    private int warmup = 3;
+    private int runs = 5;
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Runs the benchmark
+     * @param args The options
+     */
+    public static void main(String[] args) {
+
+        SimulatedCrawlBenchmark benchmark = new SimulatedCrawlBenchmark();
+        try {
+            benchmark.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: SimulatedCrawlBenchmark [--pages N] [--hosts N] [--degree MIN,MAX]"
+                    + " [--exponent X] [--locality X] [--chars N] [--density X] [--seed N] [--crawlers LIST]"
+                    + " [--workers N] [--visited ids|bloom] [--max-pages N] [--depth N] [--links N] [--warmup N] [--runs N]");
+            System.exit(2);
+        }
+        benchmark.run();
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Reads the options
+     * @param args The options
+     * @throws IllegalArgumentException If an option is not valid
+     */
+    private void parse(String[] args) {
+
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("No value for " + args[i]);
+            }
+            String value = args[++i];
+            try {
+                switch (args[i - 1]) {
+                    case "--pages": this.pages = Integer.parseInt(value); break;
+                    case "--hosts": this.hosts = Integer.parseInt(value); break;
+                    case "--degree":
+                        String[] range = value.split(",");
+                        this.minDegree = Integer.parseInt(range[0].trim());
+                        this.maxDegree = Integer.parseInt(range[range.length - 1].trim());
+                        break;
+                    case "--exponent": this.exponent = Double.parseDouble(value); break;
+                    case "--locality": this.locality = Double.parseDouble(value); break;
+                    case "--chars": this.chars = Integer.parseInt(value); break;
+                    case "--density": this.density = Double.parseDouble(value); break;
+                    case "--seed": this.seed = Long.parseLong(value); break;
+                    case "--crawlers": this.crawlers = List.of(value.split(",")); break;
+                    case "--workers": this.workers = Integer.parseInt(value); break;
+                    case "--visited":
+                        if (!value.equals("ids") && !value.equals("bloom")) {
+                            throw new IllegalArgumentException("Unknown visited set " + value);
+                        }
+                        this.bloom = value.equals("bloom");
+                        break;
+                    case "--max-pages": this.maxPages = Integer.parseInt(value); break;
+                    case "--depth": this.depth = Integer.parseInt(value); break;
+                    case "--links": this.links = Integer.parseInt(value); break;
+                    case "--warmup": this.warmup = Integer.parseInt(value); break;
+                    case "--runs": this.runs = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+                }
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Bad value for " + args[i - 1] + ": " + value);
+            }
+        }
+
+        if (this.runs < 1) {
+            throw new IllegalArgumentException("Need at least one timed run");
+        }
+    }
+
+    /**
+     * Times every crawler over the graph
+     */
+    private void run() {
+
+        SyntheticWebGraph graph = new SyntheticWebGraph(this.pages, this.hosts, this.seed);
+        graph.setOutDegree(this.minDegree, this.maxDegree, this.exponent);
+        graph.setLocality(this.locality);
+        graph.setPageChars(this.chars);
+        graph.setKeyword("needle", this.density);
+
+        System.out.printf("# %d pages on %d hosts, %d-%d links (exponent %.2f, %.0f%% local), %d chars,"
+                + " %.1f%% matching, seed %d; %d warm-up and %d timed runs of %d pages, visited %s%n",
+                this.pages, this.hosts, this.minDegree, this.maxDegree, this.exponent, this.locality * 100,
+                this.chars, this.density * 100, this.seed, this.warmup, this.runs, this.maxPages,
+                this.bloom ? "in a Bloom filter" : "as ids");
+        System.out.printf("%-8s %7s %8s %12s %10s %12s %10s %12s %10s%n", "crawler", "workers", "pages",
+                "pages/s", "+/-", "links/s", "ns/page", "bytes/page", "urls KB");
+
+        for (String name : this.crawlers) {
+            int count = SERIAL_CRAWLERS.contains(name) ? 1 : this.workers;
+
+            for (int i = 0; i < this.warmup; i++) {
+                this.crawl(graph, name, count);
+            }
+
+            double[] rates = new double[this.runs];
+            double linkRate = 0;
+            double nanosPerPage = 0;
+            double bytesPerPage = 0;
+            long crawled = 0;
+            long urlBytes = 0;
+            for (int i = 0; i < this.runs; i++) {
+                Run run = this.crawl(graph, name, count);
+                rates[i] = run.pages / run.seconds;
+                linkRate += run.links / run.seconds / this.runs;
+                nanosPerPage += run.seconds * 1e9 / run.pages / this.runs;
+                bytesPerPage += (double) run.allocated / run.pages / this.runs;
+                crawled = run.pages;
+                urlBytes = run.urlBytes;
+            }
+
+            double mean = 0;
+            for (double rate : rates) {
+                mean += rate / rates.length;
+            }
+            double variance = 0;
+            for (double rate : rates) {
+                variance += (rate - mean) * (rate - mean) / Math.max(1, rates.length - 1);
+            }
+
+            System.out.printf("%-8s %7d %8d %12.0f %10.0f %12.0f %10.0f %12s %10d%n", name, count, crawled, mean,
+                    Math.sqrt(variance), linkRate, nanosPerPage,
+                    (SERIAL_CRAWLERS.contains(name) && allocatedBytes() >= 0) ? String.format("%.0f", bytesPerPage) : "-",
+                    urlBytes / 1024);
+        }
+    }
+
+    /**
+     * Crawls the graph from its first page with a new crawler until enough
+     * pages have been crawled or none are left
+     * @param graph The graph
+     * @param name The name of the crawler
+     * @param workers The number of workers, for the parallel crawlers
+     * @return The measurements of the crawl
+     */
+    private Run crawl(SyntheticWebGraph graph, String name, int workers) {
+
+        final AtomicLong results = new AtomicLong();
+        final Crawler[] crawler = new Crawler[1];
+        final int limit = this.maxPages;
+
+        // Count the results, stopping the crawl once there are enough
+        CrawlResultSink sink = new CrawlResultSink() {
+            public boolean add(CrawlResult result) {
+                if (results.incrementAndGet() >= limit) {
+                    crawler[0].stop();
+                }
+                return true;
+            }
+        };
+
+        crawler[0] = CrawlLoadTest.newCrawler(name, graph.getKeyword(), sink, workers);
+        crawler[0].setMaxDepth(this.depth);
+        crawler[0].setMaxLinks(this.links);
+        crawler[0].setPrintProgress(false);
+        crawler[0].setRetainText(false);
+        BloomFilterSet filter = null;
+        if (this.bloom) {
+            filter = crawler[0].useVisitedLinkFilter(this.maxPages, 0.01);
+        }
+        SimulatedFetcher fetcher = new SimulatedFetcher(graph);
+        crawler[0].setFetcher(fetcher);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        crawler[0].search(graph.address(0));
+
+        Run run = new Run();
+        run.seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        run.allocated = allocatedBytes() - allocatedBefore;
+        run.pages = Math.max(1, results.get());
+        run.links = fetcher.getLinks();
+        run.urlBytes = crawler[0].getUrlDictionary().memoryBytes() + ((filter != null) ? filter.getSizeInBytes() : 0);
+        return run;
+    }
+
+    /**
+     * Returns the number of bytes the calling thread has allocated, where
+     * the JVM can tell
+     * @return The number of bytes, or -1 if the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * The measurements of one crawl
+     */
+    private static class Run {
+
+        // The number of pages crawled, and of links on them
+        long pages;
+        long links;
+
+        // How long the crawl took, in seconds
+        double seconds;
+
+        // The bytes allocated by the calling thread
+        long allocated;
+
+        // The bytes taken by the URL dictionary and the Bloom filter
+        long urlBytes;
+    }
+}
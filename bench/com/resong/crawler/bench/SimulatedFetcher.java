@@ -0,0 +1,107 @@
+package com.resong.crawler.bench;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.resong.crawler.resources.Fetcher;
+import com.resong.crawler.resources.Page;
+
+/**
+ * A Fetcher that never touches the network: it fills each page straight
+ * from a SyntheticWebGraph, with the links and text the graph gives it, and
+ * completes at once. With the cost of downloading and parsing gone, a crawl
+ * measures only what the crawler itself does with each page, such as
+ * checking links against the visited set and managing its frontier.
+ *
+ * The page gets its links through Page.addLink and its text through
+ * Page.appendText, as it would from a parser, so link limits, the URL
+ * dictionary and keyword matching all work as in a real crawl. Addresses
+ * that are not pages of the graph fail as a missing page would.
+ */
+public class SimulatedFetcher implements Fetcher {
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The graph pages are taken from
+    private SyntheticWebGraph graph;
+
+    // The number of pages fetched, and of links given to them
+    private LongAdder pages;
+    private LongAdder links;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new SimulatedFetcher
+     * @param graph The graph to take pages from
+     */
+    public SimulatedFetcher(SyntheticWebGraph graph) {
+        this.graph = graph;
+        this.pages = new LongAdder();
+        this.links = new LongAdder();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Clears the page and fills it with the links and text of the page of
+     * the graph at its address
+     * @param page The Page to fill
+     * @return A completed future with the page, or a failed one if the
+     *         address is not a page of the graph
+     */
+    public CompletableFuture<Page> fetch(Page page) {
+
+        int id = this.graph.idOf(page.getAddress());
+        if (id < 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No page at " + page.getAddress()));
+        }
+
+        page.clear();
+
+        int[] targets = this.graph.links(id);
+        try {
+            for (int i = 0; i < targets.length && page.acceptsLinks(); i++) {
+                page.addLink(this.graph.address(targets[i]));
+                page.endAnchor();
+            }
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        long length = 0;
+        if (page.needsText()) {
+            String text = this.graph.text(id);
+            page.appendText(text.toCharArray(), 0, text.length());
+            length = text.length();
+        }
+        page.setContentLength(length);
+
+        this.pages.increment();
+        this.links.add(targets.length);
+        return CompletableFuture.completedFuture(page);
+    }
+
+    /**
+     * Returns the number of pages fetched
+     * @return The number of pages
+     */
+    public long getPages() {
+        return this.pages.sum();
+    }
+
+    /**
+     * Returns the number of links on the pages fetched, including those the
+     * pages did not accept
+     * @return The number of links
+     */
+    public long getLinks() {
+        return this.links.sum();
+    }
+}
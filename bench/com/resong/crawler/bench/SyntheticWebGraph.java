@@ -0,0 +1,382 @@
+package com.resong.crawler.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A generated web graph for measuring crawls without the internet. Every
+ * page is worked out from the seed and its id alone, so the same graph can
+ * be served over HTTP or handed to a crawler from memory, and two runs with
+ * the same settings crawl exactly the same pages.
+ *
+ * Pages are spread over a number of hosts. The number of links on a page
+ * follows a power law, as it does on the web: most pages have a few links
+ * and a few pages have very many. A share of the links stay on the page's
+ * own host. Page sizes vary around a mean, a share of the pages contain
+ * the keyword, and each host answers with its own latency plus jitter.
+ */
+public class SyntheticWebGraph {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The words the text of the pages is made of
+    private static final String[] WORDS = ("the of and to in a is that for it as was with be by on not "
+            + "he this are or his from at which but have an they you were her she there one all we "
+            + "their can been has more if will would so no what up said about out into time them "
+            + "city river council budget school market station report season music library").split(" ");
+
+    // The smallest page text, in characters
+    private static final int MIN_TEXT = 64;
+
+    // The prefix of the path of every page
+    private static final String PAGE_PATH = "/p";
+
+    // The streams of random numbers each page is generated from
+    private static final long LINK_STREAM = 1;
+    private static final long TEXT_STREAM = 2;
+    private static final long KEYWORD_STREAM = 3;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The number of pages
+    private int pages;
+
+    // The number of hosts the pages are spread over
+    private int hosts;
+
+    // The seed all pages are generated from
+    private long seed;
+
+    // The fewest and most links on a page, and the exponent of the power law
+    private int minDegree;
+    private int maxDegree;
+    private double exponent;
+
+    // The share of links that go to a page on the same host
+    private double locality;
+
+    // The mean size of the text of a page, in characters
+    private int pageChars;
+
+    // The keyword, and the share of pages that contain it
+    private String keyword;
+    private double density;
+
+    // The mean latency of the hosts and the most jitter added to it, in ms
+    private double latencyMillis;
+    private double jitterMillis;
+
+    // The start of the address of each host's pages, such as http://h0
+    private String[] hostBases;
+
+    // The latency of each host, in nanoseconds
+    private long[] hostLatencies;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new graph with two to a hundred links a page, two
+     * thirds of them on the same host, 2 KB of text a page, one page in a
+     * hundred containing the keyword "needle", and no latency
+     * @param pages The number of pages
+     * @param hosts The number of hosts the pages are spread over
+     * @param seed The seed all pages are generated from
+     */
+    public SyntheticWebGraph(int pages, int hosts, long seed) {
+
+        if (pages < 1 || hosts < 1 || hosts > pages) {
+            throw new IllegalArgumentException("Need at least one page per host");
+        }
+
+        this.pages = pages;
+        this.hosts = hosts;
+        this.seed = seed;
+        this.setOutDegree(2, 100, 2.1);
+        this.setLocality(2 / 3.0);
+        this.setPageChars(2048);
+        this.setKeyword("needle", 0.01);
+
+        this.hostBases = new String[hosts];
+        for (int h = 0; h < hosts; h++) {
+            this.hostBases[h] = "http://h" + h + ".example";
+        }
+        this.setLatency(0, 0);
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Sets how many links the pages have. The number on each page is drawn
+     * from a power law: the chance of a page having more than d links falls
+     * as d to the power of 1 - exponent.
+     * @param min The fewest links on a page
+     * @param max The most links on a page
+     * @param exponent The exponent of the power law, greater than 1; the
+     *                 web's is about 2.1
+     */
+    public void setOutDegree(int min, int max, double exponent) {
+
+        if (min < 0 || max < min || exponent <= 1) {
+            throw new IllegalArgumentException("Bad out-degree " + min + ".." + max + ", exponent " + exponent);
+        }
+        this.minDegree = min;
+        this.maxDegree = max;
+        this.exponent = exponent;
+    }
+
+    /**
+     * Sets the share of links that go to another page on the same host
+     * @param share The share, from 0 to 1
+     */
+    public void setLocality(double share) {
+        this.locality = Math.max(0, Math.min(1, share));
+    }
+
+    /**
+     * Sets the mean size of the text of a page. Sizes are spread
+     * exponentially around the mean, so a few pages are much larger.
+     * @param chars The mean number of characters
+     */
+    public void setPageChars(int chars) {
+        this.pageChars = Math.max(MIN_TEXT, chars);
+    }
+
+    /**
+     * Sets the keyword, and the share of pages that contain it
+     * @param keyword The keyword
+     * @param density The share of pages, from 0 to 1
+     */
+    public void setKeyword(String keyword, double density) {
+        this.keyword = keyword;
+        this.density = Math.max(0, Math.min(1, density));
+    }
+
+    /**
+     * Sets how long the hosts take to answer. Each host's latency is drawn
+     * once, between half and one and a half times the mean, and each
+     * request adds up to the given jitter to it.
+     * @param meanMillis The mean latency of the hosts, in milliseconds
+     * @param jitterMillis The most jitter added to a request, in milliseconds
+     */
+    public void setLatency(double meanMillis, double jitterMillis) {
+
+        this.latencyMillis = Math.max(0, meanMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+
+        this.hostLatencies = new long[this.hosts];
+        SplittableRandom random = new SplittableRandom(this.seed);
+        for (int h = 0; h < this.hosts; h++) {
+            this.hostLatencies[h] = (long) (this.latencyMillis * (0.5 + random.nextDouble()) * 1e6);
+        }
+    }
+
+    /**
+     * Sets the start of the addresses of a host's pages, such as
+     * http://127.0.0.2:8080, for when the graph is served
+     * @param host The host
+     * @param base The scheme, host name and port, with no trailing slash
+     */
+    public void setHostBase(int host, String base) {
+        this.hostBases[host] = base;
+    }
+
+    /**
+     * Returns the number of pages
+     * @return The number of pages
+     */
+    public int getPages() {
+        return this.pages;
+    }
+
+    /**
+     * Returns the number of hosts
+     * @return The number of hosts
+     */
+    public int getHosts() {
+        return this.hosts;
+    }
+
+    /**
+     * Returns the keyword some pages contain
+     * @return The keyword
+     */
+    public String getKeyword() {
+        return this.keyword;
+    }
+
+    /**
+     * Returns the host a page is on
+     * @param id The id of the page
+     * @return The host
+     */
+    public int hostOf(int id) {
+        return id % this.hosts;
+    }
+
+    /**
+     * Returns the address of a page
+     * @param id The id of the page
+     * @return Its address
+     */
+    public String address(int id) {
+        return this.hostBases[this.hostOf(id)] + PAGE_PATH + id;
+    }
+
+    /**
+     * Returns the id of a page from its address or the path of its address
+     * @param address The address or path
+     * @return The id of the page, or -1 if it is not a page of the graph
+     */
+    public int idOf(String address) {
+
+        int start = address.lastIndexOf(PAGE_PATH);
+        if (start < 0) {
+            return -1;
+        }
+        try {
+            int id = Integer.parseInt(address.substring(start + PAGE_PATH.length()));
+            return (id >= 0 && id < this.pages) ? id : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the ids of the pages a page links to, in the order the links
+     * appear on it. A page may link to the same page more than once.
+     * @param id The id of the page
+     * @return The ids of the linked pages
+     */
+    public int[] links(int id) {
+
+        SplittableRandom random = this.random(id, LINK_STREAM);
+
+        // Draw from a Pareto distribution starting at min + 1, so that a
+        // minimum of 0 links works too
+        double u = 1 - random.nextDouble();
+        double degree = (this.minDegree + 1) * Math.pow(u, -1 / (this.exponent - 1)) - 1;
+        int count = (int) Math.min(this.maxDegree, Math.floor(degree));
+
+        int[] links = new int[count];
+        int host = this.hostOf(id);
+        int perHost = (this.pages - host + this.hosts - 1) / this.hosts;
+        for (int i = 0; i < count; i++) {
+            if (random.nextDouble() < this.locality) {
+                links[i] = host + this.hosts * random.nextInt(perHost);
+            } else {
+                links[i] = random.nextInt(this.pages);
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Returns whether a page contains the keyword
+     * @param id The id of the page
+     * @return True, if the page contains the keyword; false, otherwise
+     */
+    public boolean containsKeyword(int id) {
+
+        return this.random(id, KEYWORD_STREAM).nextDouble() < this.density;
+    }
+
+    /**
+     * Returns the text of a page, which contains the keyword if the page
+     * does
+     * @param id The id of the page
+     * @return The text
+     */
+    public String text(int id) {
+
+        SplittableRandom random = this.random(id, TEXT_STREAM);
+        int length = (int) Math.min(16L * this.pageChars,
+                MIN_TEXT + (long) (-Math.log(1 - random.nextDouble()) * (this.pageChars - MIN_TEXT)));
+        int keywordAt = this.containsKeyword(id) ? random.nextInt(length) : -1;
+
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            if (keywordAt >= 0 && text.length() >= keywordAt) {
+                text.append(this.keyword).append(' ');
+                keywordAt = -1;
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        if (keywordAt >= 0) {
+            text.append(this.keyword);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the HTML of a page: its text in paragraphs, with its links
+     * spread through it
+     * @param id The id of the page
+     * @return The page, encoded in UTF-8
+     */
+    public byte[] html(int id) {
+
+        String text = this.text(id);
+        int[] links = this.links(id);
+
+        StringBuilder html = new StringBuilder(text.length() + links.length * 48 + 128);
+        html.append("<!DOCTYPE html>\n<html><head><title>Page ").append(id).append("</title></head>\n<body>\n<p>");
+
+        // Break the text at a space after every share of it, putting a link
+        // at each break
+        int from = 0;
+        for (int i = 0; i <= links.length; i++) {
+            int to = (i == links.length) ? text.length()
+                    : text.indexOf(' ', (int) ((long) text.length() * (i + 1) / (links.length + 1)));
+            if (to < from) {
+                to = from;
+            }
+            html.append(text, from, to);
+            from = to;
+            if (i < links.length) {
+                html.append(" <a href=\"").append(this.address(links[i])).append("\">page ")
+                        .append(links[i]).append("</a>");
+                if (i % 8 == 7) {
+                    html.append("</p>\n<p>");
+                }
+            }
+        }
+
+        html.append("</p>\n</body></html>\n");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns how long a request to a host should take, with jitter
+     * @param host The host
+     * @return The latency, in nanoseconds
+     */
+    public long latencyNanos(int host) {
+
+        long jitter = (long) (this.jitterMillis * 1e6);
+        return this.hostLatencies[host] + ((jitter > 0) ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns one stream of the random numbers a page is generated from
+     * @param id The id of the page
+     * @param stream The stream
+     * @return A random number generator that is the same every time for the
+     *         same page and stream
+     */
+    private SplittableRandom random(int id, long stream) {
+        return new SplittableRandom(this.seed ^ (id * 0x9E3779B97F4A7C15L) ^ (stream * 0xC2B2AE3D27D4EB4FL));
+    }
+}
@@ -0,0 +1,197 @@
+package com.resong.crawler.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a SyntheticWebGraph over HTTP on the loopback interface, one
+ * server for each host of the graph. Each host listens on an address of its
+ * own, 127.0.0.2, 127.0.0.3 and so on, so that crawlers see the hosts as
+ * different; where only 127.0.0.1 can be used, as on macOS, the hosts share
+ * it on different ports. Every request waits for the latency of its host
+ * before it is answered.
+ */
+public class SyntheticWebServer {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The number of requests each server may hold waiting to be accepted
+    private static final int BACKLOG = 1024;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The graph served
+    private SyntheticWebGraph graph;
+
+    // The server of each host
+    private HttpServer[] servers;
+
+    // The threads that answer requests, shared by all the servers
+    private ExecutorService executor;
+
+    // The number of requests answered and bytes sent
+    private AtomicLong requests;
+    private AtomicLong bytes;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new SyntheticWebServer, which is not yet started
+     * @param graph The graph to serve
+     */
+    public SyntheticWebServer(SyntheticWebGraph graph) {
+        this.graph = graph;
+        this.requests = new AtomicLong();
+        this.bytes = new AtomicLong();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Starts a server for every host on a free port, and points the graph's
+     * addresses at them
+     * @throws IOException If a server cannot be started
+     */
+    public void start() throws IOException {
+
+        // Send each response as soon as it is written; otherwise Nagle's
+        // algorithm holds back the body until the client acknowledges the
+        // headers, which adds about 40 ms to every request. The property is
+        // read once, before the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        // Requests wait for their latency on a thread of their own, so that
+        // slow hosts don't hold up fast ones
+        this.executor = Executors.newCachedThreadPool();
+        this.servers = new HttpServer[this.graph.getHosts()];
+
+        boolean ownAddresses = true;
+        for (int h = 0; h < this.servers.length; h++) {
+            HttpServer server = null;
+            if (ownAddresses) {
+                try {
+                    server = HttpServer.create(new InetSocketAddress(loopback(h), 0), BACKLOG);
+                } catch (IOException ex) {
+                    ownAddresses = false;
+                }
+            }
+            if (server == null) {
+                server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), BACKLOG);
+            }
+
+            server.createContext("/", new PageHandler());
+            server.setExecutor(this.executor);
+            server.start();
+            this.servers[h] = server;
+
+            InetSocketAddress address = server.getAddress();
+            this.graph.setHostBase(h, "http://" + address.getAddress().getHostAddress() + ":" + address.getPort());
+        }
+    }
+
+    /**
+     * Stops every server
+     */
+    public void stop() {
+
+        if (this.servers != null) {
+            for (HttpServer server : this.servers) {
+                if (server != null) {
+                    server.stop(0);
+                }
+            }
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            try {
+                this.executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests answered
+     * @return The number of requests
+     */
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * Returns the number of bytes of pages sent
+     * @return The number of bytes
+     */
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the loopback address of a host
+     * @param host The host
+     * @return Its address, from 127.0.0.2 on
+     */
+    private static String loopback(int host) {
+
+        int n = host + 2;
+        return "127." + (n >> 16 & 0xff) + "." + (n >> 8 & 0xff) + "." + (n & 0xff);
+    }
+
+    /**
+     * Answers a request for a page of the graph after the latency of its
+     * host, or with 404 if there is no such page
+     */
+    private class PageHandler implements HttpHandler {
+
+        public void handle(HttpExchange exchange) throws IOException {
+
+            try {
+                int id = graph.idOf(exchange.getRequestURI().getPath());
+                if (id < 0) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+
+                long latency = graph.latencyNanos(graph.hostOf(id));
+                if (latency > 0) {
+                    TimeUnit.NANOSECONDS.sleep(latency);
+                }
+
+                byte[] page = graph.html(id);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, page.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(page);
+                }
+                requests.incrementAndGet();
+                bytes.addAndGet(page.length);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.resong.crawler.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.resong.crawler.resources.Page;
+import com.resong.crawler.resources.UrlDictionary;
+import com.resong.crawler.structures.queue.CircularArrayQueue;
+import com.resong.crawler.structures.queue.LinkedQueue;
+import com.resong.crawler.structures.queue.QueueADT;
+import com.resong.crawler.structures.stack.LinkedStack;
+import com.resong.crawler.structures.stack.StackADT;
+
+/**
+ * Measures the structures the crawlers keep their frontier in, holding
+ * parsed pages with real addresses, links and text:
+ *
+ *   steadyState  adds and removes one page at a time with a fixed number
+ *                of pages waiting
+ *   burstGrowth  fills a new structure with a burst of pages and drains
+ *                it again, which makes CircularArrayQueue grow its array
+ *   crawlMix     removes a page and adds the pages it links to, the way a
+ *                crawl does, trimming the frontier back to its size
+ *
+ * Each structure runs in its own fork, so the calls through Frontier stay
+ * monomorphic.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class FrontierBenchmark {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The number of distinct pages added to the structures
+    private static final int PAGE_POOL = 4096;
+
+    // The number of hosts the pages are spread over
+    private static final int HOSTS = 64;
+
+    // The fewest and most links on each page
+    private static final int MIN_LINKS = 8;
+    private static final int MAX_LINKS = 24;
+
+    // The number of characters of text on each page
+    private static final int TEXT_LENGTH = 2048;
+
+    // The seed of the random pages, so every run measures the same pages
+    private static final long SEED = 42;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The structure measured
+    @Param({ "CircularArrayQueue", "LinkedQueue", "LinkedStack" })
+    public String structure;
+
+    // The number of pages waiting, or the size of a burst
+    @Param({ "1000", "100000" })
+    public int size;
+
+    // The pages added to the structures
+    private Page[] pages;
+
+    // The structure holding the waiting pages
+    private Frontier frontier;
+
+    // The index in pages of the next page to add
+    private int next;
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Builds the pages and fills the frontier
+     * @throws Exception If a link cannot be added to a page
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        Random random = new Random(SEED);
+        UrlDictionary urls = new UrlDictionary();
+
+        // Intern every address first, so the id of each link is the index
+        // of the page it links to
+        this.pages = new Page[PAGE_POOL];
+        for (int i = 0; i < PAGE_POOL; i++) {
+            this.pages[i] = new Page(address(i));
+            this.pages[i].useUrlDictionary(urls);
+            urls.intern(this.pages[i].getAddress());
+        }
+
+        char[] text = new char[TEXT_LENGTH];
+        for (int i = 0; i < PAGE_POOL; i++) {
+            int count = MIN_LINKS + random.nextInt(MAX_LINKS - MIN_LINKS + 1);
+            for (int j = 0; j < count; j++) {
+                this.pages[i].addLink(address(random.nextInt(PAGE_POOL)));
+            }
+            for (int j = 0; j < text.length; j++) {
+                text[j] = (char) ('a' + random.nextInt(27));
+            }
+            this.pages[i].appendText(text, 0, text.length);
+        }
+
+        this.frontier = newFrontier(this.structure);
+        for (int i = 0; i < this.size; i++) {
+            this.frontier.add(this.nextPage());
+        }
+    }
+
+    /**
+     * Adds a page to a frontier of constant size and removes one
+     * @return The page removed
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Page steadyState() {
+
+        this.frontier.add(this.nextPage());
+        return this.frontier.remove();
+    }
+
+    /**
+     * Adds a burst of pages to a new structure, then removes them all
+     * @param blackhole Consumes the pages removed
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void burstGrowth(Blackhole blackhole) {
+
+        Frontier burst = newFrontier(this.structure);
+        for (int i = 0; i < this.size; i++) {
+            burst.add(this.nextPage());
+        }
+        while (!burst.isEmpty()) {
+            blackhole.consume(burst.remove());
+        }
+    }
+
+    /**
+     * Visits one page: removes it, adds every page it links to, and removes
+     * pages again until the frontier is back to its size
+     * @param blackhole Consumes the pages removed
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void crawlMix(Blackhole blackhole) {
+
+        Page page = this.frontier.remove();
+        for (int i = 0; i < page.getLinkCount(); i++) {
+            this.frontier.add(this.pages[page.getLinkId(i)]);
+        }
+
+        while (this.frontier.size() > this.size) {
+            blackhole.consume(this.frontier.remove());
+        }
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the next page of the pool to add, wrapping around at its end
+     * @return The page
+     */
+    private Page nextPage() {
+
+        Page page = this.pages[this.next];
+        this.next = (this.next + 1) & (PAGE_POOL - 1);
+        return page;
+    }
+
+    /**
+     * Returns the address of a page of the pool
+     * @param index The index of the page
+     * @return Its address
+     */
+    private static String address(int index) {
+        return "http://www.site" + (index % HOSTS) + ".example.com/section/"
+                + (index / HOSTS) + "/index.html";
+    }
+
+    /**
+     * Returns an empty structure of the given kind, at its default capacity
+     * @param structure The name of the class of the structure
+     * @return The structure
+     */
+    private static Frontier newFrontier(String structure) {
+
+        switch (structure) {
+            case "CircularArrayQueue":
+                return new QueueFrontier(new CircularArrayQueue<Page>());
+            case "LinkedQueue":
+                return new QueueFrontier(new LinkedQueue<Page>());
+            case "LinkedStack":
+                return new StackFrontier(new LinkedStack<Page>());
+            default:
+                throw new IllegalArgumentException("Unknown structure " + structure);
+        }
+    }
+
+    /**
+     * The operations a crawler uses on its frontier, whether it is a queue
+     * or a stack
+     */
+    private interface Frontier {
+
+        void add(Page page);
+
+        Page remove();
+
+        int size();
+
+        boolean isEmpty();
+    }
+
+    /**
+     * A frontier kept in a queue
+     */
+    private static class QueueFrontier implements Frontier {
+
+        private final QueueADT<Page> queue;
+
+        QueueFrontier(QueueADT<Page> queue) {
+            this.queue = queue;
+        }
+
+        public void add(Page page) {
+            this.queue.enqueue(page);
+        }
+
+        public Page remove() {
+            return this.queue.dequeue();
+        }
+
+        public int size() {
+            return this.queue.size();
+        }
+
+        public boolean isEmpty() {
+            return this.queue.isEmpty();
+        }
+    }
+
+    /**
+     * A frontier kept in a stack
+     */
+    private static class StackFrontier implements Frontier {
+
+        private final StackADT<Page> stack;
+
+        StackFrontier(StackADT<Page> stack) {
+            this.stack = stack;
+        }
+
+        public void add(Page page) {
+            this.stack.push(page);
+        }
+
+        public Page remove() {
+            return this.stack.pop();
+        }
+
+        public int size() {
+            return this.stack.size();
+        }
+
+        public boolean isEmpty() {
+            return this.stack.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.resong.crawler.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.resong.crawler.resources.KeywordAutomaton;
+import com.resong.crawler.resources.Page;
+import com.resong.crawler.resources.UrlDictionary;
+import com.resong.crawler.resources.WebHelper;
+
+/**
+ * Measures the work done on each downloaded page, over the HTML pages of
+ * the corpus in jmh/corpus, read from memory:
+ *
+ *   swingParse       parses with the Swing parser and PageParser
+ *   tokenizerParse   parses with HtmlTokenizer, as the fetchers do
+ *   parseAndMatch    parses with HtmlTokenizer while searching for a
+ *                    keyword without keeping the text, as the crawlers do
+ *   appendText       passes the text of a page to Page.appendText in the
+ *                    pieces the parser passes it in
+ *   addLink          adds the links of a page to a new Page
+ *   containsTextHit  finds text near the end of a parsed page
+ *   containsTextMiss looks for text that a parsed page does not contain
+ *
+ * The pages of the corpus are 5 to 20 KB. To measure large pages, a page
+ * is grown to the requested size by appending the bodies of the pages of
+ * the corpus in turn, as an endlessly scrolling page would. Every copy of a
+ * link gets a query naming the copy, so the grown page has as many
+ * distinct links as a real page of that size rather than the same few
+ * over and over, and the parser and the link set can't settle into
+ * repeating the same work. The parse benchmarks report the megabytes
+ * parsed each second as the "megabytes" counter; run with -prof gc for
+ * the bytes allocated per page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class PageBenchmark {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The character set of the corpus
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    // Text found near the end of every page of the corpus, in its footer
+    private static final String PRESENT_TEXT = "all rights reserved";
+
+    // Text found in no page of the corpus
+    private static final String ABSENT_TEXT = "haystack needle";
+
+    // The address of a link, unless it only names a place on its page
+    private static final Pattern LINK = Pattern.compile("href=\"([^\"#]+)");
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The directory holding the corpus
+    @Param({ "jmh/corpus" })
+    public String corpus;
+
+    // The name of the page measured, without .html
+    @Param({ "sign-in", "news-article", "forum-thread", "product-listing", "reference-docs" })
+    public String page;
+
+    // The size to grow the page to, in kilobytes, or 0 to use it as it is
+    @Param({ "0", "1024", "5120" })
+    public int kilobytes;
+
+    // The HTML of the page
+    private byte[] document;
+
+    // The pieces of text the parser passes to the page
+    private char[][] textPieces;
+
+    // The links the parser adds to the page
+    private String[] links;
+
+    // The keyword searched for while parsing
+    private KeywordAutomaton keyword;
+
+    // The page, parsed with its text kept
+    private Page parsed;
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Loads and grows the page, and records what the parser passes to it
+     * @throws IOException If the page cannot be read or parsed
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        this.document = grow(Files.readAllBytes(Paths.get(this.corpus, this.page + ".html")),
+                readBodies(Paths.get(this.corpus), this.page + ".html"), this.kilobytes * 1024);
+        this.keyword = KeywordAutomaton.of(ABSENT_TEXT);
+
+        RecordingPage recording = new RecordingPage();
+        WebHelper.parsePage(recording, this.document, CHARSET);
+        this.textPieces = recording.pieces.toArray(new char[0][]);
+        this.links = recording.links.toArray(new String[0]);
+
+        this.parsed = new Page("http://www.example.org/corpus/" + this.page);
+        WebHelper.parsePage(this.parsed, this.document, CHARSET);
+        if (!this.parsed.containsText(PRESENT_TEXT)) {
+            throw new IllegalStateException(this.page + " does not contain \"" + PRESENT_TEXT + "\"");
+        }
+    }
+
+    /**
+     * Parses the page with the Swing parser
+     * @param throughput Counts the megabytes parsed
+     * @return The parsed page
+     * @throws IOException If the page cannot be parsed
+     */
+    @Benchmark
+    public Page swingParse(Throughput throughput) throws IOException {
+
+        Page result = new Page("http://www.example.org/corpus/" + this.page);
+        WebHelper.parsePage(result, new InputStreamReader(new ByteArrayInputStream(this.document), CHARSET));
+        throughput.megabytes += this.document.length / 1e6;
+        return result;
+    }
+
+    /**
+     * Parses the page with HtmlTokenizer
+     * @param throughput Counts the megabytes parsed
+     * @return The parsed page
+     * @throws IOException If the page cannot be parsed
+     */
+    @Benchmark
+    public Page tokenizerParse(Throughput throughput) throws IOException {
+
+        Page result = new Page("http://www.example.org/corpus/" + this.page);
+        WebHelper.parsePage(result, this.document, CHARSET);
+        throughput.megabytes += this.document.length / 1e6;
+        return result;
+    }
+
+    /**
+     * Parses the page with HtmlTokenizer, searching for a keyword it does not
+     * contain without keeping its text
+     * @param throughput Counts the megabytes parsed
+     * @return Whether the keyword was found
+     * @throws IOException If the page cannot be parsed
+     */
+    @Benchmark
+    public boolean parseAndMatch(Throughput throughput) throws IOException {
+
+        Page result = new Page("http://www.example.org/corpus/" + this.page);
+        result.matchWhileParsing(this.keyword, false, false);
+        WebHelper.parsePage(result, this.document, CHARSET);
+        throughput.megabytes += this.document.length / 1e6;
+        return result.containsText(ABSENT_TEXT);
+    }
+
+    /**
+     * Passes the text of the page to a new Page, which keeps it
+     * @return The page
+     */
+    @Benchmark
+    public Page appendText() {
+
+        Page result = new Page("http://www.example.org/corpus/" + this.page);
+        for (char[] piece : this.textPieces) {
+            result.appendText(piece, 0, piece.length);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the links of the page to a new Page with a new dictionary, so
+     * that every link is new
+     * @return The page
+     * @throws Exception If a link cannot be added
+     */
+    @Benchmark
+    public Page addLink() throws Exception {
+
+        Page result = new Page("http://www.example.org/corpus/" + this.page);
+        result.useUrlDictionary(new UrlDictionary());
+        for (String link : this.links) {
+            result.addLink(link);
+        }
+        return result;
+    }
+
+    /**
+     * Looks for text found near the end of the parsed page
+     * @return True
+     */
+    @Benchmark
+    public boolean containsTextHit() {
+        return this.parsed.containsText(PRESENT_TEXT);
+    }
+
+    /**
+     * Looks for text the parsed page does not contain
+     * @return False
+     */
+    @Benchmark
+    public boolean containsTextMiss() {
+        return this.parsed.containsText(ABSENT_TEXT);
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Grows a page to at least the given size by appending the bodies of
+     * other pages before its closing body tag, numbering the links of each
+     * one appended
+     * @param html The HTML of the page
+     * @param bodies The bodies to append, in turn
+     * @param size The size to grow the page to, in bytes
+     * @return The HTML of the grown page
+     */
+    private static byte[] grow(byte[] html, List<String> bodies, int size) {
+
+        if (html.length >= size) {
+            return html;
+        }
+
+        String text = new String(html, CHARSET);
+        int bodyEnd = text.lastIndexOf("</body>");
+        byte[] head = text.substring(0, bodyEnd).getBytes(CHARSET);
+        byte[] tail = text.substring(bodyEnd).getBytes(CHARSET);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 32 * 1024);
+        out.write(head, 0, head.length);
+        for (int copy = 1; out.size() + tail.length < size; copy++) {
+            byte[] body = numberLinks(bodies.get(copy % bodies.size()), copy).getBytes(CHARSET);
+            out.write(body, 0, body.length);
+        }
+        out.write(tail, 0, tail.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the bodies of the pages of the corpus, in name order starting
+     * with the named page
+     * @param corpus The directory holding the corpus
+     * @param first The file name of the page to start with
+     * @return The HTML between the body tags of each page
+     * @throws IOException If a page cannot be read
+     */
+    private static List<String> readBodies(Path corpus, String first) throws IOException {
+
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> pages = Files.newDirectoryStream(corpus, "*.html")) {
+            for (Path file : pages) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+
+        List<String> bodies = new ArrayList<String>();
+        for (Path file : files) {
+            String text = new String(Files.readAllBytes(file), CHARSET);
+            int bodyStart = text.indexOf('>', text.indexOf("<body")) + 1;
+            String body = text.substring(bodyStart, text.lastIndexOf("</body>"));
+
+            if (file.getFileName().toString().equals(first)) {
+                bodies.add(0, body);
+            } else {
+                bodies.add(body);
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * Makes the links of a piece of HTML differ from those of its other
+     * copies by adding a query parameter naming the copy
+     * @param html The HTML
+     * @param copy The number of the copy
+     * @return The HTML with its links numbered
+     */
+    private static String numberLinks(String html, int copy) {
+
+        Matcher links = LINK.matcher(html);
+        return links.replaceAll(link -> {
+            String address = link.group(1);
+            String separator = address.indexOf('?') < 0 ? "?" : "&amp;";
+            return Matcher.quoteReplacement("href=\"" + address + separator + "copy=" + copy);
+        });
+    }
+
+    /**
+     * A page that records the text and links the parser passes to it
+     */
+    private static class RecordingPage extends Page {
+
+        private final List<char[]> pieces = new ArrayList<char[]>();
+
+        private final List<String> links = new ArrayList<String>();
+
+        RecordingPage() {
+            super("http://www.example.org/corpus/recording");
+        }
+
+        @Override
+        public void appendText(char[] data, int start, int length) {
+            this.pieces.add(Arrays.copyOfRange(data, start, start + length));
+            super.appendText(data, start, length);
+        }
+
+        @Override
+        public void addLink(String address) throws Exception {
+            this.links.add(address);
+            super.addLink(address);
+        }
+    }
+
+    /**
+     * Counts the megabytes parsed. JMH reports the count as a rate, which is
+     * in megabytes per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+
+        // The number of megabytes parsed
+        public double megabytes;
+
+        /**
+         * Starts each iteration from zero
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.megabytes = 0;
+        }
+    }
+}
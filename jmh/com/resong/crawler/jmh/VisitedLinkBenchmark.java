@@ -0,0 +1,185 @@
+package com.resong.crawler.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.resong.crawler.resources.BreadthCrawler;
+import com.resong.crawler.resources.Crawler;
+import com.resong.crawler.resources.UrlDictionary;
+
+/**
+ * Measures Crawler.hasVisitedLink once a crawl has visited a given number
+ * of pages, for each kind of set the crawler can remember visited links
+ * in: the default set of link ids and a Bloom filter. Addresses are
+ * looked up both by string, as the Swing parser path does, and by link id,
+ * as the crawlers do, and both for links already visited and for new
+ * ones. The lookups are spread over the whole set in a fixed random order,
+ * so that large sets are measured with their cache misses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class VisitedLinkBenchmark {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The number of lookups prepared; a power of two
+    private static final int LOOKUPS = 1 << 16;
+
+    // The number of hosts the addresses are spread over
+    private static final int HOSTS = 1024;
+
+    // The rate of false positives of the Bloom filter
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    // The seed of the lookup order, so every run measures the same lookups
+    private static final long SEED = 42;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The number of pages visited
+    @Param({ "10000", "100000", "1000000" })
+    public int urls;
+
+    // The set the visited links are kept in
+    @Param({ "UrlIdSet", "BloomFilterSet" })
+    public String set;
+
+    // The crawler whose visited links are looked up
+    private Crawler crawler;
+
+    // Copies of visited addresses, and their ids, in lookup order
+    private String[] visited;
+    private int[] visitedIds;
+
+    // Addresses that have not been visited, and their ids, in lookup order
+    private String[] unvisited;
+    private int[] unvisitedIds;
+
+    // The index of the next lookup
+    private int next;
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Visits the pages and prepares the lookups
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        this.crawler = new BreadthCrawler("needle", null);
+        switch (this.set) {
+            case "UrlIdSet":
+                break;
+            case "BloomFilterSet":
+                this.crawler.useVisitedLinkFilter(this.urls, FALSE_POSITIVE_RATE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown set " + this.set);
+        }
+
+        // Every address gets an id, as it would when found on a page
+        UrlDictionary dictionary = this.crawler.getUrlDictionary();
+        for (int i = 0; i < this.urls; i++) {
+            dictionary.intern(address(i));
+            this.crawler.addVisitedLink(address(i));
+        }
+
+        // Look up copies of the addresses, so that no lookup finds the very
+        // string that was added
+        Random random = new Random(SEED);
+        this.visited = new String[LOOKUPS];
+        this.visitedIds = new int[LOOKUPS];
+        this.unvisited = new String[LOOKUPS];
+        this.unvisitedIds = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            this.visited[i] = address(random.nextInt(this.urls));
+            this.visitedIds[i] = dictionary.find(this.visited[i]);
+            this.unvisited[i] = address(this.urls + i);
+            this.unvisitedIds[i] = dictionary.intern(this.unvisited[i]);
+        }
+    }
+
+    /**
+     * Looks up the address of a page that has been visited
+     * @return Whether the page was found
+     */
+    @Benchmark
+    public boolean visitedAddress() {
+        return this.crawler.hasVisitedLink(this.visited[this.nextLookup()]);
+    }
+
+    /**
+     * Looks up the address of a page that has not been visited
+     * @return Whether the page was found
+     */
+    @Benchmark
+    public boolean unvisitedAddress() {
+        return this.crawler.hasVisitedLink(this.unvisited[this.nextLookup()]);
+    }
+
+    /**
+     * Looks up the id of a page that has been visited
+     * @return Whether the page was found
+     */
+    @Benchmark
+    public boolean visitedId() {
+        return this.crawler.hasVisitedLink(this.visitedIds[this.nextLookup()]);
+    }
+
+    /**
+     * Looks up the id of a page that has not been visited
+     * @return Whether the page was found
+     */
+    @Benchmark
+    public boolean unvisitedId() {
+        return this.crawler.hasVisitedLink(this.unvisitedIds[this.nextLookup()]);
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the index of the next lookup, wrapping around at the end
+     * @return The index
+     */
+    private int nextLookup() {
+
+        int index = this.next;
+        this.next = (index + 1) & (LOOKUPS - 1);
+        return index;
+    }
+
+    /**
+     * Returns the address of a page
+     * @param index The number of the page
+     * @return Its address
+     */
+    private static String address(int index) {
+        return "http://www.site" + (index % HOSTS) + ".example.com/articles/"
+                + (index / HOSTS) + "/page-" + index + ".html";
+    }
+}
@@ -0,0 +1,438 @@
+package com.resong.crawler;
+
+/**
+ * Command-line entry point that runs a crawl without any window, so the
+ * crawler can be used on servers and in batch jobs. Results are written
+ * as they arrive, one tab-separated line per page, to standard output or
+ * a file, and a summary of the crawl's throughput and of the time spent in
+ * each phase of the work on a page is printed at the end.
+ * No AWT or Swing class is loaded.
+ *
+ * Usage:
+ *   java com.resong.crawler.HeadlessCrawler [options] seed-url...
+ *
+ *   -k, --keyword TERM     term to search for; repeat or separate with
+ *                          commas to search for several at once
+ *   -s, --strategy NAME    bfs, dfs, best or virtual (default bfs)
+ *   -d, --depth N          maximum page depth (default 3)
+ *   -l, --links N          maximum number of links followed (default 3)
+ *   -w, --workers N        pages downloaded at once (default 1, or 256
+ *                          for virtual)
+ *   -p, --polite N,MS      crawl politely: at most N pages of one host
+ *                          downloaded at once, at least MS milliseconds
+ *                          apart (default off)
+ *   -o, --output FILE      file to write results to (default stdout)
+ *   -m, --metrics N        print the crawl's metrics to standard error
+ *                          every N seconds while crawling (default never)
+ *   -c, --checkpoint DIR   save the state of the crawl to a file in DIR
+ *                          every few seconds (bfs and single-worker dfs)
+ *   -r, --resume           carry on the crawl saved in the checkpoint
+ *                          directory, if there is one, instead of starting
+ *                          from the first seed
+ *   -q, --spill DIR        keep most of the queue of pages to visit in
+ *                          files in DIR (bfs with one worker)
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import com.resong.crawler.resources.*;
+
+public class HeadlessCrawler {
+
+	/////////////// Attributes ////////////////
+
+	private static final String CHECKPOINT_FILE = "crawl.checkpoint";	// name of the checkpoint file in the checkpoint directory
+
+	private static final long CHECKPOINT_MILLIS = 10000;	// least milliseconds between two checkpoints
+
+	private ArrayList<String> seeds;	// addresses to start crawling from
+
+	private ArrayList<String> keywords;	// terms to search for
+
+	private String strategy;	// how pages to visit are chosen
+
+	private int maxDepth;	// maximum page depth
+
+	private int maxLinks;	// maximum number of links followed
+
+	private int workers;	// number of pages downloaded at once, or 0 if not given
+
+	private int maxPerHost;	// maximum pages of one host downloaded at once, or 0 if not crawling politely
+
+	private long hostDelay;	// least milliseconds between two pages of one host when crawling politely
+
+	private String output;	// file to write results to, or null for stdout
+
+	private int metricsInterval;	// seconds between printing metrics while crawling, or 0 for never
+
+	private String checkpointDir;	// directory to save the state of the crawl in, or null for none
+
+	private boolean resume;	// true if the crawl saved in the checkpoint directory should be carried on
+
+	private String spillDir;	// directory to keep the queue of pages to visit in, or null to keep it in memory
+
+	private volatile boolean interrupted;	// true once the crawl has been asked to stop
+
+
+	////////////// Constructors ////////////////
+
+	/**
+	 * Constructor that reads the options and seed addresses
+	 * given on the command line
+	 * @param args command-line arguments
+	 * @throws IllegalArgumentException if the arguments are not valid
+	 */
+
+	public HeadlessCrawler(String[] args) {
+
+		this.seeds = new ArrayList<String>();
+		this.keywords = new ArrayList<String>();
+		this.strategy = "bfs";
+		this.maxDepth = 3;
+		this.maxLinks = 3;
+		this.workers = 0;
+		this.maxPerHost = 0;
+		this.hostDelay = 0;
+		this.output = null;
+		this.metricsInterval = 0;
+		this.checkpointDir = null;
+		this.resume = false;
+		this.spillDir = null;
+		this.interrupted = false;
+
+		for(int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+
+			// anything that isn't an option is a seed address
+
+			if(arg.startsWith("-") == false)
+			{
+				this.seeds.add(arg);
+				continue;
+			}
+
+			// the only option without a value
+
+			if(arg.equals("-r") == true || arg.equals("--resume") == true)
+			{
+				this.resume = true;
+				continue;
+			}
+
+			if(i + 1 == args.length)
+			{
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+
+			switch(arg)
+			{
+				case "-k": case "--keyword":
+					for(String term : value.split(","))
+					{
+						if(term.trim().isEmpty() == false)
+						{
+							this.keywords.add(term.trim());
+						}
+					}
+					break;
+				case "-s": case "--strategy":
+					this.strategy = value.toLowerCase();
+					break;
+				case "-d": case "--depth":
+					this.maxDepth = Integer.parseInt(value);
+					break;
+				case "-l": case "--links":
+					this.maxLinks = Integer.parseInt(value);
+					break;
+				case "-w": case "--workers":
+					this.workers = Math.max(1, Integer.parseInt(value));
+					break;
+				case "-p": case "--polite":
+					String[] limits = value.split(",");
+					this.maxPerHost = Math.max(1, Integer.parseInt(limits[0].trim()));
+					this.hostDelay = (limits.length > 1) ? Math.max(0, Long.parseLong(limits[1].trim())) : 0;
+					break;
+				case "-o": case "--output":
+					this.output = value;
+					break;
+				case "-m": case "--metrics":
+					this.metricsInterval = Math.max(0, Integer.parseInt(value));
+					break;
+				case "-c": case "--checkpoint":
+					this.checkpointDir = value;
+					break;
+				case "-q": case "--spill":
+					this.spillDir = value;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+
+		if(this.seeds.isEmpty() == true || this.keywords.isEmpty() == true)
+		{
+			throw new IllegalArgumentException("At least one seed URL and one keyword are needed");
+		}
+
+		if(this.resume == true && this.checkpointDir == null)
+		{
+			throw new IllegalArgumentException("--resume needs a checkpoint directory");
+		}
+
+		if(this.spillDir != null && (this.strategy.equals("bfs") == false || this.workers > 1))
+		{
+			throw new IllegalArgumentException("--spill only works with bfs and one worker");
+		}
+	}
+
+
+	//////////////Methods ///////////////
+
+	/**
+	 * Method that creates the crawler for the chosen strategy. Breadth
+	 * and depth first crawls with more than one worker use the parallel
+	 * crawlers, which give the same results in the same order
+	 * @param sink where the crawler records its results
+	 * @return the crawler
+	 * @throws IllegalArgumentException if the strategy is unknown
+	 */
+
+	private Crawler createCrawler(CrawlResultSink sink) {
+
+		String first = this.keywords.get(0);
+
+		switch(this.strategy)
+		{
+			case "bfs":
+				if(this.workers > 1)
+				{
+					return new ParallelBreadthCrawler(first, sink, this.workers);
+				}
+				BreadthCrawler crawler = new BreadthCrawler(first, sink);
+				if(this.spillDir != null)
+				{
+					crawler.setFrontierSpillDirectory(Paths.get(this.spillDir));
+				}
+				return crawler;
+			case "dfs":
+				return (this.workers > 1) ? new ParallelDepthCrawler(first, sink, this.workers) : new DepthCrawler(first, sink);
+			case "best":
+				return new BestFirstCrawler(first, sink);
+			case "virtual":
+				if(VirtualThreadCrawler.usesVirtualThreads() == false)
+				{
+					System.err.println("Virtual threads need Java 21 or later; downloading on a pool of ordinary threads");
+				}
+				return new VirtualThreadCrawler(first, sink, (this.workers > 0) ? this.workers : VirtualThreadCrawler.DEFAULT_MAX_IN_FLIGHT);
+			default:
+				throw new IllegalArgumentException("Unknown strategy " + this.strategy);
+		}
+	}
+
+	/**
+	 * Method that runs the crawl from every seed address in turn, writing
+	 * results as they arrive, and prints a summary at the end
+	 * @return true if the crawl ran without errors, false if its
+	 *         checkpoints could not be written or read
+	 * @throws IOException if the results cannot be written
+	 * @throws UnsupportedOperationException if checkpoints were asked
+	 *         for and the strategy cannot write them
+	 */
+
+	public boolean run() throws IOException {
+
+		CrawlResultWriter writer = new CrawlResultWriter(this.output == null ? System.out : new FileOutputStream(this.output));
+		final Crawler crawler = this.createCrawler(writer);
+
+		// search for every term at once if several were given
+
+		if(this.keywords.size() > 1)
+		{
+			crawler.setKeyWords(this.keywords);
+		}
+		crawler.setMaxDepth(this.maxDepth);
+		crawler.setMaxLinks(this.maxLinks);
+		if(this.maxPerHost > 0)
+		{
+			crawler.setPoliteness(this.maxPerHost, this.hostDelay);
+		}
+		if(this.checkpointDir != null)
+		{
+			Path file = Paths.get(this.checkpointDir, CHECKPOINT_FILE); // checkpoint file of the crawl
+			crawler.enableCheckpoints(file, CHECKPOINT_MILLIS);
+
+			try {
+				Files.createDirectories(file.getParent());
+
+				// the first search carries on the saved crawl instead of
+				// starting from its seed
+
+				if(this.resume == true && Files.exists(file) == true)
+				{
+					crawler.resume(file);
+				}
+			}
+
+			catch (IOException ex){
+				System.err.println("Could not resume from checkpoint " + file + ": " + ex.getMessage());
+				if(this.output != null)
+				{
+					writer.close();
+				}
+				return false;
+			}
+		}
+		crawler.setPrintProgress(false); // standard output may be taken by the results
+		crawler.setRetainText(false); // nothing looks at page text after matching
+
+		// time every download and count the bytes received
+
+		MeasuringFetcher fetcher = new MeasuringFetcher(crawler.getFetcher());
+		crawler.setFetcher(fetcher);
+
+		// stop crawling cleanly when interrupted, keeping the results so far
+
+		Thread main = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				interrupted = true;
+				crawler.stop();
+				try {
+					main.join(5000);
+				}
+				catch (InterruptedException ex){
+					// exit anyway
+				}
+			}
+		});
+
+		// print the metrics now and then from another thread; taking
+		// them doesn't pause the crawl
+
+		if(this.metricsInterval > 0)
+		{
+			final long interval = this.metricsInterval * 1000L;
+			Thread reporter = new Thread() {
+				public void run() {
+					try {
+						while(true)
+						{
+							Thread.sleep(interval);
+							System.err.print(crawler.getMetrics());
+						}
+					}
+					catch (InterruptedException ex){
+						// the crawl is over
+					}
+				}
+			};
+			reporter.setDaemon(true);
+			reporter.start();
+		}
+
+		long start = System.nanoTime();
+
+		for(int i = 0; i < this.seeds.size() && this.interrupted == false; i++)
+		{
+			crawler.search(this.seeds.get(i));
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		if(this.output == null)
+		{
+			writer.flush();
+		}
+		else
+		{
+			writer.close();
+		}
+
+		this.printSummary(writer, fetcher, elapsed);
+		System.err.print(crawler.getMetrics());
+
+		IOException failure = crawler.getCheckpointFailure(); // error that stopped the checkpoints, if any
+
+		if(failure != null)
+		{
+			System.err.println("Could not write checkpoint to " + this.checkpointDir + ": " + failure.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Method that prints how many pages were crawled and how fast,
+	 * to standard error so it doesn't mix with results on standard output
+	 * @param writer the writer that recorded the results
+	 * @param fetcher the fetcher that timed the downloads
+	 * @param elapsedNanos how long the crawl took
+	 */
+
+	private void printSummary(CrawlResultWriter writer, MeasuringFetcher fetcher, long elapsedNanos) {
+
+		double seconds = Math.max(elapsedNanos, 1) / 1e9;
+		long[] latencies = fetcher.getLatencies();
+
+		System.err.printf("pages: %d (%d matched, %d failed) in %.2f s%n",
+				writer.getResults(), writer.getMatches(), writer.getFailures(), seconds);
+		System.err.printf("throughput: %.1f pages/s, %.1f KB/s%n",
+				writer.getResults() / seconds, fetcher.getBytes() / 1024.0 / seconds);
+
+		if(latencies.length > 0)
+		{
+			System.err.printf("download latency (ms): p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+					MeasuringFetcher.percentile(latencies, 50), MeasuringFetcher.percentile(latencies, 90),
+					MeasuringFetcher.percentile(latencies, 99), latencies[latencies.length - 1] / 1e6);
+		}
+	}
+
+	/**
+	 * Main method that runs a crawl with the options
+	 * given on the command line
+	 * @param args command-line arguments
+	 */
+
+	public static void main(String[] args) {
+
+		HeadlessCrawler runner;
+
+		try {
+			runner = new HeadlessCrawler(args);
+		}
+
+		catch (IllegalArgumentException ex){
+			System.err.println(ex.getMessage());
+			System.err.println("Usage: java com.resong.crawler.HeadlessCrawler [-k keyword]... [-s bfs|dfs|best|virtual]"
+					+ " [-d depth] [-l links] [-w workers] [-p perhost,millis] [-o file] [-m seconds]"
+					+ " [-c dir [-r]] [-q dir] seed-url...");
+			System.exit(2);
+			return;
+		}
+
+		try {
+			if(runner.run() == false)
+			{
+				System.exit(1);
+			}
+		}
+
+		catch (UnsupportedOperationException ex){
+			System.err.println(ex.getMessage());
+			System.exit(2);
+		}
+
+		catch (IOException ex){
+			System.err.println("Could not write results: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
@@ -10,12 +10,17 @@ package com.resong.crawler;
  *
  */
 
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 import javax.swing.UIManager;
 
 import com.resong.crawler.resources.*;
 
 public class MyCrawlerWindow extends CrawlerWindow {
 
+	private static final String SPILL_DIRECTORY = "web-crawler-frontier"; // folder in the temporary directory a breadth first queue is kept in
+
 	///////////////// Constructor ///////////////////
 	
 	/**
@@ -65,7 +70,8 @@ public class MyCrawlerWindow extends CrawlerWindow {
     /**
      * Method that sets actions for when reset button is clicked.
      * Set the search term and URL fields to null, set the crawl 
-     * type to breadth-first, and set the max depth and links to 3
+     * type to breadth-first, set the max depth and links to 3
+     * and turn off polite crawling
      * @param evt method is called when reset button is clicked
      */
     
@@ -91,6 +97,14 @@ public class MyCrawlerWindow extends CrawlerWindow {
     	Integer maxLinks = new Integer(3);
     	maxLinksPerPageSpinner.setValue(maxLinks);
     	this.crawler.setMaxLinks(maxLinks);
+    	
+    	// crawl without waiting between pages of the same host
+    	
+    	politeOption.setSelected(false);
+    	
+    	// keep the breadth first queue in memory
+    	
+    	spillOption.setSelected(false);
     }
 
     
@@ -99,7 +113,12 @@ public class MyCrawlerWindow extends CrawlerWindow {
      * indicate 'stop' and inactivate other GUI components.
      * If breadth first search is selected, create a BreadthCrawler.
      * If depth first search is selected, create a DepthCrawler.
-     * Set max page depth and max links accessed from the spinners
+     * If concurrent search is selected, create a VirtualThreadCrawler.
+     * If best first search is selected, create a BestFirstCrawler.
+     * Search terms separated by commas are all searched for at once.
+     * Set max page depth and max links accessed from the spinners,
+     * and crawl politely if the polite option is selected. A breadth
+     * first crawl keeps its queue on disk if that option is selected
      */
     
     private void startCrawler() {
@@ -116,6 +135,13 @@ public class MyCrawlerWindow extends CrawlerWindow {
     	if(crawlTypeBFSOption.isSelected()){
  
     		BreadthCrawler bug = new BreadthCrawler(searchTermField.getText(), this.getResultList());
+    		
+    		// if keeping the queue on disk is selected, spill it
+    		// to a folder in the temporary directory
+    		
+    		if(spillOption.isSelected()){
+    			bug.setFrontierSpillDirectory(Paths.get(System.getProperty("java.io.tmpdir"), SPILL_DIRECTORY));
+    		}
     		this.crawler = bug;
     	}    
     	
@@ -127,6 +153,31 @@ public class MyCrawlerWindow extends CrawlerWindow {
     		this.crawler = bug;
     	}    
     	
+    	// if concurrent search is selected, create a VirtualThreadCrawler to use for searching
+    	
+    	if(crawlTypeConcurrentOption.isSelected()){
+    		 
+    		VirtualThreadCrawler bug = new VirtualThreadCrawler(searchTermField.getText(), this.getResultList());
+    		this.crawler = bug;
+    	}    
+    	
+    	// if best first search is selected, create a BestFirstCrawler to use for searching
+    	
+    	if(crawlTypeBestFirstOption.isSelected()){
+    		 
+    		BestFirstCrawler bug = new BestFirstCrawler(searchTermField.getText(), this.getResultList());
+    		this.crawler = bug;
+    	}    
+    	
+    	// if several search terms are separated by commas,
+    	// search for all of them at once
+    	
+    	String terms = searchTermField.getText();
+    	
+    	if(terms.contains(",")){
+    		this.crawler.setKeyWords(Arrays.asList(terms.split(",")));
+    	}
+    	
     	// set max depth and links accessed per page 
     	// to the value of the corresponding spinners
     	
@@ -136,6 +187,13 @@ public class MyCrawlerWindow extends CrawlerWindow {
     	int maxLinks = (Integer) maxLinksPerPageSpinner.getValue();
     	this.crawler.setMaxLinks(maxLinks);
     	
+    	// if polite crawling is selected, download one page
+    	// of a host at a time, a second apart
+    	
+    	if(politeOption.isSelected()){
+    		this.crawler.setPoliteness(1, 1000);
+    	}
+    	
     	// start crawling from the address entered into the seed URL field
     	
     	this.startCrawlerThread(seedURLField.getText());
@@ -168,7 +226,7 @@ public class MyCrawlerWindow extends CrawlerWindow {
     
     /**
      * Method to enable or disable all labels, text fields,
-     * buttons (except search/stop), radio buttons and spinners
+     * buttons (except search/stop), radio buttons, spinners and check box
      * @param enabled true if components are enabled, else false
      */
     
@@ -194,12 +252,19 @@ public class MyCrawlerWindow extends CrawlerWindow {
     	
     	crawlTypeBFSOption.setEnabled(enabled);
     	crawlTypeDFSOption.setEnabled(enabled);
+    	crawlTypeConcurrentOption.setEnabled(enabled);
+    	crawlTypeBestFirstOption.setEnabled(enabled);
     	
     	// enable or disable spinners
     	
     	maxLinksPerPageSpinner.setEnabled(enabled);
     	maxDepthSpinner.setEnabled(enabled);
     	
+    	// enable or disable the polite and spill options
+    	
+    	politeOption.setEnabled(enabled);
+    	spillOption.setEnabled(enabled);
+    	
     }
 
     /**
@@ -0,0 +1,225 @@
+package com.resong.crawler.resources;
+
+/**
+ * Subclass of the Crawler class that creates a web crawler, searching for a term using the
+ * best first approach: the page visited next is always the waiting page most likely to
+ * contain the term. Takes a keyword to search for and a list to store the crawl results in,
+ * and has a search method.
+ */
+
+import java.util.HashMap;
+import com.resong.crawler.structures.queue.*;
+
+public class BestFirstCrawler extends Crawler {
+
+	/////////////// Attributes ////////////////
+
+	private static final int ANCHOR_SCORE = 16;	// score of a link whose text contains the search term
+
+	private static final int MATCHING_PAGE_SCORE = 8;	// score of a link found on a page containing the search term
+
+	private static final int DEPTH_PENALTY = 1;	// score taken off a link for each level below the starting page
+
+	private static final int HOST_PAGES_PER_PENALTY = 4;	// pages of one host visited for each point taken off its links
+
+	private static final int MAX_HOST_PENALTY = 8;	// most score taken off a link for pages of its host already visited
+
+	private IndexedIntPriorityQueue pagesToVisit;	// ids of pages to visit, by score
+
+	private HashMap<String, Integer> hostVisits;	// number of pages of each host visited
+
+
+	////////////// Constructors ////////////////
+
+	/**
+	 * Constructor that creates a best first crawler taking
+	 * a search term and a list to store results in.
+	 * @param keyword search term
+	 * @param list list that stores results of each page crawled
+	 */
+
+	public BestFirstCrawler(String keyword, CrawlResultSink list) {
+		super(keyword, list);
+		this.pagesToVisit = new IndexedIntPriorityQueue();
+		this.hostVisits = new HashMap<String, Integer>();
+	}
+
+
+	//////////////Methods ///////////////
+
+	/**
+	 * Search method looks for the search term starting
+	 * at the String address while it has not been requested
+	 * that the crawl be stopped.
+	 * @param address URL of page to start searching from
+	 */
+
+	public void search(String address) {
+
+		int linksEnqueued = 0; // no links enqueued
+
+		super.setCrawling(true); // set to indicate crawler is crawling
+		this.hostVisits.clear(); // hosts visited by an earlier search don't count against this one
+
+
+		// create page object for starting URL
+		// and add it to the queue
+
+		int startId = this.getUrlDictionary().intern(address);
+		this.setLinkDepth(startId, 0);
+		this.pagesToVisit.offer(startId, 0);
+		linksEnqueued++;
+
+		// while there are still pages to visit
+		// and it hasn't been requested to stop crawling
+
+		while(this.pagesToVisit.isEmpty() == false && this.stopCrawl == false)
+		{
+
+			// take the page with the best score off the queue
+			// and print a message indicating it's about to be visited
+
+			int id = this.pagesToVisit.removeFirst(); // id of the page's address
+			Page page = this.pageForLink(id);
+			linksEnqueued--;
+			this.printVisiting(page);
+
+			try {
+
+				// increment the order of the page about to be visited,
+				// download the page and add its address to the visited links
+
+				this.crawlingNextPage();
+				this.downloadPage(page);
+				this.addVisitedLink(page.getAddress());
+				String host = this.getLinkHost(id); // host of the page
+				this.hostVisits.put(host, this.hostVisits.getOrDefault(host, 0) + 1);
+
+				boolean containsText = this.matchesKeyWords(page); // true if page contains search term, false otherwise
+
+
+				// if it does contain the search term, print a message
+				// indicating a match has been found
+
+				if(containsText == true)
+				{
+					this.printMatch(page);
+				}
+
+				super.addCrawledPage(page, containsText); // add page and its search outcome to crawl results
+
+
+				long frontierStart = System.nanoTime(); // time at which the work on the page's links starts
+				int checked = 0; // number of links checked
+				int queued = 0; // number of links added to the queue
+
+				// if current page depth is less than maximum page depth
+
+				if(page.getDepth() < this.getMaxDepth())
+				{
+					// go through the links on the page
+
+					for(int i = 0; i < page.getLinkCount(); i++)
+					{
+						int link = page.getLinkId(i); // id of the next link on the current page
+						checked++;
+
+						boolean visited = this.hasVisitedLink(link); // true if link has been visited, else false
+						boolean check = this.pagesToVisit.contains(link); // true if link is already waiting in the queue, else false
+
+						// if it is already waiting, it moves up the
+						// queue when this page gives it a better score
+
+						if(check == true)
+						{
+							this.pagesToVisit.offer(link, this.scoreLink(page, i, containsText));
+						}
+
+						// if it hasn't been visited already, and the links
+						// added don't exceed the maximum number of links set,
+						// add it to the queue
+
+						else if(visited == false && linksEnqueued < this.getMaxLinks())
+						{
+							this.setLinkDepth(link, page.getLinkDepth());
+							this.pagesToVisit.offer(link, this.scoreLink(page, i, containsText));
+							linksEnqueued++;
+							queued++;
+						}
+					}
+				}
+
+				this.linksChecked(frontierStart, checked, queued); // record the work done on the links
+			}
+
+			catch (Exception ex){
+
+				// prints out error message and adds the failed page to crawl results
+				String error = "An error occurred while accessing " + page.getAddress();
+				super.addFailedPage(page, error);
+			}
+
+			this.forgetVisitedLink(page); // drop the page's address if visited links are kept in a filter
+		}
+
+		super.setCrawling(false); // set so crawler is no longer crawling
+	}
+
+	/**
+	 * Method that scores a link found on a page; the links with the best
+	 * scores are visited first. A link scores higher if its text contains
+	 * the search term or the page it was found on does, and lower the
+	 * deeper it is and the more pages of its host have been visited, so
+	 * that the crawl doesn't get stuck on one site.
+	 * Subclasses can override this to score links differently
+	 * @param page page on which the link was found
+	 * @param index index of the link on the page
+	 * @param pageMatched true if the page contains the search term, else false
+	 * @return score of the link
+	 */
+
+	protected int scoreLink(Page page, int index, boolean pageMatched) {
+
+		int score = -DEPTH_PENALTY * page.getLinkDepth();
+
+		if(page.anchorMatches(index) == true)
+		{
+			score += ANCHOR_SCORE;
+		}
+
+		if(pageMatched == true)
+		{
+			score += MATCHING_PAGE_SCORE;
+		}
+
+		// take a point off for every few pages of the link's host visited
+
+		String host = this.getLinkHost(page.getLinkId(index)); // worked out once per link, not once per page it is found on
+		int visits = this.hostVisits.getOrDefault(host, 0);
+		score -= Math.min(visits / HOST_PAGES_PER_PENALTY, MAX_HOST_PENALTY);
+
+		return score;
+	}
+
+	/**
+	 * Method that downloads a page, also looking for the search term
+	 * in the text of each of its links so they can be scored
+	 * @param page page to download
+	 * @throws Exception if the download or parsing of the page fails
+	 */
+
+	protected void downloadPage(Page page) throws Exception {
+		page.scoreAnchors(this.getKeyWords());
+		super.downloadPage(page);
+	}
+	
+	/**
+	 * Method that gets the number of pages waiting in the queue
+	 * @return number of pages waiting to be visited
+	 */
+	
+	public int getFrontierSize() {
+		return this.pagesToVisit.size();
+	}
+
+}
@@ -8,14 +8,22 @@ package com.resong.crawler.resources;
  * @author Rebecca Song
  */
 
-import java.util.Iterator;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.function.ToIntFunction;
 import com.resong.crawler.structures.queue.*;
 
 public class BreadthCrawler extends Crawler {
 	
 	/////////////// Attributes ////////////////
 	
-	private CircularArrayQueue<Page> pagesToVisit;	// queue of pages to visit
+	private static final long POLL_MILLIS = 50; // how often a polite crawl waiting for a host checks for a stop request
+	
+	private IntQueueADT pagesToVisit;	// queue of ids of pages to visit
+	
+	private HostShardedQueue<Integer> hostQueues;	// per-host queues used instead of pagesToVisit when crawling politely, else null
+	
+	private BitSet waiting;	// ids of pages waiting in the queue
 	
 	
 	////////////// Constructors ////////////////
@@ -27,14 +35,94 @@ public class BreadthCrawler extends Crawler {
 	 * @param list list that stores results of each page crawled
 	 */
 	
-	public BreadthCrawler(String keyword, CrawlResultList list) {
+	public BreadthCrawler(String keyword, CrawlResultSink list) {
 		super(keyword, list);
-		this.pagesToVisit = new CircularArrayQueue<Page>();
+		this.pagesToVisit = new IntCircularArrayQueue();
+		this.hostQueues = null;
+		this.waiting = new BitSet();
 	}
 	
 	
 	//////////////Methods ///////////////
 	
+	/**
+	 * Method that makes the crawler keep most of its queue of pages to
+	 * visit on disk, in segment files in the given directory, so that very
+	 * large crawls don't run out of memory. Only the ends of the queue stay
+	 * in memory. Must be called before searching.
+	 * @param directory directory to keep the segment files in
+	 */
+	
+	public void setFrontierSpillDirectory(Path directory) {
+		this.pagesToVisit = new SpillingIntQueue(directory);
+	}
+	
+	/**
+	 * Private method that adds the id of a page to the end of the queue,
+	 * remembering the depth it will be visited at
+	 * @param id id of the page's address
+	 * @param depth depth of the page
+	 */
+	
+	private void enqueue(int id, int depth) {
+		
+		this.setLinkDepth(id, depth);
+		this.waiting.set(id);
+		this.linkQueued(id, depth);
+		
+		if(this.hostQueues != null)
+		{
+			this.hostQueues.enqueue(id);
+		}
+		else
+		{
+			this.pagesToVisit.enqueue(id);
+		}
+	}
+	
+	/**
+	 * Private method that takes the id of the next page off the queue.
+	 * When crawling politely, waits until a host is ready, unless the
+	 * crawl is stopped meanwhile
+	 * @return id of the page to visit next, or -1 if the crawl was stopped
+	 */
+	
+	private int dequeue() {
+		
+		int id;
+		
+		if(this.hostQueues != null)
+		{
+			Integer next = null; // id handed out by the host queues, or null while no host is ready
+			
+			while(next == null && this.stopCrawl == false)
+			{
+				next = this.hostQueues.poll(POLL_MILLIS);
+			}
+			if(next == null)
+			{
+				return -1;
+			}
+			id = next;
+		}
+		else
+		{
+			id = this.pagesToVisit.dequeue();
+		}
+		
+		this.waiting.clear(id);
+		return id;
+	}
+	
+	/**
+	 * Private method that returns the number of pages waiting in the queue
+	 * @return number of pages to visit
+	 */
+	
+	private int waitingPages() {
+		return (this.hostQueues != null) ? this.hostQueues.size() : this.pagesToVisit.size();
+	}
+	
 	/**
 	 * Search method looks for the search term starting
 	 * at the String address while it has not been requested
@@ -47,136 +135,186 @@ public class BreadthCrawler extends Crawler {
 		int linksEnqueued = 0; // no links enqueued 
 		
 		super.setCrawling(true); // set to indicate crawler is crawling
+		this.startCheckpoints();
 		
+		// when crawling politely, hand out pages host by host
 		
-		// create page object for starting URL
-		// and enqueue it to the queue
-		
-		Page startPage = new Page(address);
-		this.pagesToVisit.enqueue(startPage);
-		linksEnqueued++;
+		this.hostQueues = this.newHostQueue(new ToIntFunction<Integer>() {
+			
+			public int applyAsInt(Integer id) {
+				return id;
+			}
+		});
 		
-		// while there are still pages to visit 
-		// and it hasn't been requested to stop crawling
+		int[] frontier = this.takeRestoredFrontier(); // pages left to visit by a resumed crawl, or null
 		
-		while(this.pagesToVisit.size() != 0 && this.stopCrawl == false)
+		if(frontier != null)
+		{
+			// carry on with the pages the resumed crawl had left to visit
+			
+			for(int i = 0; i < frontier.length; i += 2)
+			{
+				this.enqueue(frontier[i], frontier[i + 1]);
+				linksEnqueued++;
+			}
+		}
+		else
 		{
+			// create page object for starting URL
+			// and enqueue it to the queue
+			
+			this.enqueue(this.getUrlDictionary().intern(address), 0);
+			linksEnqueued++;
+		}
+		
+		try {
+			
+			// while there are still pages to visit 
+			// and it hasn't been requested to stop crawling
+		
+			while(this.waitingPages() != 0 && this.stopCrawl == false)
+			{
 			
-			// dequeue the next page from the pagesToVisit queue 
-			// and print a message indicating it's about to be visited
+				// dequeue the next page from the pagesToVisit queue 
+				// and print a message indicating it's about to be visited
 			
-			Page page = this.pagesToVisit.dequeue();
-			linksEnqueued--;
-			this.printVisiting(page);
+				int id = this.dequeue(); // id of the page's address
 			
-			try {
+				if(id < 0)
+				{
+					break;
+				}
+			
+				Page page = this.pageForLink(id);
+				linksEnqueued--;
+				this.printVisiting(page);
+			
+				try {
 				
-				// increment the order of the page about to be visited,
-				// download the page and add its address to the visited links
+					// increment the order of the page about to be visited,
+					// download the page and add its address to the visited links
 				
-				this.crawlingNextPage();
-				WebHelper.downloadPage(page);
-				this.addVisitedLink(page.getAddress());
+					this.crawlingNextPage();
+					this.downloadPage(page);
+					this.addVisitedLink(page.getAddress());
 								
-				boolean containsText = page.containsText(this.getKeyWord()); // true if page contains search term, false otherwise
+					boolean containsText = this.matchesKeyWords(page); // true if page contains search term, false otherwise
 			
 				
-				// if it does contain the search term, print a message
-				// indicating a match has been found
+					// if it does contain the search term, print a message
+					// indicating a match has been found
 				
-				if(containsText == true)
-				{
-					this.printMatch(page);
-				}
+					if(containsText == true)
+					{
+						this.printMatch(page);
+					}
 				
-				super.addCrawledPage(page, containsText); // add page and its search outcome to crawl results
+					super.addCrawledPage(page, containsText); // add page and its search outcome to crawl results
 			
 				
-				// if current page depth is less than maximum page depth
+					long frontierStart = System.nanoTime(); // time at which the work on the page's links starts
+					int checked = 0; // number of links checked
+					int queued = 0; // number of links added to the queue
 				
-				if(page.getDepth() < this.getMaxDepth())
-				{		
-					Iterator<Page> it = page.linkedPageIterator(); // create an iterator
-					
-					// while there are links to iterate over, and the links added
-					// don't exceed the maximum number of links set
+					// if current page depth is less than maximum page depth
+				
+					if(page.getDepth() < this.getMaxDepth())
+					{		
+						// while there are links to go through, and the links added
+						// don't exceed the maximum number of links set
 					
-					while(it.hasNext() == true && linksEnqueued < this.getMaxLinks())
-					{	
-						Page link = it.next(); // assign the page object link to the next link on the current page
-						
+						for(int i = 0; i < page.getLinkCount() && linksEnqueued < this.getMaxLinks(); i++)
+						{	
+							int link = page.getLinkId(i); // id of the next link on the current page
+							checked++;
 						
-						boolean visited = this.hasVisitedLink(link.getAddress()); // true if link has been visited, else false				
-						boolean check = this.check(link); // true if link is already stored in pagesToVisit queue, else false
+							boolean visited = this.hasVisitedLink(link); // true if link has been visited, else false				
+							boolean check = this.waiting.get(link); // true if link is already waiting in the queue, else false
 						
-						// if it hasn't been visited already, and it's not
-						// stored in pagesToVisit queue, add it to the queue
+							// if it hasn't been visited already, and it's not
+							// waiting in the queue, add it to the queue
 						
-						if( visited == false && check == false)
-						{
-							this.pagesToVisit.enqueue(link);
-							linksEnqueued++;
+							if( visited == false && check == false)
+							{
+								this.enqueue(link, page.getLinkDepth());
+								linksEnqueued++;
+								queued++;
+							}
 						}
-					}
-				}	
-			}
+					}	
+				
+					this.linksChecked(frontierStart, checked, queued); // record the work done on the links
+				}
 			
-			catch (Exception ex){
+				catch (Exception ex){
 				
-				// prints out error message and adds the failed page to crawl results
-				String error = "An error occurred while accessing " + page.getAddress();
-				super.addFailedPage(page, error);
-			} 			
-		} 	
-		
-		super.setCrawling(false); // set so crawler is no longer crawling
-	}
-	
-	/**
-	 * Private method to check if the page object link
-	 * is already in the queue or not.
-	 * @param link page currently being crawled
-	 * @return true if link is already in queue, else false
-	 */
-	
-	private boolean check(Page link){
-		
-		boolean check = false; // initialize check to false
-		
-		Page p; // create page p reference variable
-		CircularArrayQueue<Page> temp = new CircularArrayQueue<Page>(); // create temporary queue
-		
-		// while check is false
-		
-		while(check = false){	
+					// prints out error message and adds the failed page to crawl results
+					String error = "An error occurred while accessing " + page.getAddress();
+					super.addFailedPage(page, error);
+				} 			
 			
-			// if pagesToVisit queue is not empty
+				// let the next page of this host be visited
 			
-			if(!this.pagesToVisit.isEmpty()){
-				
-				// dequeue the pagesToVisit queue
-				// and enqueue the temp queue
-				
-				p = this.pagesToVisit.dequeue();
-				temp.enqueue(p);
-								
-				// if address of recently enqueued page is the same
-				// as address of parameter link, assign true to check
-				
-				if(p.getAddress().equals(link.getAddress())){
-					check = true;
+				if(this.hostQueues != null)
+				{
+					this.hostQueues.release(id);
 				}
-			}			
 			
-			// else assign temp queue to pagesToVisit queue
+				this.forgetVisitedLink(page); // drop the page's address if visited links are kept in a filter
 			
-			else{
-				this.pagesToVisit = temp;
-			}
+				this.checkpointIfDue(); // write the crawl to the checkpoint file now and then
+			} 	
+		
 		}
 		
-		return check; // return check
+		finally {
+			
+			// delete the segment files of a queue kept on disk, which a
+			// stopped or failed crawl would otherwise leave behind
+			
+			if(this.pagesToVisit instanceof SpillingIntQueue)
+			{
+				((SpillingIntQueue) this.pagesToVisit).close();
+				this.waiting.clear();
+			}
+			
+			this.finishCheckpoints();
+			super.setCrawling(false); // set so crawler is no longer crawling
+		}
 	}
 	
+	/**
+	 * Method indicating whether a link found on a page will certainly not
+	 * be followed: links already waiting in the queue are skipped as well
+	 * as visited links
+	 * @param page page on which the link was found
+	 * @param address address of the link
+	 * @return true if the link will be skipped, else false
+	 */
 	
-}
\ No newline at end of file
+	protected boolean skipsLink(Page page, String address) {
+		int id = this.getUrlDictionary().find(address);
+		return super.skipsLink(page, address) || (id >= 0 && this.waiting.get(id));
+	}
+	
+	/**
+	 * Method indicating that this crawler can write checkpoints and
+	 * resume from them, as its queue holds every page left to visit
+	 * between two pages
+	 * @return true
+	 */
+	
+	protected boolean supportsCheckpoints() {
+		return true;
+	}
+	
+	/**
+	 * Method that gets the number of pages waiting in the queue
+	 * @return number of pages waiting to be visited
+	 */
+	
+	public int getFrontierSize() {
+		return this.waitingPages();
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.resong.crawler.resources;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Searches the raw bytes of a document for a keyword, ignoring the case of
+ * ASCII letters, without decoding the document into characters. The
+ * keyword is encoded in the character set of the document once, and the
+ * document is scanned eight bytes at a time for the first byte of the
+ * keyword, using ordinary long arithmetic; only the positions found that
+ * way are compared with the whole keyword.
+ *
+ * The keyword is matched as it is written in the document, so it is also
+ * found inside markup, and not found where the document writes it with
+ * character entities or breaks it over several lines.
+ */
+public class ByteKeywordSearch {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // A long with every byte set to one
+    private static final long ONES = 0x0101010101010101L;
+
+    // A long with the high bit of every byte set
+    private static final long HIGHS = 0x8080808080808080L;
+
+    // Reads eight bytes of an array at once, at any index
+    private static final VarHandle WORD =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The character set the keyword was encoded in
+    private Charset charset;
+
+    // The keyword in lower case, encoded in the document's character set
+    private byte[] keyword;
+
+    // For each byte of the keyword, the bits to set before comparing a
+    // document byte with it: 0x20 for letters, so that case is ignored
+    private byte[] fold;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new ByteKeywordSearch. Use ByteKeywordSearch.of.
+     * @param charset The character set of the documents searched
+     * @param keyword The encoded keyword, in lower case
+     */
+    private ByteKeywordSearch(Charset charset, byte[] keyword) {
+
+        this.charset = charset;
+        this.keyword = keyword;
+        this.fold = new byte[keyword.length];
+        for (int i = 0; i < keyword.length; i++) {
+            if (keyword[i] >= 'a' && keyword[i] <= 'z') {
+                this.fold[i] = 0x20;
+            }
+        }
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Prepares a search for a keyword in documents of the specified
+     * character set. Bytes can only be compared ignoring case for ASCII
+     * letters, so the keyword may not contain other characters that have
+     * an upper and a lower case.
+     * @param keyword The keyword to search for
+     * @param charset The character set of the documents searched
+     * @return A search for the keyword, or null if the keyword cannot be
+     *         searched for in bytes of that character set
+     */
+    public static ByteKeywordSearch of(String keyword, Charset charset) {
+
+        String term = KeywordAutomaton.lowerCase(keyword);
+        if (term.isEmpty() || !HtmlTokenizer.supports(charset) || !charset.newEncoder().canEncode(term)) {
+            return null;
+        }
+
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c >= 128 && Character.toUpperCase(c) != c) {
+                return null;
+            }
+        }
+
+        return new ByteKeywordSearch(charset, term.getBytes(charset));
+    }
+
+    /**
+     * Returns the character set of the documents searched
+     * @return The character set the keyword was encoded in
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * Returns whether the keyword occurs in a range of bytes
+     * @param data An array holding the document
+     * @param start The index of the first byte of the document
+     * @param length The number of bytes in the document
+     * @return True, if the keyword occurs; false, otherwise
+     */
+    public boolean foundIn(byte[] data, int start, int length) {
+        return this.indexIn(data, start, length) >= 0;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the keyword in a range
+     * of bytes
+     * @param data An array holding the document
+     * @param start The index of the first byte of the document
+     * @param length The number of bytes in the document
+     * @return The index of the keyword, or -1 if it does not occur
+     */
+    public int indexIn(byte[] data, int start, int length) {
+
+        int last = start + length - this.keyword.length;
+        long first = (this.keyword[0] & 0xFF) * ONES;
+        long firstFold = (this.fold[0] & 0xFF) * ONES;
+        int i = start;
+
+        // Find bytes equal to the first byte of the keyword eight at a time:
+        // after the xor, those bytes are zero, and the subtraction borrows
+        // into the high bit of the lowest of them. Bytes above it may be
+        // flagged wrongly, but every flagged byte is compared in full.
+        for (; i <= last && i + Long.BYTES <= start + length; i += Long.BYTES) {
+            long x = ((long) WORD.get(data, i) | firstFold) ^ first;
+            long zeros = (x - ONES) & ~x & HIGHS;
+
+            while (zeros != 0) {
+                int at = i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+                if (at > last) {
+                    return -1;
+                }
+                if (this.matchesAt(data, at)) {
+                    return at;
+                }
+                zeros &= zeros - 1;
+            }
+        }
+
+        // Compare the remaining positions one byte at a time
+        for (; i <= last; i++) {
+            if (this.matchesAt(data, i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns whether the keyword occurs at an index
+     * @param data An array holding the document
+     * @param at The index to compare the keyword with
+     * @return True, if the keyword occurs there; false, otherwise
+     */
+    private boolean matchesAt(byte[] data, int at) {
+
+        for (int j = 0; j < this.keyword.length; j++) {
+            if ((data[at + j] | this.fold[j]) != this.keyword[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
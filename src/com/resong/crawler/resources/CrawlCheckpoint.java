@@ -0,0 +1,592 @@
+package com.resong.crawler.resources;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the state of a crawl to a binary checkpoint file as the crawl goes,
+ * and reads it back so that the crawl can be resumed. The file is a journal:
+ * each checkpoint appends one block holding only what happened since the
+ * previous one, namely the URLs given new ids, the links queued, and the pages
+ * finished with their results. The frontier is whatever was queued and not
+ * yet finished, and the visited links are the pages finished without an
+ * error.
+ *
+ * The crawl thread only hands over the events gathered since the last
+ * checkpoint; a background thread encodes the block, appends it and forces
+ * it to disk, so crawling doesn't wait for the file. Every block ends with a
+ * checksum, and a block cut short by a crash is ignored when the file is
+ * read. The first checkpoint of a crawl also records everything already in
+ * the result list, and is written to a new file that then replaces the old
+ * one, so the journal never grows across resumed crawls.
+ */
+public class CrawlCheckpoint {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // Starts a checkpoint file
+    private static final int FILE_MAGIC = 0x57434B31;
+
+    // Starts each block of a checkpoint file
+    private static final int BLOCK_MAGIC = 0x424C4B31;
+
+    // The depth recorded for an event that finishes a page
+    private static final int FINISHED = -1;
+
+    // The suffix of the file the first checkpoint is written to
+    private static final String NEW_FILE_SUFFIX = ".new";
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The checkpoint file
+    private Path file;
+
+    // The least time between two checkpoints, in nanoseconds
+    private long intervalNanos;
+
+    // The time the last checkpoint was taken
+    private long lastCheckpoint;
+
+    // Assigns ids to the URLs of the crawl
+    private UrlDictionary urls;
+
+    // The number of URLs written to the file so far
+    private int urlsWritten;
+
+    // Pairs of link id and depth queued since the last checkpoint, or of
+    // page id and FINISHED for pages finished since then
+    private int[] events;
+
+    // The number of ints used in events
+    private int eventCount;
+
+    // The results of the pages finished since the last checkpoint, in order
+    private ArrayList<CrawlResult> results;
+
+    // Writes checkpoints in the background, or null before the crawl starts
+    private ExecutorService writer;
+
+    // The file being written to, or null before the first checkpoint
+    private FileChannel channel;
+
+    // The error that stopped checkpoints from being written, or null
+    private volatile IOException failure;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new CrawlCheckpoint
+     * @param file The checkpoint file
+     * @param intervalMillis The least number of milliseconds between two
+     *                       checkpoints
+     */
+    public CrawlCheckpoint(Path file, long intervalMillis) {
+
+        this.file = file;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMillis));
+        this.events = new int[1024];
+        this.eventCount = 0;
+        this.results = new ArrayList<CrawlResult>();
+        this.failure = null;
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the checkpoint file
+     * @return The path of the file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the error that stopped checkpoints from being written
+     * @return The error, or null if every checkpoint was written
+     */
+    public IOException getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * Starts recording a crawl. The results already in the list are recorded
+     * as finished pages, so that the first checkpoint holds the whole crawl.
+     * @param urls Assigns ids to the URLs of the crawl
+     * @param existing The results recorded before the crawl started
+     */
+    public synchronized void start(UrlDictionary urls, List<CrawlResult> existing) {
+
+        this.urls = urls;
+        this.urlsWritten = 0;
+        this.eventCount = 0;
+        this.results.clear();
+        this.closeChannel();
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "CrawlCheckpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.lastCheckpoint = System.nanoTime();
+
+        for (CrawlResult result : existing) {
+            this.finished(urls.intern(result.getPage().getAddress()), result);
+        }
+    }
+
+    /**
+     * Records that a link was added to the frontier
+     * @param id The id of the link
+     * @param depth The depth the link will be visited at
+     */
+    public synchronized void queued(int id, int depth) {
+        this.addEvent(id, depth);
+    }
+
+    /**
+     * Records that a page was taken off the frontier and finished
+     * @param id The id of the page
+     * @param result The result of the page
+     */
+    public synchronized void finished(int id, CrawlResult result) {
+
+        this.addEvent(id, FINISHED);
+        this.results.add(result);
+    }
+
+    /**
+     * Returns whether enough time has passed since the last checkpoint for
+     * another to be taken
+     * @return True, if a checkpoint is due; false, otherwise
+     */
+    public boolean isDue() {
+        return System.nanoTime() - this.lastCheckpoint >= this.intervalNanos;
+    }
+
+    /**
+     * Takes a checkpoint, handing what happened since the last one to the
+     * background writer. Must be called between pages, when every finished
+     * page's links have been queued.
+     * @param sequence The sequence number of the last page crawled
+     */
+    public synchronized void checkpoint(int sequence) {
+
+        if (this.writer == null) {
+            return;
+        }
+
+        final int[] batch = Arrays.copyOf(this.events, this.eventCount);
+        final CrawlResult[] batchResults = this.results.toArray(new CrawlResult[this.results.size()]);
+        final int fromUrl = this.urlsWritten;
+        final int toUrl = this.urls.size();
+        final int seq = sequence;
+
+        this.eventCount = 0;
+        this.results.clear();
+        this.urlsWritten = toUrl;
+        this.lastCheckpoint = System.nanoTime();
+
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeBlock(seq, fromUrl, toUrl, batch, batchResults);
+            }
+        });
+    }
+
+    /**
+     * Takes a last checkpoint and waits until every checkpoint has been
+     * written and the file is closed
+     * @param sequence The sequence number of the last page crawled
+     */
+    public void finish(int sequence) {
+
+        this.checkpoint(sequence);
+
+        ExecutorService done;
+        synchronized (this) {
+            done = this.writer;
+            this.writer = null;
+        }
+        if (done == null) {
+            return;
+        }
+
+        done.shutdown();
+        try {
+            done.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.closeChannel();
+    }
+
+    /**
+     * Reads a checkpoint file, giving the URLs in it ids in a dictionary
+     * @param file The checkpoint file
+     * @param urls The dictionary to give the URLs ids in
+     * @return The state of the crawl at the last complete checkpoint
+     * @throws IOException If the file cannot be read or is not a checkpoint
+     */
+    public static State load(Path file, UrlDictionary urls) throws IOException {
+
+        State state = new State();
+        int[] ids = new int[1024];
+        int idCount = 0;
+        LinkedHashMap<Integer, Integer> frontier = new LinkedHashMap<Integer, Integer>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException(file + " is not a crawl checkpoint");
+            }
+
+            byte[] block;
+            while ((block = readBlock(in)) != null) {
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(block));
+
+                state.sequence = data.readInt();
+
+                // Give the new URLs ids in this dictionary
+                int first = data.readInt();
+                int count = data.readInt();
+                if (first != idCount) {
+                    throw new IOException(file + " has a gap in its URLs");
+                }
+                if (idCount + count > ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(ids.length * 2, idCount + count));
+                }
+                for (int i = 0; i < count; i++) {
+                    ids[idCount++] = urls.intern(readString(data));
+                }
+
+                // Replay the frontier and the finished pages in order
+                int events = data.readInt();
+                for (int i = 0; i < events; i++) {
+                    int id = ids[data.readInt()];
+                    int depth = data.readInt();
+
+                    if (depth == FINISHED) {
+                        frontier.remove(id);
+                        state.results.add(readResult(data, urls.address(id)));
+                    } else {
+                        frontier.remove(id);
+                        frontier.put(id, depth);
+                    }
+                }
+            }
+        }
+
+        state.frontier = new int[frontier.size() * 2];
+        int i = 0;
+        for (Iterator<Map.Entry<Integer, Integer>> it = frontier.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            state.frontier[i++] = entry.getKey();
+            state.frontier[i++] = entry.getValue();
+        }
+        return state;
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Adds a pair of ints to the events since the last checkpoint
+     * @param id The id of a link or page
+     * @param depth The depth of a queued link, or FINISHED
+     */
+    private void addEvent(int id, int depth) {
+
+        if (this.eventCount + 2 > this.events.length) {
+            this.events = Arrays.copyOf(this.events, this.events.length * 2);
+        }
+        this.events[this.eventCount++] = id;
+        this.events[this.eventCount++] = depth;
+    }
+
+    /**
+     * Encodes one checkpoint and appends it to the file. Runs on the
+     * background writer.
+     * @param sequence The sequence number of the last page crawled
+     * @param fromUrl The first id of the URLs to write
+     * @param toUrl The id after the last URL to write
+     * @param batch The events to write
+     * @param batchResults The results of the finished pages among the events
+     */
+    private void writeBlock(int sequence, int fromUrl, int toUrl, int[] batch, CrawlResult[] batchResults) {
+
+        if (this.failure != null) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+
+            data.writeInt(sequence);
+            data.writeInt(fromUrl);
+            data.writeInt(toUrl - fromUrl);
+            for (int id = fromUrl; id < toUrl; id++) {
+                writeString(data, this.urls.address(id));
+            }
+
+            data.writeInt(batch.length / 2);
+            int result = 0;
+            for (int i = 0; i < batch.length; i += 2) {
+                data.writeInt(batch[i]);
+                data.writeInt(batch[i + 1]);
+                if (batch[i + 1] == FINISHED) {
+                    writeResult(data, batchResults[result++]);
+                }
+            }
+            data.flush();
+
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            ByteBuffer block = ByteBuffer.allocate(payload.length + 16);
+            block.putInt(BLOCK_MAGIC).putInt(payload.length).put(payload).putLong(crc.getValue());
+            block.flip();
+
+            // The first checkpoint starts a new file, which replaces the old
+            // one only once it is safely on disk
+            boolean first = (this.channel == null);
+            Path target = first ? this.newFile() : this.file;
+            if (first) {
+                this.channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                this.channel.write(ByteBuffer.allocate(4).putInt(0, FILE_MAGIC));
+            }
+
+            while (block.hasRemaining()) {
+                this.channel.write(block);
+            }
+            this.channel.force(false);
+
+            // The new file is closed before it replaces the old one, since
+            // an open file cannot be moved on every platform, and the
+            // checkpoint file itself is opened to append the next blocks
+            if (first) {
+                this.closeChannel();
+                Files.move(target, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                this.channel = FileChannel.open(this.file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException ex) {
+            // Stop writing checkpoints; the crawler reports the error
+            this.failure = ex;
+            this.closeChannel();
+        }
+    }
+
+    /**
+     * Returns the file the first checkpoint is written to
+     * @return The path of the new file, next to the checkpoint file
+     */
+    private Path newFile() {
+        return this.file.resolveSibling(this.file.getFileName() + NEW_FILE_SUFFIX);
+    }
+
+    /**
+     * Closes the file being written to, if it is open
+     */
+    private void closeChannel() {
+
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException ex) {
+                // Everything written was already forced to disk
+            }
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Reads the payload of the next block of a checkpoint file
+     * @param in The file, positioned at a block
+     * @return The payload, or null if there is no complete, intact block
+     * @throws IOException If the file cannot be read
+     */
+    private static byte[] readBlock(DataInputStream in) throws IOException {
+
+        try {
+            if (in.readInt() != BLOCK_MAGIC) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] payload = in.readNBytes(length);
+            if (payload.length < length) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (in.readLong() == crc.getValue()) ? payload : null;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the result of a finished page
+     * @param data The stream to write to
+     * @param result The result
+     * @throws IOException If writing fails
+     */
+    private static void writeResult(DataOutputStream data, CrawlResult result) throws IOException {
+
+        data.writeInt(result.getPage().getDepth());
+        data.writeInt(result.getSequence());
+        data.writeBoolean(result.isMatch());
+        writeString(data, result.getErrorMessage());
+
+        Map<String, Integer> counts = result.getTermCounts();
+        data.writeInt(counts.size());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            writeString(data, entry.getKey());
+            data.writeInt(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads the result of a finished page
+     * @param data The stream to read from
+     * @param address The address of the page
+     * @return The result
+     * @throws IOException If reading fails
+     */
+    private static CrawlResult readResult(DataInputStream data, String address) throws IOException {
+
+        Page page = new Page(address);
+        page.setDepth(data.readInt());
+        int sequence = data.readInt();
+        boolean match = data.readBoolean();
+        String error = readString(data);
+
+        CrawlResult result = error.isEmpty() ? new CrawlResult(page, sequence, match)
+                : new CrawlResult(page, sequence, error);
+
+        int terms = data.readInt();
+        if (terms > 0) {
+            LinkedHashMap<String, Integer> counts = new LinkedHashMap<String, Integer>();
+            for (int i = 0; i < terms; i++) {
+                String term = readString(data);
+                counts.put(term, data.readInt());
+            }
+            result.setTermCounts(Collections.unmodifiableMap(counts));
+        }
+        return result;
+    }
+
+    /**
+     * Writes a string as its length and UTF-8 bytes
+     * @param data The stream to write to
+     * @param text The string
+     * @throws IOException If writing fails
+     */
+    private static void writeString(DataOutputStream data, String text) throws IOException {
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString
+     * @param data The stream to read from
+     * @return The string
+     * @throws IOException If reading fails
+     */
+    private static String readString(DataInputStream data) throws IOException {
+
+        int length = data.readInt();
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /***************************************************************************
+     * NESTED CLASSES
+     **************************************************************************/
+
+    /**
+     * The state of a crawl read from a checkpoint file
+     */
+    public static class State {
+
+        // The sequence number of the last page crawled
+        private int sequence;
+
+        // The results of the pages finished, in order
+        private ArrayList<CrawlResult> results = new ArrayList<CrawlResult>();
+
+        // Pairs of link id and depth waiting in the frontier, in the order
+        // they were queued
+        private int[] frontier;
+
+        /**
+         * Returns the sequence number of the last page crawled
+         * @return The sequence number
+         */
+        public int getSequence() {
+            return this.sequence;
+        }
+
+        /**
+         * Returns the results of the pages finished, in the order they
+         * were recorded
+         * @return The results
+         */
+        public List<CrawlResult> getResults() {
+            return this.results;
+        }
+
+        /**
+         * Returns the links waiting in the frontier, as pairs of link id and
+         * depth in the order they were queued: oldest first for a queue,
+         * bottom first for a stack
+         * @return The frontier
+         */
+        public int[] getFrontier() {
+            return this.frontier;
+        }
+    }
+}
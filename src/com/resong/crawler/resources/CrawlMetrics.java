@@ -0,0 +1,332 @@
+package com.resong.crawler.resources;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what a crawler does and times each phase of the work on a page, so
+ * that it can be seen where a crawl spends its time. The counters are
+ * LongAdders, which spread updates from different threads over separate
+ * cells, and the times go into LatencyHistograms, so the threads of a
+ * parallel crawler don't wait on each other to record. A Snapshot of
+ * everything can be taken at any time, from any thread, without pausing
+ * the crawl.
+ */
+public class CrawlMetrics {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    /**
+     * The phases of the work on a page
+     */
+    public enum Phase {
+
+        /**
+         * From sending the request until the response headers arrive,
+         * including looking up the host and connecting to it
+         */
+        CONNECT,
+
+        /**
+         * Receiving the body of the response, or the whole download if
+         * the fetcher doesn't tell the phases apart
+         */
+        DOWNLOAD,
+
+        /**
+         * Parsing the page for its text and links, which also searches
+         * the text for the keywords as it goes
+         */
+        PARSE,
+
+        /**
+         * Deciding whether the page matches the keywords once it is parsed
+         */
+        MATCH,
+
+        /**
+         * Checking the links of the page against the pages visited and
+         * waiting, and adding the new ones to the frontier
+         */
+        FRONTIER
+    }
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The time taken by each phase
+    private Map<Phase, LatencyHistogram> phases;
+
+    // The number of pages crawled, failed ones included, of those that
+    // matched, and of those that failed to download
+    private LongAdder pages;
+    private LongAdder matches;
+    private LongAdder failures;
+
+    // The number of bytes downloaded
+    private LongAdder bytes;
+
+    // The number of links found on pages, of those skipped because they had
+    // already been seen, and of those added to the frontier
+    private LongAdder linksDiscovered;
+    private LongAdder linksDeduped;
+    private LongAdder linksEnqueued;
+
+    // When counting started, from System.nanoTime
+    private long started;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new CrawlMetrics with nothing counted
+     */
+    public CrawlMetrics() {
+
+        this.phases = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            this.phases.put(phase, new LatencyHistogram());
+        }
+        this.pages = new LongAdder();
+        this.matches = new LongAdder();
+        this.failures = new LongAdder();
+        this.bytes = new LongAdder();
+        this.linksDiscovered = new LongAdder();
+        this.linksDeduped = new LongAdder();
+        this.linksEnqueued = new LongAdder();
+        this.started = System.nanoTime();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Records the time a phase took for one page
+     * @param phase The phase
+     * @param nanos The time taken, in nanoseconds
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        this.phases.get(phase).record(nanos);
+    }
+
+    /**
+     * Records a page that was crawled
+     * @param match Whether the page matched the keywords
+     */
+    public void pageCrawled(boolean match) {
+
+        this.pages.increment();
+        if (match) {
+            this.matches.increment();
+        }
+    }
+
+    /**
+     * Records a page that failed to download. It counts as crawled too, as
+     * it does in the crawl's results
+     */
+    public void pageFailed() {
+
+        this.pages.increment();
+        this.failures.increment();
+    }
+
+    /**
+     * Records bytes downloaded
+     * @param count The number of bytes
+     */
+    public void bytesDownloaded(long count) {
+        this.bytes.add(count);
+    }
+
+    /**
+     * Records links found on a page
+     * @param found The number of links found
+     * @param deduped How many of them were skipped because they had already
+     *                been seen
+     */
+    public void linksDiscovered(int found, int deduped) {
+
+        this.linksDiscovered.add(found);
+        this.linksDeduped.add(deduped);
+    }
+
+    /**
+     * Records links of a page that were checked against the frontier
+     * @param checked The number of links checked
+     * @param enqueued How many of them were added to the frontier; the
+     *                 others were skipped as already visited or waiting
+     */
+    public void linksChecked(int checked, int enqueued) {
+
+        this.linksDeduped.add(checked - enqueued);
+        this.linksEnqueued.add(enqueued);
+    }
+
+    /**
+     * Returns a copy of everything counted so far. Figures being updated
+     * while the copy is made may be slightly out of date.
+     * @param frontierSize The number of pages waiting to be visited
+     * @return The snapshot
+     */
+    public Snapshot snapshot(int frontierSize) {
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.elapsedNanos = System.nanoTime() - this.started;
+        snapshot.phases = new EnumMap<Phase, LatencyHistogram.Snapshot>(Phase.class);
+        for (Map.Entry<Phase, LatencyHistogram> phase : this.phases.entrySet()) {
+            snapshot.phases.put(phase.getKey(), phase.getValue().snapshot());
+        }
+        snapshot.pages = this.pages.sum();
+        snapshot.matches = this.matches.sum();
+        snapshot.failures = this.failures.sum();
+        snapshot.bytes = this.bytes.sum();
+        snapshot.linksDiscovered = this.linksDiscovered.sum();
+        snapshot.linksDeduped = this.linksDeduped.sum();
+        snapshot.linksEnqueued = this.linksEnqueued.sum();
+        snapshot.frontierSize = frontierSize;
+        return snapshot;
+    }
+
+    /**
+     * Everything a CrawlMetrics had counted at some moment
+     */
+    public static class Snapshot {
+
+        // The time since counting started
+        private long elapsedNanos;
+
+        // The time taken by each phase
+        private Map<Phase, LatencyHistogram.Snapshot> phases;
+
+        // The counters
+        private long pages;
+        private long matches;
+        private long failures;
+        private long bytes;
+        private long linksDiscovered;
+        private long linksDeduped;
+        private long linksEnqueued;
+
+        // The number of pages waiting to be visited
+        private int frontierSize;
+
+        /**
+         * Initializes a new, empty Snapshot
+         */
+        private Snapshot() {
+        }
+
+        /**
+         * Returns the time since the crawler started counting
+         * @return The time, in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        /**
+         * Returns the time taken by a phase of the pages crawled
+         * @param phase The phase
+         * @return The times, one for each page that went through the phase
+         */
+        public LatencyHistogram.Snapshot getPhase(Phase phase) {
+            return this.phases.get(phase);
+        }
+
+        /**
+         * Returns the number of pages crawled, including those that failed
+         * to download, so that it matches the number of results
+         * @return The number of pages
+         */
+        public long getPages() {
+            return this.pages;
+        }
+
+        /**
+         * Returns the number of pages that matched the keywords
+         * @return The number of pages
+         */
+        public long getMatches() {
+            return this.matches;
+        }
+
+        /**
+         * Returns the number of pages that failed to download
+         * @return The number of pages
+         */
+        public long getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Returns the number of bytes downloaded for the pages crawled
+         * @return The number of bytes
+         */
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * Returns the number of links found on the pages crawled, not
+         * counting links beyond the number a page may keep
+         * @return The number of links
+         */
+        public long getLinksDiscovered() {
+            return this.linksDiscovered;
+        }
+
+        /**
+         * Returns the number of links skipped because they had already been
+         * visited or were already waiting, or appeared twice on a page
+         * @return The number of links
+         */
+        public long getLinksDeduped() {
+            return this.linksDeduped;
+        }
+
+        /**
+         * Returns the number of links added to the frontier
+         * @return The number of links
+         */
+        public long getLinksEnqueued() {
+            return this.linksEnqueued;
+        }
+
+        /**
+         * Returns the number of pages waiting to be visited
+         * @return The number of pages, or 0 if the crawler doesn't keep track
+         */
+        public int getFrontierSize() {
+            return this.frontierSize;
+        }
+
+        /**
+         * Returns the figures on a few lines, with the mean, 50th and 99th
+         * percentile and longest time of each phase in microseconds
+         * @return The figures
+         */
+        public String toString() {
+
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%d pages (%d matched, %d failed), %.1f MB, links %d found / %d deduped"
+                    + " / %d enqueued, frontier %d%n", this.pages, this.matches, this.failures,
+                    this.bytes / 1e6, this.linksDiscovered, this.linksDeduped, this.linksEnqueued,
+                    this.frontierSize));
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram.Snapshot times = this.phases.get(phase);
+                text.append(String.format("  %-8s %10d  mean %10.1f  p50 %10.1f  p99 %10.1f  max %10.1f us%n",
+                        phase.name().toLowerCase(), times.getCount(), times.getMeanNanos() / 1e3,
+                        times.getPercentileNanos(50) / 1e3, times.getPercentileNanos(99) / 1e3,
+                        times.getMaxNanos() / 1e3));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -9,7 +9,8 @@ package com.resong.crawler.resources;
  *
  */
 
-import com.resong.crawler.*;
+import java.util.Collections;
+import java.util.Map;
 
 public class CrawlResult {
 
@@ -19,6 +20,7 @@ public class CrawlResult {
 	private String error; // error message if crawl failed
 	private boolean flag; // flag indicating if page matched search term
 	private int order; // integer indicating order page was crawled
+	private Map<String, Integer> termCounts; // number of times each search term was found
 	
 	/////////////// Constructors ////////////////
 	
@@ -35,6 +37,7 @@ public class CrawlResult {
 		this.flag = result;
 		this.order = sequence;
 		this.error = "";
+		this.termCounts = Collections.emptyMap();
 	}
 	
 	/**
@@ -50,6 +53,7 @@ public class CrawlResult {
 		this.flag = false;
 		this.order = sequence;
 		this.error = message;
+		this.termCounts = Collections.emptyMap();
 	}
 	
 	
@@ -93,6 +97,47 @@ public class CrawlResult {
 		return this.flag;
 	}
 	
+	/**
+	 * Accessor method that returns the number of times each
+	 * search term was found on the page, for crawls searching
+	 * for several terms
+	 * @return map from each term found to its count
+	 */
+	
+	public Map<String, Integer> getTermCounts() {
+		return this.termCounts;
+	}
+	
+	/**
+	 * Mutator method that sets the number of times each
+	 * search term was found on the page
+	 * @param counts map from each term found to its count
+	 */
+	
+	public void setTermCounts(Map<String, Integer> counts) {
+		this.termCounts = counts;
+	}
+	
+	/**
+	 * Accessor method that returns the terms found on the page
+	 * and their counts, for display
+	 * @return terms found, such as "java (3), swing (1)"
+	 */
+	
+	public String getTermSummary() {
+		
+		StringBuilder summary = new StringBuilder();
+		
+		for(Map.Entry<String, Integer> entry : this.termCounts.entrySet()) {
+			if(summary.length() > 0) {
+				summary.append(", ");
+			}
+			summary.append(entry.getKey()).append(" (").append(entry.getValue()).append(")");
+		}
+		
+		return summary.toString();
+	}
+	
 	/**
 	 * Accessor method that returns if
 	 * the crawl was successful
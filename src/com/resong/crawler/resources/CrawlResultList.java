@@ -1,37 +1,86 @@
 package com.resong.crawler.resources;
 
-import java.util.ArrayList;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.table.AbstractTableModel;
 
-public class CrawlResultList extends AbstractTableModel {
-    
+/**
+ * The results of a crawl, and the table model that shows them. Any number
+ * of crawler threads may add results at once without taking a lock. The
+ * table only learns of new rows on the event dispatch thread, at most once
+ * a frame, as one range of inserted rows, so that a fast crawl doesn't
+ * flood Swing with events.
+ */
+public class CrawlResultList extends AbstractTableModel implements CrawlResultSink {
+
     private final static int SEQUENCE_COLUMN = 0;
     private final static int URL_COLUMN = 1;
     private final static int MATCH_COLUMN = 2;
-    private final String[] COLUMN_NAMES = new String[] { "Seq. Num", "Page URL", "Term Found?" };
+    private final static int TERMS_COLUMN = 3;
+    private final String[] COLUMN_NAMES = new String[] { "Seq. Num", "Page URL", "Term Found?", "Terms (Count)" };
+
+    // The least number of milliseconds between two updates of the table
+    private final static int FRAME_MILLIS = 16;
+
+    private volatile ResultLog results;
 
-    private ArrayList<CrawlResult> results;
+    // The number of rows the table has been told about; only changed on
+    // the event dispatch thread
+    private volatile int published;
+
+    // Whether an update of the table is waiting to happen
+    private AtomicBoolean publishScheduled;
+
+    private Timer publisher;
 
     public CrawlResultList() {
-        this.results = new ArrayList<CrawlResult>();
+        this.results = new ResultLog();
+        this.published = 0;
+        this.publishScheduled = new AtomicBoolean(false);
+        this.publisher = new Timer(FRAME_MILLIS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                publish();
+            }
+        });
+        this.publisher.setRepeats(false);
     }
 
+    /**
+     * Returns a result that has been added, whether or not the table shows
+     * it yet. Safe to call from any thread.
+     * @param index The index of the result, in the order results were added
+     * @return The result
+     */
     public CrawlResult get(int index) {
         return this.results.get(index);
     }
-    
-    public int getRowCount() {
 
+    /**
+     * Returns the number of results added so far, whether or not the table
+     * shows them yet. Safe to call from any thread.
+     * @return The number of results
+     */
+    public int size() {
         return this.results.size();
     }
 
+    public int getRowCount() {
+
+        return Math.min(this.published, this.results.size());
+    }
+
     public int getColumnCount() {
         return COLUMN_NAMES.length;
     }
 
     @Override
     public Class<?> getColumnClass(int columnIndex) {
-        
+
         switch (columnIndex) {
             case SEQUENCE_COLUMN:
                 return Integer.class;
@@ -39,10 +88,12 @@ public class CrawlResultList extends AbstractTableModel {
                 return String.class;
             case MATCH_COLUMN:
                 return Boolean.class;
+            case TERMS_COLUMN:
+                return String.class;
             default:
                 return null;
         }
-        
+
     }
 
     @Override
@@ -52,7 +103,7 @@ public class CrawlResultList extends AbstractTableModel {
 
     public Object getValueAt(int rowIndex, int columnIndex) {
 
-        if ((rowIndex < 0) || (rowIndex >= this.results.size()))
+        if ((rowIndex < 0) || (rowIndex >= this.getRowCount()))
             return null;
 
         CrawlResult result = this.results.get(rowIndex);
@@ -66,9 +117,11 @@ public class CrawlResultList extends AbstractTableModel {
                     return result.getPage().getAddress();
                 else
                     return result.getPage().getAddress() + " - " + result.getErrorMessage();
-                
+
             case MATCH_COLUMN:
                 return result.isMatch();
+            case TERMS_COLUMN:
+                return result.getTermSummary();
             default:
                 return null;
         }
@@ -78,15 +131,131 @@ public class CrawlResultList extends AbstractTableModel {
     public String getColumnName(int column) {
         return COLUMN_NAMES[column];
     }
-    
+
+    /**
+     * Adds a result, and makes sure the table is told about it within a
+     * frame. Safe to call from any thread without locking.
+     * @param result The result to add
+     * @return True
+     */
     public boolean add(CrawlResult result) {
         this.results.add(result);
-        this.fireTableRowsInserted(this.results.size() - 1, this.results.size() - 1);
+
+        // Only the first result since the last update starts the timer; the
+        // update shows every result added by the time it runs
+        if (this.publishScheduled.compareAndSet(false, true)) {
+            this.publisher.start();
+        }
         return true;
     }
 
+    /**
+     * Removes every result. Must not be called while a crawl is adding
+     * results.
+     */
     public void clear() {
-        this.results.clear();
-        this.fireTableDataChanged();
+        this.results = new ResultLog();
+
+        if (SwingUtilities.isEventDispatchThread()) {
+            this.published = 0;
+            this.fireTableDataChanged();
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    published = 0;
+                    fireTableDataChanged();
+                }
+            });
+        }
+    }
+
+    /**
+     * Tells the table about every result added since the last update, as
+     * one range of rows. Runs on the event dispatch thread.
+     */
+    private void publish() {
+
+        // Clear the flag first, so a result added from now on schedules
+        // another update instead of being missed by this one
+        this.publishScheduled.set(false);
+
+        int from = this.published;
+        int to = this.results.size();
+        if (to > from) {
+            this.published = to;
+            this.fireTableRowsInserted(from, to - 1);
+        }
+    }
+
+    /**
+     * An append-only list of results that many threads can add to at once.
+     * Each result gets its own slot, reserved with one atomic increment, in
+     * chunks that are created as they are needed and never copied. The
+     * size only counts the slots up to the first one still being written,
+     * so readers never see a gap.
+     */
+    private static class ResultLog {
+
+        private final static int CHUNK_SHIFT = 12;
+        private final static int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+        private final static int MAX_CHUNKS = 1 << 14;
+
+        private AtomicReferenceArray<AtomicReferenceArray<CrawlResult>> chunks;
+
+        // The number of slots handed out
+        private AtomicInteger reserved;
+
+        // The number of slots, from the first, that have been written
+        private AtomicInteger completed;
+
+        private ResultLog() {
+            this.chunks = new AtomicReferenceArray<AtomicReferenceArray<CrawlResult>>(MAX_CHUNKS);
+            this.reserved = new AtomicInteger(0);
+            this.completed = new AtomicInteger(0);
+        }
+
+        private void add(CrawlResult result) {
+            int index = this.reserved.getAndIncrement();
+            if (index >= CHUNK_SIZE * MAX_CHUNKS) {
+                throw new IllegalStateException("Too many crawl results");
+            }
+            this.chunk(index).set(index & (CHUNK_SIZE - 1), result);
+
+            // Move the completed count past every written slot; whichever
+            // thread writes the last missing slot moves it past the others
+            while (true) {
+                int done = this.completed.get();
+                if (done >= this.reserved.get() || this.slot(done) == null) {
+                    return;
+                }
+                this.completed.compareAndSet(done, done + 1);
+            }
+        }
+
+        private CrawlResult get(int index) {
+            if (index < 0 || index >= this.completed.get()) {
+                throw new IndexOutOfBoundsException("No result " + index);
+            }
+            return this.slot(index);
+        }
+
+        private int size() {
+            return this.completed.get();
+        }
+
+        private CrawlResult slot(int index) {
+            AtomicReferenceArray<CrawlResult> chunk = this.chunks.get(index >>> CHUNK_SHIFT);
+            return (chunk == null) ? null : chunk.get(index & (CHUNK_SIZE - 1));
+        }
+
+        private AtomicReferenceArray<CrawlResult> chunk(int index) {
+            int c = index >>> CHUNK_SHIFT;
+            AtomicReferenceArray<CrawlResult> chunk = this.chunks.get(c);
+            if (chunk == null) {
+                this.chunks.compareAndSet(c, null, new AtomicReferenceArray<CrawlResult>(CHUNK_SIZE));
+                chunk = this.chunks.get(c);
+            }
+            return chunk;
+        }
     }
 }
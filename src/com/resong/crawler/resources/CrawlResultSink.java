@@ -0,0 +1,17 @@
+package com.resong.crawler.resources;
+
+/**
+ * Takes the results of a crawl as a Crawler records them. A CrawlResultList
+ * shows them in the crawler window; other sinks can write them out without
+ * any user interface. Crawlers that visit several pages at once add results
+ * from several threads, so a sink must be safe to call from any thread.
+ */
+public interface CrawlResultSink {
+
+    /**
+     * Takes the result of one crawled page
+     * @param result The result
+     * @return True, if the result was taken
+     */
+    public boolean add(CrawlResult result);
+}
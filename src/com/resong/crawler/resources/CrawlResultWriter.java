@@ -0,0 +1,157 @@
+package com.resong.crawler.resources;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the results of a crawl as they arrive, one line of tab-separated
+ * columns per page: the sequence number, the address, whether the search
+ * term was found, the error message if the page failed, and the count of
+ * each term when several were searched for. Nothing is kept in memory but
+ * the count of results, matches and failures, so a crawl of any size can
+ * be streamed to standard output or a file.
+ */
+public class CrawlResultWriter implements CrawlResultSink, Flushable, Closeable {
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // Where the lines are written
+    private Writer out;
+
+    // The number of results written
+    private long results;
+
+    // The number of pages that contained the search term
+    private long matches;
+
+    // The number of pages that could not be downloaded
+    private long failures;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new CrawlResultWriter writing UTF-8 text to a stream
+     * @param out The stream to write to
+     */
+    public CrawlResultWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Initializes a new CrawlResultWriter
+     * @param out The writer to write to
+     */
+    public CrawlResultWriter(Writer out) {
+        this.out = new BufferedWriter(out);
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Writes the line for a result. Lines from several threads are never
+     * mixed up.
+     * @param result The result
+     * @return True
+     * @throws UncheckedIOException If writing fails
+     */
+    public synchronized boolean add(CrawlResult result) {
+
+        this.results++;
+        if (result.isMatch()) {
+            this.matches++;
+        }
+        if (!result.getErrorMessage().isEmpty()) {
+            this.failures++;
+        }
+
+        try {
+            this.out.write(Integer.toString(result.getSequence()));
+            this.out.write('\t');
+            this.out.write(clean(result.getPage().getAddress()));
+            this.out.write('\t');
+            this.out.write(result.isMatch() ? "true" : "false");
+            this.out.write('\t');
+            this.out.write(clean(result.getErrorMessage()));
+            this.out.write('\t');
+            this.out.write(clean(result.getTermSummary()));
+            this.out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of results written
+     * @return The number of results
+     */
+    public synchronized long getResults() {
+        return this.results;
+    }
+
+    /**
+     * Returns the number of pages written that contained the search term
+     * @return The number of matches
+     */
+    public synchronized long getMatches() {
+        return this.matches;
+    }
+
+    /**
+     * Returns the number of pages written that could not be downloaded
+     * @return The number of failures
+     */
+    public synchronized long getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Writes out any lines still buffered
+     * @throws IOException If writing fails
+     */
+    public synchronized void flush() throws IOException {
+        this.out.flush();
+    }
+
+    /**
+     * Writes out any lines still buffered and closes the output
+     * @throws IOException If writing fails
+     */
+    public synchronized void close() throws IOException {
+        this.out.close();
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Replaces the tabs and line breaks in a column with spaces, so that
+     * every result stays on one line
+     * @param text The text of the column
+     * @return The text, safe to write as a column
+     */
+    private static String clean(String text) {
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\t' || c == '\n' || c == '\r') {
+                return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+            }
+        }
+        return text;
+    }
+}
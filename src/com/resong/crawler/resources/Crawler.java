@@ -10,47 +10,119 @@
  */
  package com.resong.crawler.resources;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import com.resong.crawler.structures.queue.HostShardedQueue;
+import com.resong.crawler.structures.set.*;
 
 public abstract class Crawler {
 	
     
     /////////////////// Attributes /////////////////////
 	
-    private ArrayList<String> linksVisited; // List of links the crawler has already visited
+    private SetADT<String> linksVisited; // Set of links the crawler has already visited
+    
+    private UrlDictionary urls; // Assigns an id to each link the crawler finds
+    
+    private UrlIdSet visitedIds; // linksVisited, if it stores ids from urls, else null
+    
+    private BloomFilterSet visitedFilter; // linksVisited, if it is a Bloom filter, else null
+    
+    private int[] linkDepths; // Depth of each link id waiting to be visited
+    
+    private volatile String[] linkHosts; // Host of each link id, filled in as it is asked for
+    
+    private ConcurrentHashMap<String, String> hostNames; // One copy of the name of each host seen
     
     private String kWord; // String representing keyword to be searched
     
+    private KeywordAutomaton keywords; // Keyword or keywords compiled for searching pages
+    
+    private boolean countTerms; // Boolean indicating whether occurrences of each keyword are counted
+    
     private int maxDepth; // Integer representing max. depth the crawler will search
     
     private int maxLinks; // Integer representing max number of links crawled on each page
     
     
-    private CrawlResultList rList; // List of results of the crawl
+    private CrawlResultSink rList; // Takes the results of the crawl
+    
+    private Fetcher fetcher; // Downloads the pages the crawler visits
+    
+    private boolean retainText; // Boolean indicating whether page text is kept after matching
+    
+    private boolean visibleTextOnly; // Boolean indicating whether only visible page text is searched
+    
+    private boolean rawByteMatching; // Boolean indicating whether a single keyword is searched for in raw page bytes
+    
+    private boolean printProgress; // Boolean indicating whether a message is printed for each page visited and matched
+    
+    private int maxPerHost; // Integer representing max. pages of one host downloaded at once, or 0 if not crawling politely
+    
+    private long minHostDelay; // Least number of milliseconds between two pages of one host when crawling politely
+    
+    private AtomicInteger seq; // Integer indicating sequence number of last page crawled
+    
+    private CrawlMetrics metrics; // Counts pages and links and times each phase of the crawl
+    
+    private CrawlCheckpoint checkpoint; // Writes the state of the crawl to a file now and then, or null
     
-    private int seq; // Integer indicating sequence number of last page crawled
+    private int[] restoredFrontier; // Pairs of link id and depth to start from after resuming, or null
     
-    protected boolean stopCrawl; // Boolean indicating whether or not we should stop crawling
+    private List<CrawlResult> restoredResults; // Results of the crawl restored with resume
     
-    protected boolean crawlingNow; // Boolean indicating if we are currently crawling
+    protected volatile boolean stopCrawl; // Boolean indicating whether or not we should stop crawling
+    
+    protected volatile boolean crawlingNow; // Boolean indicating if we are currently crawling
     
     
     /////////////////// Constructors ///////////////////
     
     /**
-     * Constructor that initializes a crawler with String and CrawlResultList parameters.
+     * Constructor that initializes a crawler with String and CrawlResultSink parameters.
      * @param keyword The keyword for which the crawler will search
-     * @param list list of the results of crawling
+     * @param list takes the results of crawling, such as a CrawlResultList
      */
-    public Crawler(String keyword, CrawlResultList list)
+    public Crawler(String keyword, CrawlResultSink list)
     {
-    	this.linksVisited = new ArrayList<String>();
-        this.kWord = keyword;
+    	this.urls = new UrlDictionary();
+    	this.visitedIds = new UrlIdSet(this.urls);
+    	this.linksVisited = this.visitedIds;
+    	this.linkDepths = new int[0];
+    	this.linkHosts = new String[0];
+    	this.hostNames = new ConcurrentHashMap<String, String>();
+        this.setKeyWord(keyword);
         this.maxDepth = 0;
         this.maxLinks = 0;
         
         this.rList = list;
-        this.seq = 0;
+        this.fetcher = new HttpClientFetcher();
+        this.retainText = true;
+        this.visibleTextOnly = false;
+        this.rawByteMatching = false;
+        this.printProgress = true;
+        this.maxPerHost = 0;
+        this.minHostDelay = 0;
+        this.seq = new AtomicInteger(0);
+        this.metrics = new CrawlMetrics();
+        this.checkpoint = null;
+        this.restoredFrontier = null;
+        this.restoredResults = Collections.emptyList();
         this.crawlingNow = false;
         this.stopCrawl = false;
     }
@@ -70,13 +142,387 @@ public abstract class Crawler {
     }
 
     /**
-     * Adds the specified address to the list of pages the crawler has
+     * Adds the specified address to the set of pages the crawler has
      * already visited.
      * @param address Address of the page the crawler has visited
+     * @return True, if the address was not already in the set; false, otherwise
+     */
+    public boolean addVisitedLink(String address)
+    {
+        return this.linksVisited.add(address);
+    }
+    
+    /**
+     * Returns a Boolean value indicating if the crawler has visited the
+     * site with the specified id in the crawler's URL dictionary.
+     * @param id Id of the address of the web site to test
+     * @return True, if the crawler has visited the site; false, otherwise
      */
-    public void addVisitedLink(String address)
+    public boolean hasVisitedLink(int id)
     {
-        this.linksVisited.add(address);
+    	if(this.visitedIds != null){
+    		return this.visitedIds.contains(id);
+    	}
+    	
+    	// only visited links are forgotten; others are hashed from
+    	// their bytes without building the address
+    	
+    	if(this.visitedFilter != null){
+    		return this.urls.isForgotten(id) || this.visitedFilter.containsHash(this.urls.filterHash(id));
+    	}
+    	return this.linksVisited.contains(this.urls.address(id));
+    }
+    
+    /**
+     * Method that returns the dictionary assigning an id to each link
+     * the crawler finds
+     * @return dictionary of link addresses
+     */
+    
+    public UrlDictionary getUrlDictionary() {
+    	return this.urls;
+    }
+    
+    /**
+     * Method that returns the set of links the crawler has visited
+     * @return set of visited link addresses
+     */
+    
+    public SetADT<String> getVisitedLinks() {
+    	return this.linksVisited;
+    }
+    
+    /**
+     * Method that replaces the set used to remember visited links,
+     * allowing several crawlers to share one set
+     * @param visited set of visited link addresses
+     */
+    
+    public void setVisitedLinks(SetADT<String> visited) {
+    	this.linksVisited = visited;
+    	this.visitedIds = null;
+    	this.visitedFilter = (visited instanceof BloomFilterSet) ? (BloomFilterSet) visited : null;
+    	
+    	// share the dictionary of a set of ids, so link ids mean the same
+    	
+    	if(visited instanceof UrlIdSet){
+    		this.visitedIds = (UrlIdSet) visited;
+    		this.urls = this.visitedIds.getDictionary();
+    	}
+    }
+    
+    /**
+     * Method that switches the crawler to a compact, probabilistic set of
+     * visited links sized for the expected number of links. A small share
+     * of unvisited links, at most about the given rate, will be skipped as
+     * if they had already been visited. The addresses of visited pages are
+     * then also dropped from the URL dictionary once the crawler is done
+     * with them, unless checkpoints are enabled, so the memory used no
+     * longer grows with every page visited
+     * @param expectedLinks number of links the crawl is expected to visit
+     * @param falsePositiveRate acceptable rate of wrongly skipped links
+     * @return the filter now holding the visited links
+     */
+    
+    public BloomFilterSet useVisitedLinkFilter(long expectedLinks, double falsePositiveRate) {
+    	BloomFilterSet filter = new BloomFilterSet(expectedLinks, falsePositiveRate);
+    	this.linksVisited = filter;
+    	this.visitedIds = null;
+    	this.visitedFilter = filter;
+    	return filter;
+    }
+    
+    /**
+     * Method that returns the fetcher used to download pages
+     * @return the fetcher downloading pages for this crawler
+     */
+    
+    public Fetcher getFetcher() {
+    	return this.fetcher;
+    }
+    
+    /**
+     * Method that sets the fetcher used to download pages
+     * @param fetcher the fetcher that will download pages for this crawler
+     */
+    
+    public void setFetcher(Fetcher fetcher) {
+    	this.fetcher = fetcher;
+    }
+    
+    /**
+     * Method that downloads a page with the crawler's fetcher, waiting
+     * until the download is complete. Crawlers that go on with one page at
+     * a time have nothing else to do meanwhile; crawlers downloading many
+     * pages at once use startDownload instead
+     * @param page page to download
+     * @throws Exception if the download or parsing of the page fails
+     */
+    
+    protected void downloadPage(final Page page) throws Exception {
+    	
+    	CompletableFuture<Page> download = this.startDownload(page);
+    	
+    	try {
+    		download.get();
+    	}
+    	
+    	// rethrow the exception that made the download fail
+    	
+    	catch (ExecutionException ex) {
+    		Throwable cause = ex.getCause();
+    		if(cause instanceof UncheckedIOException){
+    			throw ((UncheckedIOException) cause).getCause();
+    		}
+    		if(cause instanceof Exception){
+    			throw (Exception) cause;
+    		}
+    		throw ex;
+    	}
+    	
+    	// give up on the download if the crawl thread is interrupted
+    	
+    	catch (InterruptedException ex) {
+    		download.cancel(true);
+    		throw ex;
+    	}
+    }
+    
+    /**
+     * Method that starts downloading a page with the crawler's fetcher
+     * without waiting for it. The page is parsed, searched and timed on
+     * the fetcher's threads; cancelling the returned future cancels the
+     * download
+     * @param page page to download
+     * @return a future completing with the downloaded page, or
+     *         exceptionally if the download or parsing of the page fails
+     */
+    
+    protected CompletableFuture<Page> startDownload(final Page page) {
+    	
+    	// search for the keyword while the page is parsed
+    	
+    	page.matchWhileParsing(this.keywords, this.countTerms, this.retainText);
+    	page.setVisibleTextOnly(this.visibleTextOnly);
+    	page.useUrlDictionary(this.urls);
+    	page.matchRawBytes(this.rawByteMatching == true && this.countTerms == false && this.visibleTextOnly == false);
+    	
+    	// only keep the links the crawl could still follow, counting
+    	// the links found and those skipped
+    	
+    	final int[] found = new int[2];
+    	
+    	page.limitLinks(this.linkBudget(page), new Predicate<String>() {
+    		public boolean test(String address) {
+    			found[0]++;
+    			boolean skip = skipsLink(page, address);
+    			if(skip == true){
+    				found[1]++;
+    			}
+    			return skip;
+    		}
+    	});
+    	
+    	final long start = System.nanoTime();
+    	final CompletableFuture<Page> fetch = this.fetcher.fetch(page);
+    	
+    	// split the time taken between the phases the fetcher timed, before
+    	// the page is handed back; links found more than once on the page
+    	// were skipped as well
+    	
+    	CompletableFuture<Page> download = fetch.thenApply(new Function<Page, Page>() {
+    		public Page apply(Page done) {
+    			long connect = done.getConnectNanos();
+    			long parse = done.getParseNanos();
+    			
+    			if(connect > 0){
+    				metrics.recordPhase(CrawlMetrics.Phase.CONNECT, connect);
+    			}
+    			metrics.recordPhase(CrawlMetrics.Phase.DOWNLOAD, System.nanoTime() - start - connect - parse);
+    			if(parse > 0){
+    				metrics.recordPhase(CrawlMetrics.Phase.PARSE, parse);
+    			}
+    			metrics.bytesDownloaded(done.getContentLength());
+    			metrics.linksDiscovered(found[0], found[0] - done.getLinkCount());
+    			return done;
+    		}
+    	});
+    	
+    	// pass a cancellation on to the download itself
+    	
+    	download.whenComplete(new BiConsumer<Page, Throwable>() {
+    		public void accept(Page done, Throwable error) {
+    			if(error instanceof CancellationException){
+    				fetch.cancel(true);
+    			}
+    		}
+    	});
+    	return download;
+    }
+    
+    /**
+     * Method called by crawlers once they are done with a visited page.
+     * When visited links are kept in a Bloom filter, the page's address is
+     * dropped from the URL dictionary: whether it was visited is known
+     * from the filter, and its id counts as visited from now on. Addresses
+     * are kept when checkpoints are enabled, since checkpoints refer to
+     * pages by id
+     * @param page page the crawler is done with
+     */
+    
+    protected void forgetVisitedLink(Page page) {
+    	if(this.visitedFilter != null && this.checkpoint == null && this.visitedFilter.contains(page.getAddress()) == true){
+    		int id = this.urls.find(page.getAddress());
+    		if(id >= 0){
+    			this.urls.forget(id);
+    		}
+    	}
+    }
+    
+    /**
+     * Method that returns how many links found on a page are kept when
+     * it is parsed. Pages at the maximum depth keep none, and no page
+     * can add more than the maximum number of links to the crawl
+     * @param page page about to be downloaded
+     * @return number of links to keep
+     */
+    
+    protected int linkBudget(Page page) {
+    	if(page.getDepth() < this.maxDepth){
+    		return this.maxLinks;
+    	}
+    	return 0;
+    }
+    
+    /**
+     * Method indicating whether a link found on a page will certainly not
+     * be followed, so it doesn't need to be kept or count towards the link
+     * budget. Links to the page itself or to visited pages never are;
+     * crawlers can override this to also skip links they are waiting to visit
+     * @param page page on which the link was found
+     * @param address address of the link
+     * @return true if the link will be skipped, else false
+     */
+    
+    protected boolean skipsLink(Page page, String address) {
+    	return address.equals(page.getAddress()) || this.hasVisitedLink(address);
+    }
+    
+    /**
+     * Method that remembers the depth of a link waiting to be visited,
+     * so that only its id needs to be kept in the crawler's frontier
+     * @param id id of the link in the crawler's URL dictionary
+     * @param depth depth at which the link will be visited
+     */
+    
+    protected void setLinkDepth(int id, int depth) {
+    	if(id >= this.linkDepths.length){
+    		this.linkDepths = Arrays.copyOf(this.linkDepths, Math.max(id + 1, this.linkDepths.length * 2));
+    	}
+    	this.linkDepths[id] = depth;
+    }
+    
+    /**
+     * Method that creates the page to visit for a link waiting in the
+     * frontier, at the depth remembered for it
+     * @param id id of the link in the crawler's URL dictionary
+     * @return page for the link
+     */
+    
+    protected Page pageForLink(int id) {
+    	Page page = new Page(this.urls.address(id));
+    	if(id < this.linkDepths.length){
+    		page.setDepth(this.linkDepths[id]);
+    	}
+    	return page;
+    }
+    
+    /**
+     * Method indicating whether page text is kept once
+     * the page has been searched for the keyword
+     * @return true if page text is kept, else false
+     */
+    
+    public boolean isRetainingText() {
+    	return this.retainText;
+    }
+    
+    /**
+     * Method that sets whether page text is kept once the page has
+     * been searched. Pages are always searched while they are parsed,
+     * so text only needs to be kept if it will be looked at later
+     * @param retain true to keep page text, else false
+     */
+    
+    public void setRetainText(boolean retain) {
+    	this.retainText = retain;
+    }
+    
+    /**
+     * Method indicating whether a message is printed to standard
+     * output for each page about to be visited and each match found
+     * @return true if messages are printed, else false
+     */
+    
+    public boolean isPrintingProgress() {
+    	return this.printProgress;
+    }
+    
+    /**
+     * Method that sets whether a message is printed to standard output
+     * for each page about to be visited and each match found. Turn it
+     * off when standard output is used for something else
+     * @param print true to print messages, else false
+     */
+    
+    public void setPrintProgress(boolean print) {
+    	this.printProgress = print;
+    }
+    
+    /**
+     * Method indicating whether only the text a browser would show
+     * is searched
+     * @return true if only visible text is searched, else false
+     */
+    
+    public boolean isVisibleTextOnly() {
+    	return this.visibleTextOnly;
+    }
+    
+    /**
+     * Method that sets whether only the text a browser would show is
+     * searched. Scripts, style sheets, noscript and template elements
+     * are then left out, so they can't cause false matches and make
+     * kept page text much smaller
+     * @param visibleOnly true to search only visible text, else false
+     */
+    
+    public void setVisibleTextOnly(boolean visibleOnly) {
+    	this.visibleTextOnly = visibleOnly;
+    }
+    
+    /**
+     * Method indicating whether a single search term is looked for
+     * in the raw bytes of pages rather than in their decoded text
+     * @return true if raw bytes are searched, else false
+     */
+    
+    public boolean isRawByteMatching() {
+    	return this.rawByteMatching;
+    }
+    
+    /**
+     * Method that sets whether a single search term is looked for in the
+     * raw bytes of pages, skipping decoding and lower casing their text.
+     * The term is then also found inside markup and not where a page writes
+     * it with entities, so it is only used for single terms that aren't
+     * counted, when all page text is searched; other pages are searched
+     * as usual
+     * @param raw true to search raw bytes, else false
+     */
+    
+    public void setRawByteMatching(boolean raw) {
+    	this.rawByteMatching = raw;
     }
     
     /**
@@ -95,6 +541,57 @@ public abstract class Crawler {
     
     public void setKeyWord(String keyword) {
     	this.kWord = keyword;
+    	this.keywords = KeywordAutomaton.of(keyword == null ? "" : keyword);
+    	this.countTerms = false;
+    }
+    
+    /**
+     * Method that sets several search terms at once. Every page is searched
+     * for all of them in a single pass, a page matches if it contains any
+     * of them, and the number of times each one was found is recorded
+     * @param terms the terms to be searched for
+     */
+    
+    public void setKeyWords(Collection<String> terms) {
+    	this.kWord = String.join(", ", terms);
+    	this.keywords = new KeywordAutomaton(terms);
+    	this.countTerms = true;
+    }
+    
+    /**
+     * Method that returns the compiled search terms
+     * @return the automaton holding every term being searched for
+     */
+    
+    public KeywordAutomaton getKeyWords() {
+    	return this.keywords;
+    }
+    
+    /**
+     * Method indicating whether a downloaded page contains the
+     * search term, or any of the search terms if there are several
+     * @param page page that was downloaded
+     * @return true if the page matched, else false
+     */
+    
+    protected boolean matchesKeyWords(Page page) {
+    	
+    	long start = System.nanoTime();
+    	boolean match;
+    	
+    	KeywordCounter counter = page.getKeywordCounter();
+    	
+    	// use what was found while the page was parsed, otherwise search its text
+    	
+    	if(counter != null && counter.getAutomaton() == this.keywords){
+    		match = counter.anyFound();
+    	}
+    	else{
+    		match = page.containsText(this.kWord);
+    	}
+    	
+    	this.metrics.recordPhase(CrawlMetrics.Phase.MATCH, System.nanoTime() - start);
+    	return match;
     }
     
     /**
@@ -125,6 +622,31 @@ public abstract class Crawler {
     	return this.maxLinks;
     }
     
+    /**
+     * Method that gets the number of pages waiting to be visited. It can
+     * be called from another thread while the crawler is crawling, in
+     * which case the number may be slightly out of date
+     * @return number of pages waiting to be visited, or 0 if the
+     * crawler doesn't keep track
+     */
+    
+    public int getFrontierSize() {
+    	return 0;
+    }
+    
+    /**
+     * Method that returns what the crawler has done so far: the pages
+     * crawled, the bytes downloaded, the links found, skipped and added to
+     * the frontier, the size of the frontier and the time taken by each
+     * phase of the work on a page. It can be called from any thread, as
+     * often as needed, without pausing the crawl
+     * @return snapshot of the crawler's metrics
+     */
+    
+    public CrawlMetrics.Snapshot getMetrics() {
+    	return this.metrics.snapshot(this.getFrontierSize());
+    }
+    
     /**
      * Method to set maximum number of links to search through per page
      * @param mLinks integer representing max number of links to look through
@@ -139,7 +661,7 @@ public abstract class Crawler {
      * @param address URL of site to search
      */
     
-    abstract void search(String address);
+    public abstract void search(String address);
     
     /**
      * Method to print a message saying the search term
@@ -148,7 +670,8 @@ public abstract class Crawler {
      */
     
     protected void printMatch(Page p) {
-    	System.out.println(this.kWord + " found on " + p.getAddress());
+    	if(this.printProgress == true)
+    		System.out.println(this.kWord + " found on " + p.getAddress());
     }
     
     /**
@@ -158,7 +681,8 @@ public abstract class Crawler {
      */
     
     protected void printVisiting(Page p) {
-    	System.out.println("About to visit " + p.getAddress());
+    	if(this.printProgress == true)
+    		System.out.println("About to visit " + p.getAddress());
     }
     
     // Part II Methods
@@ -171,12 +695,39 @@ public abstract class Crawler {
      */
     
     protected void addCrawledPage(Page page, Boolean match) {
+    	this.addCrawledPage(page, match, this.seq.get());
+    }
+    
+    /**
+     * Method to add a page to the list of crawled results with a given
+     * sequence number, for crawlers that visit several pages at once
+     * @param page page that was crawled
+     * @param match true if search term found on page, else false
+     * @param sequence order in which the page was crawled
+     */
+    
+    protected void addCrawledPage(Page page, Boolean match, int sequence) {
     	
     	// creates new CrawlResult object with the appropriate
     	// traits, to be stored in the list of crawled results
     	
-    	CrawlResult cResult = new CrawlResult(page, this.seq, match);
+    	CrawlResult cResult = new CrawlResult(page, sequence, match);
+    	
+    	// record how often each term was found when searching for several
+    	
+    	KeywordCounter counter = page.getKeywordCounter();
+    	
+    	if(this.countTerms == true && counter != null){
+    		cResult.setTermCounts(this.keywords.countsByTerm(counter.getCounts()));
+    	}
+    	
+    	// several threads may record pages at once; the list
+    	// takes results from all of them without locking
+    	
     	rList.add(cResult);
+    	
+    	this.metrics.pageCrawled(match == true);
+    	this.recordResult(cResult);
     }
     
     /**
@@ -187,12 +738,28 @@ public abstract class Crawler {
      */
     
     protected void addFailedPage(Page page, String error) {
+    	this.addFailedPage(page, error, this.seq.get());
+    }
+    
+    /**
+     * Method to add a page which failed to download with a given
+     * sequence number, for crawlers that visit several pages at once
+     * @param page page that failed to download
+     * @param error error message
+     * @param sequence order in which the page was crawled
+     */
+    
+    protected void addFailedPage(Page page, String error, int sequence) {
     	
     	// creates new CrawlResult object with the appropriate
     	// traits, to be stored in the list of crawled results
     	
-    	CrawlResult cResult = new CrawlResult(page, this.seq, error);
+    	CrawlResult cResult = new CrawlResult(page, sequence, error);
+    	
     	rList.add(cResult);
+    	
+    	this.metrics.pageFailed();
+    	this.recordResult(cResult);
     }
     
     /**
@@ -225,11 +792,280 @@ public abstract class Crawler {
     
     /**
      * Method to increment the order number of the pages
-     * being crawled
+     * being crawled. Safe to call from several threads
+     * @return order number of the page about to be crawled
+     */
+    
+    protected int crawlingNextPage(){
+    	return this.seq.incrementAndGet();
+    }
+    
+    /**
+     * Method to record the work done on the links of a crawled page:
+     * how long checking them against the pages visited and waiting took,
+     * and how many were added to the frontier
+     * @param startNanos value of System.nanoTime when the work started
+     * @param checked number of links checked
+     * @param enqueued number of those links added to the frontier
+     */
+    
+    protected void linksChecked(long startNanos, int checked, int enqueued){
+    	this.metrics.recordPhase(CrawlMetrics.Phase.FRONTIER, System.nanoTime() - startNanos);
+    	this.metrics.linksChecked(checked, enqueued);
+    }
+    
+    // Politeness Methods
+    
+    /**
+     * Method that makes the crawler visit pages politely: pages are handed
+     * out host by host, taking turns between hosts, with no more than the
+     * given number of pages of one host downloaded at once and at least the
+     * given delay between two pages of the same host. Must be called before
+     * searching.
+     * @param maxPerHost maximum number of pages of one host downloaded at once
+     * @param minDelayMillis minimum milliseconds between two pages of one host
+     */
+    
+    public void setPoliteness(int maxPerHost, long minDelayMillis) {
+    	this.maxPerHost = Math.max(1, maxPerHost);
+    	this.minHostDelay = Math.max(0, minDelayMillis);
+    }
+    
+    /**
+     * Method that makes the crawler hand out pages without regard to
+     * their hosts, as it does by default
+     */
+    
+    public void disablePoliteness() {
+    	this.maxPerHost = 0;
+    	this.minHostDelay = 0;
+    }
+    
+    /**
+     * Method indicating whether the crawler visits pages politely
+     * @return true if pages are handed out host by host, else false
+     */
+    
+    public boolean isPolite() {
+    	return this.maxPerHost > 0;
+    }
+    
+    /**
+     * Method that creates the queue a polite crawler hands out its pages
+     * from, with the limits set by setPoliteness. Elements of the queue
+     * stand for links, and their host is found from the link's id
+     * @param linkId function returning the id of the link an element stands for
+     * @return the queue, or null if the crawler is not polite
+     */
+    
+    protected <T> HostShardedQueue<T> newHostQueue(final ToIntFunction<T> linkId) {
+    	if(this.isPolite() == false){
+    		return null;
+    	}
+    	return new HostShardedQueue<T>(new Function<T, String>() {
+    		public String apply(T element) {
+    			return getLinkHost(linkId.applyAsInt(element));
+    		}
+    	}, this.maxPerHost, this.minHostDelay);
+    }
+    
+    /**
+     * Method that returns the host of a link, working it out from the
+     * link's address only the first time it is asked for. Several threads
+     * may ask at once; at worst a host is worked out more than once
+     * @param id id of the link in the crawler's URL dictionary
+     * @return the host of the link, in lower case, or an empty string
+     */
+    
+    protected String getLinkHost(int id) {
+    	String[] hosts = this.linkHosts;
+    	String host = (id < hosts.length) ? hosts[id] : null;
+    	
+    	if(host == null){
+    		host = Page.hostOf(this.urls.address(id));
+    		String known = this.hostNames.putIfAbsent(host, host); // share one copy of each host name
+    		if(known != null){
+    			host = known;
+    		}
+    		if(id >= hosts.length){
+    			hosts = this.growLinkHosts(id);
+    		}
+    		hosts[id] = host;
+    	}
+    	return host;
+    }
+    
+    /**
+     * Private method that makes room for the host of a link id
+     * @param id id of the link
+     * @return the array of hosts, long enough to hold the id
+     */
+    
+    private synchronized String[] growLinkHosts(int id) {
+    	if(id >= this.linkHosts.length){
+    		this.linkHosts = Arrays.copyOf(this.linkHosts, Math.max(id + 1, this.linkHosts.length * 2));
+    	}
+    	return this.linkHosts;
+    }
+    
+    // Checkpoint Methods
+    
+    /**
+     * Method that makes the crawler write the state of its crawl to a
+     * file every so often while searching: the pages to visit, the pages
+     * visited and the results so far. Only what changed since the last
+     * checkpoint is written, by a background thread, so crawling doesn't
+     * wait for the file. Must be called before searching.
+     * @param file file to write the checkpoints to
+     * @param intervalMillis least number of milliseconds between two checkpoints
+     * @throws UnsupportedOperationException if this crawler cannot be checkpointed
+     */
+    
+    public void enableCheckpoints(Path file, long intervalMillis) {
+    	if(this.supportsCheckpoints() == false){
+    		throw new UnsupportedOperationException(this.getClass().getSimpleName() + " cannot be checkpointed");
+    	}
+    	this.checkpoint = new CrawlCheckpoint(file, intervalMillis);
+    }
+    
+    /**
+     * Method that stops the crawler from writing checkpoints
+     */
+    
+    public void disableCheckpoints() {
+    	this.checkpoint = null;
+    }
+    
+    /**
+     * Method that returns the error that stopped the crawler from writing
+     * checkpoints. The crawl itself carries on when a checkpoint cannot be
+     * written, so callers relying on checkpoints should check for an
+     * error once the search is over
+     * @return the error, or null if checkpoints are disabled or every
+     *         checkpoint was written
+     */
+    
+    public IOException getCheckpointFailure() {
+    	CrawlCheckpoint current = this.checkpoint; // checkpoint of the current crawl, if any
+    	return (current != null) ? current.getFailure() : null;
+    }
+    
+    /**
+     * Method that restores a crawl from a checkpoint file, so that the
+     * next search carries on where it stopped instead of starting from
+     * its address: the results are added back to the list of results,
+     * the pages crawled without an error count as visited, and the pages
+     * left to visit are visited next. Must be called before searching.
+     * @param file checkpoint file written by an earlier crawl
+     * @throws IOException if the file cannot be read or is not a checkpoint
+     * @throws UnsupportedOperationException if this crawler cannot be checkpointed
+     */
+    
+    public void resume(Path file) throws IOException {
+    	if(this.supportsCheckpoints() == false){
+    		throw new UnsupportedOperationException(this.getClass().getSimpleName() + " cannot be checkpointed");
+    	}
+    	
+    	CrawlCheckpoint.State state = CrawlCheckpoint.load(file, this.urls);
+    	
+    	// add the earlier results back, and the pages that were
+    	// crawled successfully to the visited links
+    	
+    	for(CrawlResult result : state.getResults()){
+    		rList.add(result);
+    		if(result.getErrorMessage().isEmpty()){
+    			this.addVisitedLink(result.getPage().getAddress());
+    		}
+    	}
+    	
+    	this.seq.set(state.getSequence());
+    	this.restoredFrontier = state.getFrontier();
+    	this.restoredResults = state.getResults();
+    }
+    
+    /**
+     * Method indicating whether this crawler can write checkpoints and
+     * resume from them. Crawlers that never stop between two pages with
+     * every link found so far in their frontier cannot
+     * @return true if checkpoints are supported, else false
+     */
+    
+    protected boolean supportsCheckpoints() {
+    	return false;
+    }
+    
+    /**
+     * Method that returns the pages left to visit by the crawl restored
+     * with resume, and forgets them, so that only one search starts
+     * from them
+     * @return pairs of link id and depth in the order they were added to
+     *         the frontier, or null if no crawl was restored
+     */
+    
+    protected int[] takeRestoredFrontier() {
+    	int[] frontier = this.restoredFrontier;
+    	this.restoredFrontier = null;
+    	return frontier;
+    }
+    
+    /**
+     * Method that starts recording the crawl for checkpoints, if they
+     * are enabled. Results restored with resume are recorded too, so
+     * the first checkpoint holds the whole crawl
+     */
+    
+    protected void startCheckpoints() {
+    	if(this.checkpoint != null){
+    		this.checkpoint.start(this.urls, this.restoredResults);
+    	}
+    }
+    
+    /**
+     * Method to record that a link was added to the crawler's frontier,
+     * if checkpoints are enabled
+     * @param id id of the link in the crawler's URL dictionary
+     * @param depth depth at which the link will be visited
+     */
+    
+    protected void linkQueued(int id, int depth) {
+    	if(this.checkpoint != null){
+    		this.checkpoint.queued(id, depth);
+    	}
+    }
+    
+    /**
+     * Method that takes a checkpoint if enough time has passed since the
+     * last one. Must only be called between two pages, once every link
+     * of the pages crawled so far has been added to the frontier
+     */
+    
+    protected void checkpointIfDue() {
+    	if(this.checkpoint != null && this.checkpoint.isDue() == true){
+    		this.checkpoint.checkpoint(this.seq.get());
+    	}
+    }
+    
+    /**
+     * Method that takes a last checkpoint at the end of a search and
+     * waits until every checkpoint has been written
+     */
+    
+    protected void finishCheckpoints() {
+    	if(this.checkpoint != null){
+    		this.checkpoint.finish(this.seq.get());
+    	}
+    }
+    
+    /**
+     * Private method that records a crawled or failed page for the next
+     * checkpoint, if checkpoints are enabled
+     * @param result result of the page
      */
     
-    protected void crawlingNextPage(){
-    	this.seq++;	
+    private void recordResult(CrawlResult result) {
+    	if(this.checkpoint != null){
+    		this.checkpoint.finished(this.urls.intern(result.getPage().getAddress()), result);
+    	}
     }
     
     
@@ -20,8 +20,12 @@ public abstract class CrawlerWindow extends JFrame {
      *************************************************************************/
     protected JRadioButton crawlTypeBFSOption;
     protected JRadioButton crawlTypeDFSOption;
+    protected JRadioButton crawlTypeConcurrentOption;
+    protected JRadioButton crawlTypeBestFirstOption;
     protected JSpinner maxLinksPerPageSpinner;
     protected JSpinner maxDepthSpinner;
+    protected JCheckBox politeOption;
+    protected JCheckBox spillOption;
     protected JButton resetButton;
     protected JButton searchButton;
     protected JTextField searchTermField;
@@ -177,11 +181,15 @@ public abstract class CrawlerWindow extends JFrame {
         crawlTypePanel = new JPanel();
         crawlTypeDFSOption = new JRadioButton();
         crawlTypeBFSOption = new JRadioButton();
+        crawlTypeConcurrentOption = new JRadioButton();
+        crawlTypeBestFirstOption = new JRadioButton();
         crawlLimitsPanel = new JPanel();
         maxLinksPerPageLabel = new JLabel();
         maxDepthLabel = new JLabel();
         maxLinksPerPageSpinner = new JSpinner();
         maxDepthSpinner = new JSpinner();
+        politeOption = new JCheckBox();
+        spillOption = new JCheckBox();
         menubar = new JMenuBar();
         fileMenu = new JMenu();
         exitMenuItem = new JMenuItem();        
@@ -239,12 +247,20 @@ public abstract class CrawlerWindow extends JFrame {
         crawlTypeBFSOption.setMnemonic('B');
         crawlTypeBFSOption.setText("Breadth-First Search (BFS)");
 
+        searchTypeButtonGroup.add(crawlTypeConcurrentOption);
+        crawlTypeConcurrentOption.setMnemonic('C');
+        crawlTypeConcurrentOption.setText(VirtualThreadCrawler.usesVirtualThreads() ? "Concurrent (Virtual Threads)" : "Concurrent (Thread Pool)");
+
+        searchTypeButtonGroup.add(crawlTypeBestFirstOption);
+        crawlTypeBestFirstOption.setMnemonic('F');
+        crawlTypeBestFirstOption.setText("Best-First (Most Promising Links)");
+
         GroupLayout crawlTypePanelLayout = new GroupLayout(crawlTypePanel);
         crawlTypePanel.setLayout(crawlTypePanelLayout);
         crawlTypePanelLayout.setHorizontalGroup(
-                crawlTypePanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlTypePanelLayout.createSequentialGroup().addContainerGap().addGroup(crawlTypePanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addComponent(crawlTypeBFSOption).addComponent(crawlTypeDFSOption)).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)));
+                crawlTypePanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlTypePanelLayout.createSequentialGroup().addContainerGap().addGroup(crawlTypePanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addComponent(crawlTypeBFSOption).addComponent(crawlTypeDFSOption).addComponent(crawlTypeConcurrentOption).addComponent(crawlTypeBestFirstOption)).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)));
         crawlTypePanelLayout.setVerticalGroup(
-                crawlTypePanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlTypePanelLayout.createSequentialGroup().addComponent(crawlTypeDFSOption).addGap(1, 1, 1).addComponent(crawlTypeBFSOption).addContainerGap(29, Short.MAX_VALUE)));
+                crawlTypePanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlTypePanelLayout.createSequentialGroup().addComponent(crawlTypeDFSOption).addGap(1, 1, 1).addComponent(crawlTypeBFSOption).addGap(1, 1, 1).addComponent(crawlTypeConcurrentOption).addGap(1, 1, 1).addComponent(crawlTypeBestFirstOption).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)));
 
         crawlLimitsPanel.setBorder(BorderFactory.createTitledBorder("Crawler Limits"));
 
@@ -262,12 +278,18 @@ public abstract class CrawlerWindow extends JFrame {
 
         maxDepthSpinner.setModel(new SpinnerNumberModel(Integer.valueOf(3), Integer.valueOf(1), null, Integer.valueOf(1)));
 
+        politeOption.setMnemonic('P');
+        politeOption.setText("Polite (1 page/host/s)");
+
+        spillOption.setMnemonic('K');
+        spillOption.setText("Keep BFS queue on disk");
+
         GroupLayout crawlLimitsPanelLayout = new GroupLayout(crawlLimitsPanel);
         crawlLimitsPanel.setLayout(crawlLimitsPanelLayout);
         crawlLimitsPanelLayout.setHorizontalGroup(
-                crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlLimitsPanelLayout.createSequentialGroup().addContainerGap().addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING, false).addComponent(maxLinksPerPageLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE).addComponent(maxDepthLabel)).addPreferredGap(LayoutStyle.ComponentPlacement.RELATED).addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addComponent(maxDepthSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE).addComponent(maxLinksPerPageSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)));
+                crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlLimitsPanelLayout.createSequentialGroup().addContainerGap().addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING, false).addComponent(maxLinksPerPageLabel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE).addComponent(maxDepthLabel)).addPreferredGap(LayoutStyle.ComponentPlacement.RELATED).addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addComponent(maxDepthSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE).addComponent(maxLinksPerPageSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)).addGroup(crawlLimitsPanelLayout.createSequentialGroup().addContainerGap().addComponent(politeOption).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)).addGroup(crawlLimitsPanelLayout.createSequentialGroup().addContainerGap().addComponent(spillOption).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)));
         crawlLimitsPanelLayout.setVerticalGroup(
-                crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlLimitsPanelLayout.createSequentialGroup().addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.BASELINE).addComponent(maxDepthLabel).addComponent(maxDepthSpinner, GroupLayout.PREFERRED_SIZE, 22, GroupLayout.PREFERRED_SIZE)).addPreferredGap(LayoutStyle.ComponentPlacement.RELATED).addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.BASELINE).addComponent(maxLinksPerPageLabel).addComponent(maxLinksPerPageSpinner, GroupLayout.PREFERRED_SIZE, 22, GroupLayout.PREFERRED_SIZE)).addContainerGap(24, Short.MAX_VALUE)));
+                crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.LEADING).addGroup(crawlLimitsPanelLayout.createSequentialGroup().addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.BASELINE).addComponent(maxDepthLabel).addComponent(maxDepthSpinner, GroupLayout.PREFERRED_SIZE, 22, GroupLayout.PREFERRED_SIZE)).addPreferredGap(LayoutStyle.ComponentPlacement.RELATED).addGroup(crawlLimitsPanelLayout.createParallelGroup(GroupLayout.Alignment.BASELINE).addComponent(maxLinksPerPageLabel).addComponent(maxLinksPerPageSpinner, GroupLayout.PREFERRED_SIZE, 22, GroupLayout.PREFERRED_SIZE)).addPreferredGap(LayoutStyle.ComponentPlacement.RELATED).addComponent(politeOption).addPreferredGap(LayoutStyle.ComponentPlacement.RELATED).addComponent(spillOption).addContainerGap(GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)));
 
         GroupLayout crawlerTabLayout = new GroupLayout(crawlerTab);
         crawlerTab.setLayout(crawlerTabLayout);
@@ -9,14 +9,16 @@ package com.resong.crawler.resources;
 
 import com.resong.crawler.structures.stack.*;
 
-import java.util.Iterator;
+import java.util.BitSet;
 
 
 public class DepthCrawler extends Crawler {
 	
 	/////////////// Attributes ////////////////
 	
-	private LinkedStack<Page> pagesToVisit;	// stack of pages to visit
+	private IntArrayStack pagesToVisit;	// stack of ids of pages to visit
+	
+	private BitSet waiting;	// ids of pages waiting on the stack
 	
 	
 	////////////// Constructors ////////////////
@@ -27,14 +29,40 @@ public class DepthCrawler extends Crawler {
 	 * @param keyword search term
 	 * @param list list that stores results of each page crawled
 	 */
-	public DepthCrawler(String keyword, CrawlResultList list) {
+	public DepthCrawler(String keyword, CrawlResultSink list) {
 		super(keyword, list);
-		this.pagesToVisit = new LinkedStack<Page>();
+		this.pagesToVisit = new IntArrayStack();
+		this.waiting = new BitSet();
 	}
 	
 	
 	////////////// Methods ///////////////
 	
+	/**
+	 * Private method that pushes the id of a page onto the stack,
+	 * remembering the depth it will be visited at
+	 * @param id id of the page's address
+	 * @param depth depth of the page
+	 */
+	
+	private void push(int id, int depth) {
+		this.setLinkDepth(id, depth);
+		this.waiting.set(id);
+		this.pagesToVisit.push(id);
+		this.linkQueued(id, depth);
+	}
+	
+	/**
+	 * Private method that pops the next page off the stack
+	 * @return page to visit next
+	 */
+	
+	private Page pop() {
+		int id = this.pagesToVisit.pop();
+		this.waiting.clear(id);
+		return this.pageForLink(id);
+	}
+	
 	/**
 	 * Search method looks for the search term starting
 	 * at the String address while it has not been requested
@@ -46,13 +74,29 @@ public class DepthCrawler extends Crawler {
 		
 		int linksPushed = 0; // no links pushed onto stack
 		super.setCrawling(true); // set to indicate crawler is crawling
+		this.startCheckpoints();
 		
-		// create page object for starting URL
-		// and push it onto the stack
+		int[] frontier = this.takeRestoredFrontier(); // pages left to visit by a resumed crawl, or null
 		
-		Page startPage = new Page(address);
-		this.pagesToVisit.push(startPage);
-		linksPushed++;
+		if(frontier != null)
+		{
+			// carry on with the pages the resumed crawl had left to
+			// visit, pushing them in the order they were pushed before
+			
+			for(int i = 0; i < frontier.length; i += 2)
+			{
+				this.push(frontier[i], frontier[i + 1]);
+				linksPushed++;
+			}
+		}
+		else
+		{
+			// create page object for starting URL
+			// and push it onto the stack
+			
+			this.push(this.getUrlDictionary().intern(address), 0);
+			linksPushed++;
+		}
 		
 		// while there are still pages to visit 
 		// and it hasn't been requested to stop crawling
@@ -63,7 +107,7 @@ public class DepthCrawler extends Crawler {
 			// pop the next page from the pagesToVisit stack and 
 			// print a message indicating it's about to be visited
 			
-			Page page = this.pagesToVisit.pop();
+			Page page = this.pop();
 			linksPushed--;
 			this.printVisiting(page);
 			
@@ -73,10 +117,10 @@ public class DepthCrawler extends Crawler {
 				// download the page and add its address to the visited links
 				
 				this.crawlingNextPage();
-				WebHelper.downloadPage(page);
+				this.downloadPage(page);
 				this.addVisitedLink(page.getAddress());
 				
-				boolean containsText = page.containsText(this.getKeyWord()); // true if page contains search term, false otherwise
+				boolean containsText = this.matchesKeyWords(page); // true if page contains search term, false otherwise
 			
 				
 				// if it does contain the search term, print a message
@@ -90,32 +134,38 @@ public class DepthCrawler extends Crawler {
 				super.addCrawledPage(page, containsText); // add page and its search outcome to crawl results
 				
 				
+				long frontierStart = System.nanoTime(); // time at which the work on the page's links starts
+				int checked = 0; // number of links checked
+				int pushed = 0; // number of links pushed onto the stack
+				
 				// if current page depth is less than maximum page depth
 				
 				if(page.getDepth() < this.getMaxDepth())
 				{		
-					Iterator<Page> it = page.linkedPageIterator();
-					
-					// while there are links to iterate over, and the number of 
+					// while there are links to go through, and the number of 
 					// links added don't exceed the maximum number of links set
 					
-					while(it.hasNext() == true && linksPushed < this.getMaxLinks())
+					for(int i = 0; i < page.getLinkCount() && linksPushed < this.getMaxLinks(); i++)
 					{	
-						Page link = it.next(); // assign the page object link to the next link on the current page
+						int link = page.getLinkId(i); // id of the next link on the current page
+						checked++;
 								
-						boolean visited = this.hasVisitedLink(link.getAddress()); // true if link has been visited, else false				
-						boolean check = this.check(link); // true if link is already stored in pagesToVisit stack, else false
+						boolean visited = this.hasVisitedLink(link); // true if link has been visited, else false				
+						boolean check = this.waiting.get(link); // true if link is already waiting on the stack, else false
 						
 						// if it hasn't been visited already, and it's not
-						// stored in pagesToVisit stack, add it to the stack
+						// waiting on the stack, push it onto the stack
 						
 						if( visited == false && check == false)
 						{
-							this.pagesToVisit.push(link);
+							this.push(link, page.getLinkDepth());
 							linksPushed++;
+							pushed++;
 						}
 					}
 				}
+				
+				this.linksChecked(frontierStart, checked, pushed); // record the work done on the links
 			}
 			
 			catch (Exception ex){
@@ -125,60 +175,48 @@ public class DepthCrawler extends Crawler {
 				String error = "An error occurred while accessing " + page.getAddress();
 				super.addFailedPage(page, error);
 			}
+			
+			this.forgetVisitedLink(page); // drop the page's address if visited links are kept in a filter
+			
+			this.checkpointIfDue(); // write the crawl to the checkpoint file now and then
 		}
 		
+		this.finishCheckpoints();
 		super.setCrawling(false); // set so crawler is no longer crawling
 	}
 	
+	/**
+	 * Method indicating whether a link found on a page will certainly not
+	 * be followed: links already waiting on the stack are skipped as well
+	 * as visited links
+	 * @param page page on which the link was found
+	 * @param address address of the link
+	 * @return true if the link will be skipped, else false
+	 */
+	
+	protected boolean skipsLink(Page page, String address) {
+		int id = this.getUrlDictionary().find(address);
+		return super.skipsLink(page, address) || (id >= 0 && this.waiting.get(id));
+	}
+	
+	/**
+	 * Method indicating that this crawler can write checkpoints and
+	 * resume from them, as its stack holds every page left to visit
+	 * between two pages
+	 * @return true
+	 */
+	
+	protected boolean supportsCheckpoints() {
+		return true;
+	}
 	
 	/**
-	 * Private method to check if the page object link
-	 * is already in the stack or not.
-	 * @param link page currently being crawled
-	 * @return true if link is already in stack, else false
+	 * Method that gets the number of pages waiting on the stack
+	 * @return number of pages waiting to be visited
 	 */
 	
-	private boolean check(Page link){
-		
-		boolean check = false; // initialize check to false
-		
-		Page p; // create page p reference variable
-		LinkedStack<Page> temp = new LinkedStack<Page>(); // create temporary stack
-		
-		// while check is false
-		
-		while(check = false){	
-			
-			// if pagesToVisit stack is not empty
-			
-			if(!this.pagesToVisit.isEmpty()){
-				
-				// pop the pagesToVisit stack
-				// and push it onto the temp stack
-				
-				p = this.pagesToVisit.pop();
-				temp.push(p);
-							
-				// if address of recently pushed page is the same
-				// as address of parameter link, assign true to check
-				
-				if(p.getAddress().equals(link.getAddress())){
-					check = true;
-				}
-			}	
-			
-			// else assign temp stack to pagesToVisit stack
-			
-			else{
-				/*while(!temp.isEmpty()){
-					this.pagesToVisit.push(temp.pop());
-				}*/
-				this.pagesToVisit = temp;
-			}
-		}
-		
-		return check; // return check
-		
+	public int getFrontierSize() {
+		return this.pagesToVisit.size();
 	}
 
 }
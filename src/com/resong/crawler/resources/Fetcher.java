@@ -0,0 +1,20 @@
+package com.resong.crawler.resources;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads web pages for a Crawler. Implementations decide how pages are
+ * transferred, so crawlers never depend on a particular network library.
+ */
+public interface Fetcher {
+
+    /**
+     * Starts downloading the specified page. When the returned future
+     * completes, the Page has been cleared and populated with the text and
+     * links of the web page.
+     * @param page The Page to download
+     * @return A future completing with the downloaded Page, or exceptionally
+     *         if the download or parsing of the page fails
+     */
+    public CompletableFuture<Page> fetch(Page page);
+}
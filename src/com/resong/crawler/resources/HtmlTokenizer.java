@@ -0,0 +1,994 @@
+package com.resong.crawler.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Parses out the text and links of a downloaded web page directly from its
+ * bytes. Only the parts of HTML that a Page keeps are recognised: anchors
+ * with an href, text, character entities, and the elements that affect how
+ * text is laid out. Text is produced the same way the Swing parser used by
+ * PageParser produces it, with runs of white space collapsed and blocks
+ * run together, so a Page holds the same text and links either way.
+ *
+ * The tokenizer works on any character set in which markup characters are
+ * encoded as single ASCII bytes, such as UTF-8 or ISO-8859-1. Each thread
+ * has its own tokenizer, whose buffers are reused from page to page.
+ */
+public class HtmlTokenizer {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The initial size of the per-thread buffers
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    // Buffers grown beyond this size are dropped after the page is parsed
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    // The longest entity name looked up
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    // How each element affects parsing
+    private static final int KIND_INLINE = 0;
+    private static final int KIND_BLOCK = 1;
+    private static final int KIND_ANCHOR = 2;
+    private static final int KIND_PRE = 3;
+    private static final int KIND_SCRIPT = 4;
+    private static final int KIND_STYLE = 5;
+    private static final int KIND_HIDDEN = 6;
+
+    // The elements that affect parsing, and their kinds. Any other element
+    // is inline: white space around it is collapsed into a single space,
+    // whereas white space at the start or end of a block is dropped. Hidden
+    // elements are inline unless only visible text is wanted
+    private static final String[] TAG_NAMES = {
+            "a", "p", "br", "dd", "dl", "dt", "h1", "h2", "h3", "h4", "h5", "h6",
+            "hr", "li", "ol", "td", "th", "tr", "ul", "dir", "div", "pre",
+            "body", "form", "head", "html", "menu", "meta", "link", "title",
+            "table", "style", "center", "option", "script", "select", "address",
+            "caption", "textarea", "noframes", "blockquote", "noscript", "template"
+    };
+    private static final int[] TAG_KINDS = {
+            KIND_ANCHOR, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK,
+            KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK,
+            KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK,
+            KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_PRE,
+            KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK, KIND_BLOCK,
+            KIND_BLOCK, KIND_BLOCK,
+            KIND_BLOCK, KIND_STYLE, KIND_BLOCK, KIND_BLOCK, KIND_SCRIPT, KIND_BLOCK,
+            KIND_BLOCK,
+            KIND_BLOCK, KIND_PRE, KIND_BLOCK, KIND_BLOCK, KIND_HIDDEN, KIND_HIDDEN
+    };
+
+    // For each slot of a hash table of TAG_NAMES, the index of the name in
+    // the slot, or -1
+    private static final int[] TAG_SLOTS = tagSlots(256);
+
+    // The named character entities of HTML 4 and the characters they stand for
+    private static final HashMap<String, Integer> ENTITIES = entities(
+            "quot=34 amp=38 lt=60 gt=62 nbsp=160 iexcl=161 cent=162 pound=163 " +
+            "curren=164 yen=165 brvbar=166 sect=167 uml=168 copy=169 ordf=170 " +
+            "laquo=171 not=172 shy=173 reg=174 macr=175 deg=176 plusmn=177 " +
+            "sup2=178 sup3=179 acute=180 micro=181 para=182 middot=183 cedil=184 " +
+            "sup1=185 ordm=186 raquo=187 frac14=188 frac12=189 frac34=190 " +
+            "iquest=191 Agrave=192 Aacute=193 Acirc=194 Atilde=195 Auml=196 " +
+            "Aring=197 AElig=198 Ccedil=199 Egrave=200 Eacute=201 Ecirc=202 " +
+            "Euml=203 Igrave=204 Iacute=205 Icirc=206 Iuml=207 ETH=208 " +
+            "Ntilde=209 Ograve=210 Oacute=211 Ocirc=212 Otilde=213 Ouml=214 " +
+            "times=215 Oslash=216 Ugrave=217 Uacute=218 Ucirc=219 Uuml=220 " +
+            "Yacute=221 THORN=222 szlig=223 agrave=224 aacute=225 acirc=226 " +
+            "atilde=227 auml=228 aring=229 aelig=230 ccedil=231 egrave=232 " +
+            "eacute=233 ecirc=234 euml=235 igrave=236 iacute=237 icirc=238 " +
+            "iuml=239 eth=240 ntilde=241 ograve=242 oacute=243 ocirc=244 " +
+            "otilde=245 ouml=246 divide=247 oslash=248 ugrave=249 uacute=250 " +
+            "ucirc=251 uuml=252 yacute=253 thorn=254 yuml=255 OElig=338 " +
+            "oelig=339 Scaron=352 scaron=353 Yuml=376 fnof=402 circ=710 " +
+            "tilde=732 Alpha=913 Beta=914 Gamma=915 Delta=916 Epsilon=917 " +
+            "Zeta=918 Eta=919 Theta=920 Iota=921 Kappa=922 Lambda=923 Mu=924 " +
+            "Nu=925 Xi=926 Omicron=927 Pi=928 Rho=929 Sigma=931 Tau=932 " +
+            "Upsilon=933 Phi=934 Chi=935 Psi=936 Omega=937 alpha=945 beta=946 " +
+            "gamma=947 delta=948 epsilon=949 zeta=950 eta=951 theta=952 iota=953 " +
+            "kappa=954 lambda=955 mu=956 nu=957 xi=958 omicron=959 pi=960 " +
+            "rho=961 sigmaf=962 sigma=963 tau=964 upsilon=965 phi=966 chi=967 " +
+            "psi=968 omega=969 thetasym=977 upsih=978 piv=982 ensp=8194 " +
+            "emsp=8195 thinsp=8201 zwnj=8204 zwj=8205 lrm=8206 rlm=8207 " +
+            "ndash=8211 mdash=8212 lsquo=8216 rsquo=8217 sbquo=8218 ldquo=8220 " +
+            "rdquo=8221 bdquo=8222 dagger=8224 Dagger=8225 bull=8226 hellip=8230 " +
+            "permil=8240 prime=8242 Prime=8243 lsaquo=8249 rsaquo=8250 " +
+            "oline=8254 frasl=8260 euro=8364 image=8465 weierp=8472 real=8476 " +
+            "trade=8482 alefsym=8501 larr=8592 uarr=8593 rarr=8594 darr=8595 " +
+            "harr=8596 crarr=8629 lArr=8656 uArr=8657 rArr=8658 dArr=8659 " +
+            "hArr=8660 forall=8704 part=8706 exist=8707 empty=8709 nabla=8711 " +
+            "isin=8712 notin=8713 ni=8715 prod=8719 sum=8721 minus=8722 " +
+            "lowast=8727 radic=8730 prop=8733 infin=8734 ang=8736 and=8743 " +
+            "or=8744 cap=8745 cup=8746 int=8747 there4=8756 sim=8764 cong=8773 " +
+            "asymp=8776 ne=8800 equiv=8801 le=8804 ge=8805 sub=8834 sup=8835 " +
+            "nsub=8836 sube=8838 supe=8839 oplus=8853 otimes=8855 perp=8869 " +
+            "sdot=8901 lceil=8968 rceil=8969 lfloor=8970 rfloor=8971 lang=9001 " +
+            "rang=9002 loz=9674 spades=9824 clubs=9827 hearts=9829 diams=9830");
+
+    // Markup that must encode to the same bytes as in ASCII
+    private static final String MARKUP_PROBE = "<a href=\"x\" b='y'/>&#;! \t\r\n";
+
+    // The tokenizer of each thread
+    private static final ThreadLocal<HtmlTokenizer> TOKENIZERS = new ThreadLocal<HtmlTokenizer>() {
+        @Override
+        protected HtmlTokenizer initialValue() {
+            return new HtmlTokenizer();
+        }
+    };
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // Holds a document read from a stream
+    private byte[] input;
+
+    // Holds a run of bytes decoded to characters
+    private char[] chars;
+
+    // Holds text ready to be added to the page
+    private char[] output;
+
+    // Builds attribute values
+    private StringBuilder value;
+
+    // The character set last parsed, and a decoder for it
+    private Charset charset;
+    private CharsetDecoder decoder;
+
+    // Whether the character set is UTF-8
+    private boolean utf8;
+
+    // The Page being parsed
+    private Page page;
+
+    // Whether white space was skipped since the last character of text
+    private boolean pendingSpace;
+
+    // Whether no text has been added since the last block started
+    private boolean atBlockStart;
+
+    // Whether the last character added was a space standing for white space
+    private boolean afterSpace;
+
+    // How many preformatted elements are open
+    private int preDepth;
+
+    // Whether the page wants only visible text
+    private boolean visibleOnly;
+
+    // How many elements whose content is not visible are open
+    private int hiddenDepth;
+
+    // Whether the page needs no text, only links
+    private boolean skipText;
+
+    // The character found by the last call to entity
+    private int entityValue;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new HtmlTokenizer with empty buffers
+     */
+    private HtmlTokenizer() {
+
+        this.input = new byte[INITIAL_BUFFER_SIZE];
+        this.chars = new char[INITIAL_BUFFER_SIZE];
+        this.output = new char[INITIAL_BUFFER_SIZE];
+        this.value = new StringBuilder();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the tokenizer of the current thread
+     * @return A tokenizer that only the current thread uses
+     */
+    public static HtmlTokenizer forCurrentThread() {
+        return TOKENIZERS.get();
+    }
+
+    /**
+     * Returns whether documents in the specified character set can be
+     * tokenized, which requires markup to be encoded as in ASCII
+     * @param charset The character set of the document
+     * @return True, if the tokenizer can parse the document; false, otherwise
+     */
+    public static boolean supports(Charset charset) {
+
+        // Character sets that switch modes with escape sequences may encode
+        // other characters with ASCII bytes
+        String name = charset.name().toUpperCase();
+        if (name.contains("2022") || name.startsWith("UTF-7") || !charset.canEncode()) {
+            return false;
+        }
+
+        try {
+            return Arrays.equals(MARKUP_PROBE.getBytes(charset),
+                    MARKUP_PROBE.getBytes(StandardCharsets.US_ASCII));
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Clears the specified page and populates it with the text and links of
+     * an HTML document read from a stream. The stream is not closed.
+     * @param page The Page to populate
+     * @param in A stream over the HTML of the page
+     * @param charset The character set of the document
+     * @throws IOException If reading the document fails
+     */
+    public void parse(Page page, InputStream in, Charset charset) throws IOException {
+
+        // Read the whole document into the buffer, growing it as needed
+        int length = 0;
+        while (true) {
+            if (length == this.input.length) {
+                this.input = Arrays.copyOf(this.input, this.input.length * 2);
+            }
+            int read = in.read(this.input, length, this.input.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+
+        this.parse(page, this.input, 0, length, charset);
+    }
+
+    /**
+     * Clears the specified page and populates it with the text and links of
+     * an HTML document
+     * @param page The Page to populate
+     * @param data An array holding the HTML of the page
+     * @param start The index of the first byte of the document
+     * @param length The number of bytes in the document
+     * @param charset The character set of the document
+     */
+    public void parse(Page page, byte[] data, int start, int length, Charset charset) {
+
+        page.clear();
+
+        // Search the raw bytes for the keyword if the page allows it, and
+        // decode text only if the page still needs it
+        page.searchBytes(data, start, length, charset);
+
+        this.page = page;
+        this.skipText = !page.needsText();
+        this.useCharset(charset);
+        this.pendingSpace = false;
+        this.atBlockStart = true;
+        this.afterSpace = false;
+        this.preDepth = 0;
+        this.visibleOnly = page.isVisibleTextOnly();
+        this.hiddenDepth = 0;
+
+        try {
+            int end = start + length;
+            int textStart = start;
+            int i = start;
+
+            // Pass the text between each piece of markup to the page
+            while (i < end) {
+                if (data[i] != '<') {
+                    i++;
+                    continue;
+                }
+                this.text(data, textStart, i);
+                i = this.markup(data, i, end);
+                textStart = i;
+            }
+            this.text(data, textStart, end);
+        } finally {
+            this.page = null;
+            this.trimBuffers();
+        }
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Parses one piece of markup: a tag, comment or declaration
+     * @param data The document
+     * @param i The index of the '<' starting the markup
+     * @param end The index just past the end of the document
+     * @return The index just past the end of the markup
+     */
+    private int markup(byte[] data, int i, int end) {
+
+        if (i + 1 >= end) {
+            return end;
+        }
+
+        byte b = data[i + 1];
+
+        // Comments, declarations and processing instructions hold no text
+        if (b == '!') {
+            if (startsWith(data, i + 2, end, "--")) {
+                int close = indexOf(data, i + 4, end, "-->");
+                return (close < 0) ? end : close + 3;
+            }
+            return skipPast(data, i + 2, end, (byte) '>');
+        }
+        if (b == '?') {
+            return skipPast(data, i + 2, end, (byte) '>');
+        }
+
+        boolean closing = (b == '/');
+        int nameStart = closing ? i + 2 : i + 1;
+
+        // A '<' that does not start a tag is dropped, as the Swing parser does
+        if (nameStart >= end || !isLetter(data[nameStart])) {
+            return closing ? skipPast(data, nameStart, end, (byte) '>') : i + 1;
+        }
+
+        int nameEnd = nameStart;
+        while (nameEnd < end && isNameChar(data[nameEnd])) {
+            nameEnd++;
+        }
+        int kind = kindOf(data, nameStart, nameEnd);
+
+        if (closing) {
+            this.endTag(kind);
+            return skipPast(data, nameEnd, end, (byte) '>');
+        }
+
+        int after = this.attributes(data, nameEnd, end, kind == KIND_ANCHOR && this.page.acceptsLinks());
+        this.startTag(kind);
+
+        // The content of scripts is never text; the content of style
+        // sheets is, unless only visible text is wanted, but any tags in
+        // either are not tags
+        if (kind == KIND_SCRIPT || kind == KIND_STYLE) {
+            int close = indexOfEndTag(data, after, end, (kind == KIND_SCRIPT) ? "script" : "style");
+            if (kind == KIND_STYLE && !this.visibleOnly) {
+                this.text(data, after, close);
+            }
+            this.endTag(kind);
+            return skipPast(data, close, end, (byte) '>');
+        }
+
+        // A line break just after the start of preformatted text is ignored
+        if (kind == KIND_PRE && after < end && (data[after] == '\n' || data[after] == '\r')) {
+            after += (data[after] == '\r' && after + 1 < end && data[after + 1] == '\n') ? 2 : 1;
+        }
+
+        return after;
+    }
+
+    /**
+     * Parses the attributes of a start tag, adding the address of an anchor
+     * to the page
+     * @param data The document
+     * @param i The index just past the tag name
+     * @param end The index just past the end of the document
+     * @param anchor Whether the tag is an anchor whose address the page
+     *               still accepts
+     * @return The index just past the end of the tag
+     */
+    private int attributes(byte[] data, int i, int end, boolean anchor) {
+
+        boolean linked = false;
+
+        while (i < end) {
+            byte b = data[i];
+            if (b == '>') {
+                return i + 1;
+            }
+            if (isSpace(b) || b == '/') {
+                i++;
+                continue;
+            }
+
+            // Read the attribute name, and its value if it has one
+            int nameStart = i;
+            while (i < end && !isSpace(data[i]) && data[i] != '=' && data[i] != '>' && data[i] != '/') {
+                i++;
+            }
+            int nameEnd = i;
+
+            while (i < end && isSpace(data[i])) {
+                i++;
+            }
+            if (i >= end || data[i] != '=') {
+                continue;
+            }
+            i++;
+            while (i < end && isSpace(data[i])) {
+                i++;
+            }
+
+            int valueStart;
+            int valueEnd;
+            if (i < end && (data[i] == '"' || data[i] == '\'')) {
+                byte quote = data[i];
+                valueStart = i + 1;
+                valueEnd = valueStart;
+                while (valueEnd < end && data[valueEnd] != quote) {
+                    valueEnd++;
+                }
+                i = Math.min(valueEnd + 1, end);
+            } else {
+                valueStart = i;
+                while (i < end && !isSpace(data[i]) && data[i] != '>') {
+                    i++;
+                }
+                valueEnd = i;
+            }
+
+            // Add the first href of an anchor to the page
+            if (anchor && !linked && equalsIgnoreCase(data, nameStart, nameEnd, "href")) {
+                linked = true;
+                try {
+                    this.page.addLink(this.attributeValue(data, valueStart, valueEnd));
+                } catch (Exception ex) {
+                    // If parsing fails, ignore the link
+                }
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Updates the layout of text on reaching a start tag
+     * @param kind The kind of element started
+     */
+    private void startTag(int kind) {
+
+        if (kind == KIND_PRE) {
+            this.preDepth++;
+        }
+        if (kind == KIND_HIDDEN && this.visibleOnly) {
+            this.hiddenDepth++;
+        }
+        this.layoutTag(kind);
+    }
+
+    /**
+     * Updates the layout of text on reaching an end tag, and tells the page
+     * where the text of a link ends
+     * @param kind The kind of element ended
+     */
+    private void endTag(int kind) {
+
+        if (kind == KIND_ANCHOR) {
+            this.page.endAnchor();
+        }
+        if (kind == KIND_PRE && this.preDepth > 0) {
+            this.preDepth--;
+        }
+        if (kind == KIND_HIDDEN && this.hiddenDepth > 0) {
+            this.hiddenDepth--;
+        }
+        this.layoutTag(kind);
+    }
+
+    /**
+     * Settles white space waiting to be added on reaching a tag. Before an
+     * inline element it becomes a space, as it would for the Swing parser;
+     * before a block it is dropped, and a new block of text starts.
+     * @param kind The kind of element started or ended
+     */
+    private void layoutTag(int kind) {
+
+        if (kind == KIND_INLINE || kind == KIND_ANCHOR || kind == KIND_HIDDEN) {
+            if (this.pendingSpace && !this.atBlockStart && !this.afterSpace) {
+                this.output[0] = ' ';
+                this.page.appendText(this.output, 0, 1);
+                this.afterSpace = true;
+            }
+        } else {
+            this.atBlockStart = true;
+        }
+        this.pendingSpace = false;
+    }
+
+    /**
+     * Adds a run of text to the page, decoding entities and collapsing
+     * white space
+     * @param data The document
+     * @param from The index of the first byte of the text
+     * @param to The index just past the last byte of the text
+     */
+    private void text(byte[] data, int from, int to) {
+
+        // Skip empty runs, text that is not shown if only visible text is
+        // wanted, and all text if the page needs none
+        if (from >= to || this.hiddenDepth > 0 || this.skipText) {
+            return;
+        }
+
+        int length = this.decode(data, from, to);
+        char[] c = this.chars;
+
+        // Every character adds at most itself and one space
+        if (this.output.length < length * 2 + 2) {
+            this.output = new char[length * 2 + 2];
+        }
+        char[] out = this.output;
+        int count = 0;
+
+        // Work on local copies of the layout state
+        boolean pending = this.pendingSpace;
+        boolean skipSpace = this.atBlockStart || this.afterSpace;
+        boolean collapse = (this.preDepth == 0);
+
+        for (int i = 0; i < length; i++) {
+            int ch = c[i];
+
+            if (ch == '&') {
+                int after = this.entity(c, i + 1, length);
+                if (after >= 0) {
+                    ch = this.entityValue;
+                    i = after - 1;
+                }
+            } else if (ch <= ' ' && collapse && isSpace(ch)) {
+                pending = true;
+                continue;
+            }
+
+            // Add a single space for white space skipped in the same block
+            if (pending && !skipSpace) {
+                out[count++] = ' ';
+            }
+            pending = false;
+            skipSpace = false;
+
+            if (ch < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                out[count++] = (char) ch;
+            } else {
+                count += Character.toChars(ch, out, count);
+            }
+        }
+
+        this.pendingSpace = pending;
+        if (count > 0) {
+            this.atBlockStart = false;
+            this.afterSpace = false;
+        }
+
+        if (count > 0) {
+            this.page.appendText(this.output, 0, count);
+        }
+    }
+
+    /**
+     * Decodes the value of an attribute, including its entities
+     * @param data The document
+     * @param from The index of the first byte of the value
+     * @param to The index just past the last byte of the value
+     * @return The value of the attribute
+     */
+    private String attributeValue(byte[] data, int from, int to) {
+
+        int length = this.decode(data, from, to);
+        char[] c = this.chars;
+
+        this.value.setLength(0);
+        for (int i = 0; i < length; i++) {
+            if (c[i] == '&') {
+                int after = this.entity(c, i + 1, length);
+                if (after >= 0) {
+                    this.value.appendCodePoint(this.entityValue);
+                    i = after - 1;
+                    continue;
+                }
+            }
+            this.value.append(c[i]);
+        }
+
+        return this.value.toString();
+    }
+
+    /**
+     * Reads a character entity, such as "amp;" or "#65;". The closing
+     * semicolon is optional, as it is for the Swing parser.
+     * @param c The characters holding the entity
+     * @param i The index just past the '&'
+     * @param length The number of characters held
+     * @return The index just past the entity, or -1 if there is no entity
+     *         there; the character it stands for is left in entityValue
+     */
+    private int entity(char[] c, int i, int length) {
+
+        int j = i;
+        int ch;
+
+        if (j < length && c[j] == '#') {
+
+            // A numeric entity, in decimal or hexadecimal
+            j++;
+            int radix = 10;
+            if (j < length && (c[j] == 'x' || c[j] == 'X')) {
+                radix = 16;
+                j++;
+            }
+            int digits = j;
+            ch = 0;
+            int digit;
+            while (j < length && (digit = digit(c[j], radix)) >= 0 && ch <= Character.MAX_CODE_POINT) {
+                ch = ch * radix + digit;
+                j++;
+            }
+            if (j == digits || ch == 0 || ch > Character.MAX_CODE_POINT) {
+                return -1;
+            }
+        } else {
+
+            // A named entity, matched exactly or else ignoring case
+            while (j < length && j - i < MAX_ENTITY_LENGTH && isAlphanumeric(c[j])) {
+                j++;
+            }
+            if (j == i) {
+                return -1;
+            }
+            String name = new String(c, i, j - i);
+            Integer found = ENTITIES.get(name);
+            if (found == null) {
+                found = ENTITIES.get(name.toLowerCase());
+            }
+            if (found == null) {
+                return -1;
+            }
+            ch = found;
+        }
+
+        if (j < length && c[j] == ';') {
+            j++;
+        }
+        this.entityValue = ch;
+        return j;
+    }
+
+    /**
+     * Decodes a run of bytes into the character buffer, converting ASCII
+     * bytes directly and passing the rest to the decoder
+     * @param data The document
+     * @param from The index of the first byte
+     * @param to The index just past the last byte
+     * @return The number of characters decoded
+     */
+    private int decode(byte[] data, int from, int to) {
+
+        int capacity = (int) Math.ceil((to - from) * (double) this.decoder.maxCharsPerByte()) + 1;
+        if (this.chars.length < capacity) {
+            this.chars = new char[capacity];
+        }
+
+        char[] out = this.chars;
+        int i = from;
+        int count = 0;
+
+        while (i < to) {
+            int b = data[i];
+
+            if (b >= 0) {
+                out[count++] = (char) b;
+                i++;
+                continue;
+            }
+
+            // Decode well-formed UTF-8 sequences directly as well
+            if (this.utf8) {
+                if ((b & 0xE0) == 0xC0 && i + 1 < to && isContinuation(data[i + 1]) && (b & 0x1E) != 0) {
+                    out[count++] = (char) (((b & 0x1F) << 6) | (data[i + 1] & 0x3F));
+                    i += 2;
+                    continue;
+                }
+                if ((b & 0xF0) == 0xE0 && i + 2 < to && isContinuation(data[i + 1]) && isContinuation(data[i + 2])) {
+                    int c = ((b & 0x0F) << 12) | ((data[i + 1] & 0x3F) << 6) | (data[i + 2] & 0x3F);
+                    if (c >= 0x800 && !Character.isSurrogate((char) c)) {
+                        out[count++] = (char) c;
+                        i += 3;
+                        continue;
+                    }
+                }
+            }
+
+            // Leave anything else to the decoder
+            CharBuffer rest = CharBuffer.wrap(out, count, out.length - count);
+            this.decoder.reset();
+            this.decoder.decode(ByteBuffer.wrap(data, i, to - i), rest, true);
+            this.decoder.flush(rest);
+            return rest.position();
+        }
+
+        return count;
+    }
+
+    /**
+     * Prepares a decoder for the specified character set
+     * @param charset The character set of the document
+     */
+    private void useCharset(Charset charset) {
+
+        if (!charset.equals(this.charset)) {
+            this.charset = charset;
+            this.utf8 = charset.equals(StandardCharsets.UTF_8);
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+
+    /**
+     * Drops buffers that grew large for a single page, so that one huge
+     * page does not hold on to memory for the life of the thread
+     */
+    private void trimBuffers() {
+
+        if (this.input.length > MAX_RETAINED_BUFFER_SIZE) {
+            this.input = new byte[INITIAL_BUFFER_SIZE];
+        }
+        if (this.chars.length > MAX_RETAINED_BUFFER_SIZE) {
+            this.chars = new char[INITIAL_BUFFER_SIZE];
+        }
+        if (this.output.length > MAX_RETAINED_BUFFER_SIZE) {
+            this.output = new char[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Returns how an element affects parsing
+     * @param data The document
+     * @param from The index of the first byte of the element name
+     * @param to The index just past the element name
+     * @return The kind of the element
+     */
+    private static int kindOf(byte[] data, int from, int to) {
+
+        int mask = TAG_SLOTS.length - 1;
+        int slot = hash(data, from, to) & mask;
+
+        // Probe the table until the name or an empty slot is found
+        while (TAG_SLOTS[slot] >= 0) {
+            int index = TAG_SLOTS[slot];
+            if (equalsIgnoreCase(data, from, to, TAG_NAMES[index])) {
+                return TAG_KINDS[index];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return KIND_INLINE;
+    }
+
+    /**
+     * Returns the hash of an element name, ignoring case
+     * @param data The bytes holding the name
+     * @param from The index of the first byte of the name
+     * @param to The index just past the name
+     * @return The hash of the name
+     */
+    private static int hash(byte[] data, int from, int to) {
+
+        int h = to - from;
+        for (int i = from; i < to; i++) {
+            h = h * 31 + (data[i] | 0x20);
+        }
+        return h ^ (h >>> 7);
+    }
+
+    /**
+     * Returns the index of the end tag of an element whose content is not
+     * parsed, such as a script
+     * @param data The document
+     * @param from The index to start searching from
+     * @param end The index just past the end of the document
+     * @param name The name of the element, in lower case
+     * @return The index of the '<' of the end tag, or the end of the document
+     */
+    private static int indexOfEndTag(byte[] data, int from, int end, String name) {
+
+        for (int i = from; i + 1 < end; i++) {
+            if (data[i] == '<' && data[i + 1] == '/'
+                    && i + 2 + name.length() <= end
+                    && equalsIgnoreCase(data, i + 2, i + 2 + name.length(), name)
+                    && (i + 2 + name.length() == end || !isNameChar(data[i + 2 + name.length()]))) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the index just past the next occurrence of a byte
+     * @param data The document
+     * @param from The index to start searching from
+     * @param end The index just past the end of the document
+     * @param b The byte to search for
+     * @return The index just past the byte, or the end of the document
+     */
+    private static int skipPast(byte[] data, int from, int end, byte b) {
+
+        for (int i = from; i < end; i++) {
+            if (data[i] == b) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the index of the next occurrence of an ASCII string
+     * @param data The document
+     * @param from The index to start searching from
+     * @param end The index just past the end of the document
+     * @param s The string to search for
+     * @return The index of the string, or -1 if it does not occur
+     */
+    private static int indexOf(byte[] data, int from, int end, String s) {
+
+        for (int i = from; i + s.length() <= end; i++) {
+            if (startsWith(data, i, end, s)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether an ASCII string occurs at an index
+     * @param data The document
+     * @param i The index to look at
+     * @param end The index just past the end of the document
+     * @param s The string to look for
+     * @return True, if the string occurs at the index; false, otherwise
+     */
+    private static boolean startsWith(byte[] data, int i, int end, String s) {
+
+        if (i + s.length() > end) {
+            return false;
+        }
+        for (int j = 0; j < s.length(); j++) {
+            if (data[i + j] != s.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a range of bytes spells a lower case ASCII string,
+     * ignoring case
+     * @param data The document
+     * @param from The index of the first byte
+     * @param to The index just past the last byte
+     * @param s The string to compare with, in lower case
+     * @return True, if the bytes match the string; false, otherwise
+     */
+    private static boolean equalsIgnoreCase(byte[] data, int from, int to, String s) {
+
+        if (to - from != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            int b = data[from + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a character is HTML white space
+     * @param c The character
+     * @return True, if the character is white space; false, otherwise
+     */
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Returns whether a byte continues a UTF-8 sequence
+     * @param b The byte
+     * @return True, if the byte is a continuation byte; false, otherwise
+     */
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Returns whether a byte is an ASCII letter
+     * @param b The byte
+     * @return True, if the byte is a letter; false, otherwise
+     */
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    /**
+     * Returns whether a byte may appear in an element name
+     * @param b The byte
+     * @return True, if the byte may appear in a name; false, otherwise
+     */
+    private static boolean isNameChar(byte b) {
+        return isLetter(b) || (b >= '0' && b <= '9') || b == '-' || b == ':' || b == '_';
+    }
+
+    /**
+     * Returns whether a character is an ASCII letter or digit
+     * @param c The character
+     * @return True, if the character is a letter or digit; false, otherwise
+     */
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Returns the value of an ASCII digit
+     * @param c The character
+     * @param radix 10 for decimal or 16 for hexadecimal digits
+     * @return The value of the digit, or -1 if it is not a digit
+     */
+    private static int digit(char c, int radix) {
+
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (radix == 16 && (c | 0x20) >= 'a' && (c | 0x20) <= 'f') {
+            return (c | 0x20) - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Builds a hash table of TAG_NAMES with open addressing
+     * @param size The number of slots, a power of two larger than the
+     *             number of names
+     * @return For each slot, the index of the name in it, or -1
+     */
+    private static int[] tagSlots(int size) {
+
+        int[] slots = new int[size];
+        Arrays.fill(slots, -1);
+
+        for (int i = 0; i < TAG_NAMES.length; i++) {
+            byte[] name = TAG_NAMES[i].getBytes(StandardCharsets.US_ASCII);
+            int slot = hash(name, 0, name.length) & (size - 1);
+            while (slots[slot] >= 0) {
+                slot = (slot + 1) & (size - 1);
+            }
+            slots[slot] = i;
+        }
+        return slots;
+    }
+
+    /**
+     * Builds the table of named entities from a list of name=value pairs
+     * @param list The pairs, separated by spaces
+     * @return A map from each entity name to its character
+     */
+    private static HashMap<String, Integer> entities(String list) {
+
+        HashMap<String, Integer> result = new HashMap<String, Integer>();
+        for (String pair : list.split(" ")) {
+            int eq = pair.indexOf('=');
+            result.put(pair.substring(0, eq), Integer.valueOf(pair.substring(eq + 1)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,186 @@
+package com.resong.crawler.resources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads web pages asynchronously with java.net.http.HttpClient. One
+ * client is shared by every download, so connections to the same host are
+ * kept alive and reused, and HTTP/2 is used where the server supports it.
+ * Many downloads can be in progress at once on a handful of threads.
+ *
+ * Fetchers made with the default timeouts share one client between them,
+ * so every crawler of an application uses the same connections and
+ * threads. A client can also be given to the constructor, to share it
+ * with other code or configure it differently.
+ */
+public class HttpClientFetcher implements Fetcher {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // How long to wait for a connection to be established
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    // How long to wait for a complete response
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    /***************************************************************************
+     * CLASS VARIABLES
+     **************************************************************************/
+
+    // The client shared by fetchers with the default timeouts, or null until
+    // the first of them is made
+    private static HttpClient sharedClient;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The client shared by all downloads
+    private HttpClient client;
+
+    // How long to wait for a complete response
+    private Duration requestTimeout;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new HttpClientFetcher with the default timeouts, using
+     * the client shared by all such fetchers
+     */
+    public HttpClientFetcher() {
+        this(sharedClient(), DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Initializes a new HttpClientFetcher with the specified timeouts and a
+     * client of its own
+     * @param connectTimeout How long to wait for a connection
+     * @param requestTimeout How long to wait for a complete response
+     */
+    public HttpClientFetcher(Duration connectTimeout, Duration requestTimeout) {
+        this(newClient(connectTimeout), requestTimeout);
+    }
+
+    /**
+     * Initializes a new HttpClientFetcher downloading with the specified
+     * client
+     * @param client The client to download with
+     * @param requestTimeout How long to wait for a complete response
+     */
+    public HttpClientFetcher(HttpClient client, Duration requestTimeout) {
+
+        this.client = client;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Starts downloading the specified page. The body is received without
+     * blocking any thread and parsed once it is complete.
+     * @param page The Page to download
+     * @return A future completing with the downloaded Page
+     */
+    public CompletableFuture<Page> fetch(final Page page) {
+
+        HttpRequest request;
+
+        // Build the request, failing the future if the address is malformed
+        try {
+            request = HttpRequest.newBuilder(URI.create(page.getAddress()))
+                    .timeout(this.requestTimeout)
+                    .GET()
+                    .build();
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        // Note when the headers arrive, so the wait for the response can be
+        // told apart from receiving its body
+        final long start = System.nanoTime();
+        final long[] headers = new long[1];
+        HttpResponse.BodyHandler<byte[]> handler = info -> {
+            headers[0] = System.nanoTime();
+            return HttpResponse.BodySubscribers.ofByteArray();
+        };
+
+        return this.client.sendAsync(request, handler)
+                .thenApply(response -> parse(page, response, headers[0] - start));
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the client shared by fetchers with the default timeouts,
+     * making it the first time
+     * @return The shared client
+     */
+    private static synchronized HttpClient sharedClient() {
+
+        if (sharedClient == null) {
+            sharedClient = newClient(DEFAULT_CONNECT_TIMEOUT);
+        }
+        return sharedClient;
+    }
+
+    /**
+     * Makes a client following redirects and preferring HTTP/2
+     * @param connectTimeout How long to wait for a connection
+     * @return The new client
+     */
+    private static HttpClient newClient(Duration connectTimeout) {
+
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * Parses a complete response into the specified page
+     * @param page The Page to populate
+     * @param response The response received for the page
+     * @param connectNanos The time until the response headers arrived
+     * @return The populated Page
+     */
+    private static Page parse(Page page, HttpResponse<byte[]> response, long connectNanos) {
+
+        // Treat anything but a successful response as a failed download,
+        // as URL.openStream does
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new UncheckedIOException(new IOException("HTTP " + response.statusCode()
+                    + " for " + page.getAddress()));
+        }
+
+        Charset charset = WebHelper.charsetOf(
+                response.headers().firstValue("Content-Type").orElse(null));
+
+        long start = System.nanoTime();
+        try {
+            WebHelper.parsePage(page, response.body(), charset);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        page.setContentLength(response.body().length);
+        page.setFetchTimes(connectNanos, System.nanoTime() - start);
+
+        return page;
+    }
+}
@@ -0,0 +1,343 @@
+package com.resong.crawler.resources;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of keywords compiled into an Aho-Corasick automaton, so that a page
+ * can be searched for all of them, ignoring case, in a single pass over its
+ * text. The automaton is built once per crawl and never changes afterwards,
+ * so it may be shared by any number of threads; the position reached in a
+ * particular page is kept by a KeywordCounter.
+ */
+public class KeywordAutomaton {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // Characters below this value have a precomputed transition from every
+    // state; others follow failure links
+    private static final int DENSE_RANGE = 128;
+
+    // The state the automaton starts in
+    private static final int ROOT = 0;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The keywords, in lower case, in the order they were given
+    private String[] terms;
+
+    // For each state and character below DENSE_RANGE, the next state
+    private int[] denseNext;
+
+    // For each state, its child characters (sorted) and child states
+    private char[][] childChars;
+    private int[][] childStates;
+
+    // For each state, the state of its longest proper suffix in the trie
+    private int[] failure;
+
+    // For each state, the indexes of the terms that end there
+    private int[][] outputs;
+
+    // The last search for a single keyword in raw bytes, or null
+    private volatile ByteKeywordSearch byteSearch;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Compiles the specified keywords into an automaton. Keywords are
+     * compared ignoring case, and duplicates and empty keywords are dropped.
+     * @param keywords The keywords to search for
+     */
+    public KeywordAutomaton(Collection<String> keywords) {
+
+        LinkedHashSet<String> unique = new LinkedHashSet<String>();
+        for (String keyword : keywords) {
+            String term = lowerCase(keyword.trim());
+            if (!term.isEmpty()) {
+                unique.add(term);
+            }
+        }
+        this.terms = unique.toArray(new String[unique.size()]);
+
+        this.build();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Compiles a single keyword into an automaton
+     * @param keyword The keyword to search for
+     * @return An automaton searching for the keyword
+     */
+    public static KeywordAutomaton of(String keyword) {
+        return new KeywordAutomaton(Collections.singletonList(keyword));
+    }
+
+    /**
+     * Returns a new counter that searches text with this automaton
+     * @param countAll Whether every occurrence should be counted, rather
+     *                 than stopping once each keyword has been seen
+     * @return A new counter positioned at the start of the text
+     */
+    public KeywordCounter newCounter(boolean countAll) {
+        return new KeywordCounter(this, countAll);
+    }
+
+    /**
+     * Returns a search for the only keyword of the automaton in the raw
+     * bytes of documents of the specified character set. The search is
+     * kept, as pages of one crawl mostly share a character set.
+     * @param charset The character set of the documents searched
+     * @return The search, or null if the automaton holds several keywords
+     *         or the keyword cannot be searched for in that character set
+     */
+    public ByteKeywordSearch byteSearch(Charset charset) {
+
+        if (this.terms.length != 1) {
+            return null;
+        }
+
+        ByteKeywordSearch search = this.byteSearch;
+        if (search == null || !search.getCharset().equals(charset)) {
+            search = ByteKeywordSearch.of(this.terms[0], charset);
+            if (search != null) {
+                this.byteSearch = search;
+            }
+        }
+        return search;
+    }
+
+    /**
+     * Returns the number of keywords in the automaton
+     * @return The number of keywords
+     */
+    public int size() {
+        return this.terms.length;
+    }
+
+    /**
+     * Returns the keyword with the specified index, in lower case
+     * @param index The index of the keyword
+     * @return The keyword
+     */
+    public String getTerm(int index) {
+        return this.terms[index];
+    }
+
+    /**
+     * Returns the index of the specified keyword
+     * @param keyword The keyword to look up, in any case
+     * @return The index of the keyword, or -1 if it is not in the automaton
+     */
+    public int indexOf(String keyword) {
+
+        String term = lowerCase(keyword.trim());
+        for (int i = 0; i < this.terms.length; i++) {
+            if (this.terms[i].equals(term)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Pairs each keyword that was found with the number of times it was found
+     * @param counts The number of occurrences of each keyword, by index
+     * @return A map from each keyword found to its count, in keyword order
+     */
+    public Map<String, Integer> countsByTerm(int[] counts) {
+
+        LinkedHashMap<String, Integer> result = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < this.terms.length; i++) {
+            if (counts[i] > 0) {
+                result.put(this.terms[i], counts[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts text to lower case one character at a time, the same way
+     * text searched by the automaton is converted
+     * @param text The text to convert
+     * @return The text in lower case
+     */
+    public static String lowerCase(String text) {
+
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /***************************************************************************
+     * PACKAGE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the state reached from a state on reading a character
+     * @param state The current state
+     * @param c The character read, in lower case
+     * @return The next state
+     */
+    int next(int state, char c) {
+
+        if (c < DENSE_RANGE) {
+            return this.denseNext[state * DENSE_RANGE + c];
+        }
+
+        // Follow failure links until a state has a child for the character
+        while (true) {
+            int child = this.child(state, c);
+            if (child >= 0) {
+                return child;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = this.failure[state];
+        }
+    }
+
+    /**
+     * Returns the indexes of the keywords that end on reaching a state
+     * @param state The state reached
+     * @return The indexes of the keywords ending there
+     */
+    int[] outputs(int state) {
+        return this.outputs[state];
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the child of a state in the trie for a character
+     * @param state The parent state
+     * @param c The character
+     * @return The child state, or -1 if there is none
+     */
+    private int child(int state, char c) {
+
+        int i = Arrays.binarySearch(this.childChars[state], c);
+        return (i >= 0) ? this.childStates[state][i] : -1;
+    }
+
+    /**
+     * Builds the trie of keywords, its failure links, outputs and the
+     * transition table for common characters
+     */
+    private void build() {
+
+        // Build the trie, one state per distinct keyword prefix
+        ArrayList<HashMap<Character, Integer>> children = new ArrayList<HashMap<Character, Integer>>();
+        ArrayList<ArrayList<Integer>> ends = new ArrayList<ArrayList<Integer>>();
+        children.add(new HashMap<Character, Integer>());
+        ends.add(new ArrayList<Integer>());
+
+        for (int t = 0; t < this.terms.length; t++) {
+            int state = ROOT;
+            for (char c : this.terms[t].toCharArray()) {
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new HashMap<Character, Integer>());
+                    ends.add(new ArrayList<Integer>());
+                }
+                state = next;
+            }
+            ends.get(state).add(t);
+        }
+
+        int states = children.size();
+        this.childChars = new char[states][];
+        this.childStates = new int[states][];
+        for (int s = 0; s < states; s++) {
+            Character[] chars = children.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(chars);
+            this.childChars[s] = new char[chars.length];
+            this.childStates[s] = new int[chars.length];
+            for (int i = 0; i < chars.length; i++) {
+                this.childChars[s][i] = chars[i];
+                this.childStates[s][i] = children.get(s).get(chars[i]);
+            }
+        }
+
+        // Visit states in breadth-first order, so that the failure state of
+        // every state is complete before the state itself is visited
+        this.failure = new int[states];
+        this.outputs = new int[states][];
+        this.denseNext = new int[states * DENSE_RANGE];
+
+        List<Integer> order = new ArrayList<Integer>();
+        order.add(ROOT);
+        this.outputs[ROOT] = toArray(ends.get(ROOT));
+
+        for (int i = 0; i < order.size(); i++) {
+            int state = order.get(i);
+
+            for (int j = 0; j < this.childChars[state].length; j++) {
+                char c = this.childChars[state][j];
+                int child = this.childStates[state][j];
+
+                this.failure[child] = (state == ROOT) ? ROOT : this.next(this.failure[state], c);
+
+                ArrayList<Integer> out = new ArrayList<Integer>(ends.get(child));
+                for (int inherited : this.outputs[this.failure[child]]) {
+                    out.add(inherited);
+                }
+                this.outputs[child] = toArray(out);
+
+                order.add(child);
+            }
+
+            // Fill in every common character, falling back as the failure
+            // links would
+            for (char c = 0; c < DENSE_RANGE; c++) {
+                int child = this.child(state, c);
+                if (child >= 0) {
+                    this.denseNext[state * DENSE_RANGE + c] = child;
+                } else if (state == ROOT) {
+                    this.denseNext[state * DENSE_RANGE + c] = ROOT;
+                } else {
+                    this.denseNext[state * DENSE_RANGE + c] =
+                            this.denseNext[this.failure[state] * DENSE_RANGE + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a list of integers into an array
+     * @param list The list to copy
+     * @return An array holding the same integers
+     */
+    private static int[] toArray(List<Integer> list) {
+
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
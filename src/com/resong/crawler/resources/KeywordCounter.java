@@ -0,0 +1,157 @@
+package com.resong.crawler.resources;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Counts the keywords of a KeywordAutomaton found in one piece of text,
+ * which is fed to it one chunk at a time. The counter remembers the state
+ * the previous chunk ended in, so keywords spanning two chunks are found
+ * without keeping earlier chunks.
+ */
+public class KeywordCounter {
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The keywords being searched for
+    private KeywordAutomaton automaton;
+
+    // Whether every occurrence is counted, or only whether keywords appear
+    private boolean countAll;
+
+    // The state reached at the end of the text so far
+    private int state;
+
+    // The number of occurrences of each keyword, by index
+    private int[] counts;
+
+    // The number of distinct keywords found
+    private int termsFound;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new KeywordCounter. Use KeywordAutomaton.newCounter.
+     * @param automaton The keywords to search for
+     * @param countAll Whether every occurrence should be counted
+     */
+    KeywordCounter(KeywordAutomaton automaton, boolean countAll) {
+
+        this.automaton = automaton;
+        this.countAll = countAll;
+        this.counts = new int[automaton.size()];
+        this.reset();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Forgets all text seen so far
+     */
+    public void reset() {
+
+        this.state = 0;
+        this.termsFound = 0;
+        Arrays.fill(this.counts, 0);
+    }
+
+    /**
+     * Feeds the next chunk of text to the counter
+     * @param data An array holding the chunk
+     * @param start The index of the first character of the chunk
+     * @param length The number of characters in the chunk
+     */
+    public void feed(char[] data, int start, int length) {
+
+        int s = this.state;
+        int end = start + length;
+
+        for (int i = start; i < end; i++) {
+
+            // Once every keyword has been seen, the rest of the text can
+            // only change the counts
+            if (!this.countAll && this.termsFound == this.counts.length) {
+                return;
+            }
+
+            s = this.automaton.next(s, Character.toLowerCase(data[i]));
+
+            for (int term : this.automaton.outputs(s)) {
+                if (this.counts[term]++ == 0) {
+                    this.termsFound++;
+                }
+            }
+        }
+
+        this.state = s;
+    }
+
+    /**
+     * Searches a whole document in raw bytes for the keyword, instead of
+     * feeding its text. Only a single keyword, found or not, can be looked
+     * for this way; otherwise nothing is done and the text must be fed.
+     * @param data An array holding the document
+     * @param start The index of the first byte of the document
+     * @param length The number of bytes in the document
+     * @param charset The character set of the document
+     * @return True, if the document was searched; false, otherwise
+     */
+    public boolean feedBytes(byte[] data, int start, int length, Charset charset) {
+
+        if (this.countAll) {
+            return false;
+        }
+
+        ByteKeywordSearch search = this.automaton.byteSearch(charset);
+        if (search == null) {
+            return false;
+        }
+
+        if (search.foundIn(data, start, length)) {
+            this.counts[0] = 1;
+            this.termsFound = 1;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the keywords searched for
+     * @return The automaton holding the keywords
+     */
+    public KeywordAutomaton getAutomaton() {
+        return this.automaton;
+    }
+
+    /**
+     * Returns whether any keyword has appeared in the text so far
+     * @return True, if a keyword was found; false, otherwise
+     */
+    public boolean anyFound() {
+        return this.termsFound > 0;
+    }
+
+    /**
+     * Returns the number of times a keyword appeared in the text so far.
+     * Unless every occurrence is counted, counting stops once all keywords
+     * have been seen.
+     * @param index The index of the keyword
+     * @return The number of occurrences
+     */
+    public int getCount(int index) {
+        return this.counts[index];
+    }
+
+    /**
+     * Returns the number of occurrences of every keyword
+     * @return A copy of the counts, by keyword index
+     */
+    public int[] getCounts() {
+        return this.counts.clone();
+    }
+}
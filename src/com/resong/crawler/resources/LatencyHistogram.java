@@ -0,0 +1,214 @@
+package com.resong.crawler.resources;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long something takes, in nanoseconds, in buckets whose width
+ * grows with the values they hold, as an HDR histogram does: every power of
+ * two is split into 32 equal buckets, so any value is known to within about
+ * 3% while a few hundred buckets cover everything from a nanosecond to
+ * several minutes. Recording a value takes no lock and allocates nothing, so
+ * any number of threads can record at once, and others can take a snapshot
+ * at any time without stopping them.
+ */
+public class LatencyHistogram {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The number of bits of each value kept exactly; every power of two is
+    // split into 2^SUB_BITS buckets
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    // The largest value recorded as itself, about 18 minutes; larger ones
+    // are counted as this
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    // The number of buckets needed to hold every value up to MAX_VALUE
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The number of values recorded in each bucket
+    private AtomicLongArray buckets;
+
+    // The number of values recorded, and their sum
+    private LongAdder count;
+    private LongAdder total;
+
+    // The largest value recorded
+    private LongAccumulator max;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new, empty LatencyHistogram
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.total = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Records a value
+     * @param nanos The time taken, in nanoseconds; negative times count as 0
+     */
+    public void record(long nanos) {
+
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        this.buckets.incrementAndGet(index(value));
+        this.count.increment();
+        this.total.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Returns a copy of the values recorded so far. Values being recorded
+     * while the copy is made may be left out of some of its figures.
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return new Snapshot(counts, this.total.sum(), this.max.get());
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the bucket a value is counted in. Values below SUB_COUNT have
+     * a bucket each; above that, the bucket is given by the position of the
+     * highest bit set and the SUB_BITS bits below it.
+     * @param value The value, from 0 to MAX_VALUE
+     * @return The index of the bucket
+     */
+    private static int index(long value) {
+
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket
+     * @param index The index of the bucket
+     * @return The largest value the bucket holds
+     */
+    private static long highestValue(int index) {
+
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long lowest = (long) (index % SUB_COUNT + SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * The values recorded by a LatencyHistogram up to some moment
+     */
+    public static class Snapshot {
+
+        // The number of values in each bucket
+        private long[] counts;
+
+        // The number of values, their sum and the largest of them
+        private long count;
+        private long total;
+        private long max;
+
+        /**
+         * Initializes a new Snapshot
+         * @param counts The number of values in each bucket
+         * @param total The sum of the values
+         * @param max The largest value
+         */
+        private Snapshot(long[] counts, long total, long max) {
+
+            this.counts = counts;
+            this.total = total;
+            this.max = max;
+            for (long c : counts) {
+                this.count += c;
+            }
+        }
+
+        /**
+         * Returns the number of values recorded
+         * @return The number of values
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Returns the sum of the values recorded
+         * @return The total time, in nanoseconds
+         */
+        public long getTotalNanos() {
+            return this.total;
+        }
+
+        /**
+         * Returns the mean of the values recorded
+         * @return The mean time, in nanoseconds, or 0 if there are none
+         */
+        public double getMeanNanos() {
+            return (this.count == 0) ? 0 : (double) this.total / this.count;
+        }
+
+        /**
+         * Returns the largest value recorded
+         * @return The longest time, in nanoseconds
+         */
+        public long getMaxNanos() {
+            return this.max;
+        }
+
+        /**
+         * Returns a percentile of the values recorded. The value returned
+         * is the largest one that falls in the same bucket as the
+         * percentile, so it is at most about 3% too high.
+         * @param percent The percentile, from 0 to 100
+         * @return The time within which the given percent of the values
+         *         fall, in nanoseconds, or 0 if there are none
+         */
+        public long getPercentileNanos(double percent) {
+
+            if (this.count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(100, percent) / 100.0 * this.count));
+
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), this.max);
+                }
+            }
+            return this.max;
+        }
+    }
+}
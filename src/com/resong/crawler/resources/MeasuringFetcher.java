@@ -0,0 +1,130 @@
+package com.resong.crawler.resources;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * A Fetcher that passes every download on to another Fetcher, timing it and
+ * counting the bytes received, so the throughput and latency of a crawl can
+ * be reported. Downloads may be timed from any number of threads.
+ */
+public class MeasuringFetcher implements Fetcher {
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The fetcher that does the downloads
+    private Fetcher fetcher;
+
+    // The number of bytes received so far
+    private AtomicLong bytes;
+
+    // The time taken by each download, in nanoseconds
+    private long[] latencies;
+
+    // The number of downloads timed
+    private int count;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new MeasuringFetcher
+     * @param fetcher The fetcher that does the downloads
+     */
+    public MeasuringFetcher(Fetcher fetcher) {
+        this.fetcher = fetcher;
+        this.bytes = new AtomicLong();
+        this.latencies = new long[1024];
+        this.count = 0;
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Starts downloading a page with the other fetcher, and times the
+     * download when it completes, whether or not it succeeds
+     * @param page The Page to download
+     * @return The future of the other fetcher's download
+     */
+    public CompletableFuture<Page> fetch(Page page) {
+
+        final long start = System.nanoTime();
+
+        return this.fetcher.fetch(page).whenComplete(new BiConsumer<Page, Throwable>() {
+            public void accept(Page done, Throwable error) {
+                record(System.nanoTime() - start, (error == null) ? done.getContentLength() : 0);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of downloads timed
+     * @return The number of downloads
+     */
+    public synchronized int getDownloads() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of bytes received by successful downloads
+     * @return The number of bytes
+     */
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    /**
+     * Returns the time taken by each download so far, shortest first
+     * @return The latencies, in nanoseconds, in increasing order
+     */
+    public long[] getLatencies() {
+
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(this.latencies, this.count);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Returns a percentile of sorted latencies, in milliseconds
+     * @param sorted Latencies in nanoseconds, in increasing order
+     * @param percent The percentile to return
+     * @return The latency within which the given percent of downloads
+     *         completed, or 0 if there are none
+     */
+    public static double percentile(long[] sorted, double percent) {
+
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Records a completed download
+     * @param nanos The time the download took
+     * @param length The number of bytes received
+     */
+    private synchronized void record(long nanos, long length) {
+
+        if (this.count == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+        }
+        this.latencies[this.count++] = nanos;
+        this.bytes.addAndGet(length);
+    }
+}
@@ -1,8 +1,16 @@
 package com.resong.crawler.resources;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import com.resong.crawler.structures.set.IntHashSet;
 
 /**
  * Represents a parsed HTML page, containing a list of all links contained on
@@ -28,11 +36,58 @@ public class Page {
     // The address of the page
     private String pageAddress;
 
-    // A list of all links contained on the page
-    private ArrayList<Page> linkedPages;
+    // The ids of all links contained on the page, in the URL dictionary
+    private int[] linkIds;
+
+    // The number of links contained on the page
+    private int linkCount;
+
+    // Assigns ids to the links of the page, or null until one is needed
+    private UrlDictionary urls;
+
+    // The most links kept as the page is parsed
+    private int linkLimit;
+
+    // Tells which links will not be followed, or null
+    private Predicate<String> linkFilter;
+
+    // The ids of the links kept, if links are limited, or null
+    private IntHashSet linkSeen;
+
+    // Non-HTML page text, in lower case
+    private StringBuilder text;
+
+    // Whether page text is kept as the page is parsed
+    private boolean retainText;
+
+    // Whether only text a browser would show is taken from the page
+    private boolean visibleTextOnly;
+
+    // Counts keywords in the text as the page is parsed, or null
+    private KeywordCounter keywords;
+
+    // Whether the keyword may be searched for in the raw page bytes
+    private boolean rawMatching;
 
-    // Non-HTML page text
-    private String text;
+    // Whether the keyword was searched for in the raw page bytes
+    private boolean bytesSearched;
+
+    // Looks for keywords in the text of each link, or null
+    private KeywordCounter anchorKeywords;
+
+    // The indexes of the links whose text contains a keyword
+    private BitSet anchorMatches;
+
+    // The index of the link whose text is being parsed, or -1
+    private int openAnchor;
+
+    // The number of bytes downloaded for the page
+    private long contentLength;
+
+    // How long the download took until the response headers arrived, and
+    // how long parsing took, in nanoseconds
+    private long connectNanos;
+    private long parseNanos;
 
     // The search depth of the page
     private int depth;
@@ -47,9 +102,25 @@ public class Page {
      */
     public Page(String address) {
 
-        this.linkedPages = new ArrayList<Page>();
+        this.linkIds = new int[0];
+        this.linkCount = 0;
+        this.urls = null;
+        this.linkLimit = Integer.MAX_VALUE;
+        this.linkFilter = null;
+        this.linkSeen = null;
         this.pageAddress = address;
-        this.text = "";
+        this.text = new StringBuilder();
+        this.retainText = true;
+        this.visibleTextOnly = false;
+        this.keywords = null;
+        this.rawMatching = false;
+        this.bytesSearched = false;
+        this.anchorKeywords = null;
+        this.anchorMatches = new BitSet();
+        this.openAnchor = -1;
+        this.contentLength = 0;
+        this.connectNanos = 0;
+        this.parseNanos = 0;
         this.depth = INITIAL_DEPTH;
     }
 
@@ -61,8 +132,175 @@ public class Page {
      * Clears the text and links stored in the Page.
      */
     public void clear() {
-        this.linkedPages.clear();
-        this.text = "";
+        this.linkCount = 0;
+        this.text.setLength(0);
+
+        if (this.linkSeen != null) {
+            this.linkSeen.clear();
+        }
+
+        if (this.keywords != null) {
+            this.keywords.reset();
+        }
+        this.bytesSearched = false;
+        this.anchorMatches.clear();
+        this.openAnchor = -1;
+    }
+
+    /**
+     * Makes the page search its text for a set of keywords while it is
+     * being parsed, so that the keywords can be looked up without the text
+     * being kept. Must be called before the page is downloaded.
+     * @param automaton The keywords to search for
+     * @param countAll Whether every occurrence of each keyword is counted
+     * @param retainText Whether the page text should still be kept
+     */
+    public void matchWhileParsing(KeywordAutomaton automaton, boolean countAll, boolean retainText) {
+
+        this.keywords = automaton.newCounter(countAll);
+        this.retainText = retainText;
+    }
+
+    /**
+     * Sets whether a single keyword may be searched for in the raw bytes of
+     * the page, rather than in its decoded text. The keyword is then also
+     * found inside markup, and not where the page writes it with entities.
+     * Must be called after matchWhileParsing, before the page is downloaded.
+     * @param raw Whether to search the raw bytes
+     */
+    public void matchRawBytes(boolean raw) {
+        this.rawMatching = raw;
+    }
+
+    /**
+     * Used during page parsing to search the raw bytes of the whole page for
+     * the keyword, if raw matching is on and the keyword can be searched for
+     * in the page's character set
+     * @param data An array holding the page
+     * @param start The index of the first byte of the page
+     * @param length The number of bytes in the page
+     * @param charset The character set of the page
+     * @return True, if the bytes were searched; false, otherwise
+     */
+    public boolean searchBytes(byte[] data, int start, int length, Charset charset) {
+
+        if (this.rawMatching && this.keywords != null) {
+            this.bytesSearched = this.keywords.feedBytes(data, start, length, charset);
+        }
+        return this.bytesSearched;
+    }
+
+    /**
+     * Returns whether the parser still needs to pass text to the page: it
+     * does not once the keyword was searched for in the raw bytes, unless
+     * the text is kept
+     * @return True, if text is needed; false, otherwise
+     */
+    public boolean needsText() {
+        return this.retainText || (this.keywords != null && !this.bytesSearched) || this.anchorKeywords != null;
+    }
+
+    /**
+     * Sets whether only text a browser would show is taken from the page,
+     * leaving out scripts, style sheets, noscript and template elements.
+     * Must be called before the page is downloaded.
+     * @param visibleOnly Whether to take only visible text
+     */
+    public void setVisibleTextOnly(boolean visibleOnly) {
+        this.visibleTextOnly = visibleOnly;
+    }
+
+    /**
+     * Returns whether only text a browser would show is taken from the page
+     * @return True, if only visible text is taken; false, otherwise
+     */
+    public boolean isVisibleTextOnly() {
+        return this.visibleTextOnly;
+    }
+
+    /**
+     * Returns the counts of the keywords found while the page was parsed
+     * @return The keyword counter, or null if the page was not searched
+     *         while parsing
+     */
+    public KeywordCounter getKeywordCounter() {
+        return this.keywords;
+    }
+
+    /**
+     * Limits the links kept while the page is parsed to those a crawler could
+     * still follow. Links the filter rejects and repeated links are dropped
+     * without counting towards the limit, and once the limit is reached the
+     * parser stops looking for links. Must be called before the page is
+     * downloaded.
+     * @param maxLinks The most links to keep; 0 to keep none
+     * @param skip Returns true for addresses that will not be followed, or
+     *             null to keep every address
+     */
+    public void limitLinks(int maxLinks, Predicate<String> skip) {
+
+        this.linkLimit = Math.max(0, maxLinks);
+        this.linkFilter = skip;
+        this.linkSeen = new IntHashSet();
+    }
+
+    /**
+     * Makes the page look for a set of keywords in the text of each link
+     * as it is parsed, so that a crawler can tell which links talk about
+     * what it is searching for. Must be called before the page is
+     * downloaded.
+     * @param automaton The keywords to look for
+     */
+    public void scoreAnchors(KeywordAutomaton automaton) {
+        this.anchorKeywords = automaton.newCounter(false);
+    }
+
+    /**
+     * Used during page parsing to mark the end of the text of a link
+     */
+    public void endAnchor() {
+        this.openAnchor = -1;
+    }
+
+    /**
+     * Returns whether the text of a link contains one of the keywords given
+     * to scoreAnchors
+     * @param index The index of the link, in the order links were found
+     * @return True, if the link text contains a keyword; false, otherwise
+     */
+    public boolean anchorMatches(int index) {
+        return this.anchorMatches.get(index);
+    }
+
+    /**
+     * Sets the dictionary that assigns ids to the links of the page, so
+     * that the links of every page of a crawl share ids. Must be called
+     * before the page is downloaded; otherwise the page makes its own.
+     * @param urls The dictionary
+     */
+    public void useUrlDictionary(UrlDictionary urls) {
+        this.urls = urls;
+    }
+
+    /**
+     * Returns the dictionary that assigns ids to the links of the page
+     * @return The dictionary
+     */
+    public UrlDictionary getUrlDictionary() {
+
+        if (this.urls == null) {
+            this.urls = new UrlDictionary();
+        }
+        return this.urls;
+    }
+
+    /**
+     * Returns whether the page still keeps links it is given, so that a
+     * parser can skip reading links once the limit has been reached
+     * @return True, if more links will be kept; false, otherwise
+     */
+    public boolean acceptsLinks() {
+        return this.linkCount < this.linkLimit;
     }
 
     /**
@@ -72,26 +310,103 @@ public class Page {
      */
     public void addLink(String address) throws Exception {
 
+        // Text that follows belongs to this link only if it is kept
+        this.openAnchor = -1;
+
+        if (!this.acceptsLinks()) {
+            return;
+        }
+
         // We will handle only fully-qualified links
-        if (!(address.toLowerCase().startsWith("http://") || address.toLowerCase().startsWith("https://"))) {
+        String lower = address.toLowerCase();
+        if (!(lower.startsWith("http://") || lower.startsWith("https://"))) {
             return;
         }
 
-        // Create a URL and page from the address, and set its depth
+        // Create a URL from the address
         URL url = new URL(address);
-        Page linkedPage = new Page(url.toExternalForm());
-        linkedPage.setDepth(this.depth + DEPTH_INCREMENT);
+        String linkAddress = url.toExternalForm();
+
+        // When links are limited, drop those that will not be followed so
+        // that they don't use up the limit
+        if (this.linkFilter != null && this.linkFilter.test(linkAddress)) {
+            return;
+        }
+
+        int id = this.getUrlDictionary().intern(linkAddress);
+        if (this.linkSeen != null && !this.linkSeen.add(id)) {
+            return;
+        }
 
-        // Add the page to the list of linked pages
-        this.linkedPages.add(linkedPage);
+        // Add the id to the list of links
+        if (this.linkCount == this.linkIds.length) {
+            this.linkIds = Arrays.copyOf(this.linkIds, Math.max(8, this.linkCount * 2));
+        }
+        this.linkIds[this.linkCount++] = id;
+
+        if (this.anchorKeywords != null) {
+            this.anchorKeywords.reset();
+            this.openAnchor = this.linkCount - 1;
+        }
+    }
+
+    /**
+     * Returns the number of links in the page
+     * @return The number of links
+     */
+    public int getLinkCount() {
+        return this.linkCount;
     }
 
     /**
-     * Returns an iterator over the links in the page
+     * Returns the id of a link in the page, in the URL dictionary
+     * @param index The index of the link, in the order links were found
+     * @return The id of the link
+     */
+    public int getLinkId(int index) {
+
+        if (index >= this.linkCount) {
+            throw new IndexOutOfBoundsException("No link " + index);
+        }
+        return this.linkIds[index];
+    }
+
+    /**
+     * Returns an iterator over the links in the page. A Page is created for
+     * each link as the iterator reaches it, at the depth below this page.
      * @return An iterator over the links in the page
      */
     public Iterator<Page> linkedPageIterator() {
-        return this.linkedPages.iterator();
+
+        return new Iterator<Page>() {
+
+            // The index of the next link
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < linkCount;
+            }
+
+            @Override
+            public Page next() {
+
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Page linkedPage = new Page(urls.address(linkIds[this.next++]));
+                linkedPage.setDepth(depth + DEPTH_INCREMENT);
+                return linkedPage;
+            }
+        };
+    }
+
+    /**
+     * Returns the depth of the pages this page links to
+     * @return The search depth of linked pages
+     */
+    public int getLinkDepth() {
+        return this.depth + DEPTH_INCREMENT;
     }
 
     /**
@@ -102,12 +417,37 @@ public class Page {
         return this.pageAddress;
     }
 
+    /**
+     * Returns the host name of the page address, in lower case
+     * @return The host of the page, or an empty string if the address
+     *         has no host
+     */
+    public String getHost() {
+        return hostOf(this.pageAddress);
+    }
+
+    /**
+     * Returns the host part of an address, in lower case
+     * @param address The address
+     * @return The host of the address, or an empty string if the address
+     *         has no host
+     */
+    public static String hostOf(String address) {
+
+        try {
+            String host = new URI(address).getHost();
+            return (host == null) ? "" : host.toLowerCase();
+        } catch (URISyntaxException ex) {
+            return "";
+        }
+    }
+
     /**
      * Returns the text of the page
-     * @return The page text
+     * @return The page text, or an empty string if the text was not kept
      */
     public String getText() {
-        return this.text;
+        return this.text.toString();
     }
 
     /**
@@ -117,7 +457,62 @@ public class Page {
      * @return True, if the page contains the specified text; false, otherwise
      */
     public boolean containsText(String text) {
-        return this.text.contains(text.toLowerCase());
+
+        // Use the result found while parsing, if we searched for this text
+        if (this.keywords != null) {
+            int index = this.keywords.getAutomaton().indexOf(text);
+            if (index >= 0) {
+                return this.keywords.getCount(index) > 0;
+            }
+        }
+
+        return this.text.indexOf(KeywordAutomaton.lowerCase(text)) >= 0;
+    }
+
+    /**
+     * Returns the number of bytes downloaded for the page
+     * @return The size of the page body, or 0 if the fetcher did not say
+     */
+    public long getContentLength() {
+        return this.contentLength;
+    }
+
+    /**
+     * Sets the number of bytes downloaded for the page. Called by a fetcher
+     * once the page has been parsed.
+     * @param length The size of the page body
+     */
+    public void setContentLength(long length) {
+        this.contentLength = length;
+    }
+
+    /**
+     * Returns how long the download of the page took until the response
+     * headers arrived, including looking up the host and connecting to it
+     * @return The time in nanoseconds, or 0 if the fetcher did not say
+     */
+    public long getConnectNanos() {
+        return this.connectNanos;
+    }
+
+    /**
+     * Returns how long parsing the page took
+     * @return The time in nanoseconds, or 0 if the fetcher did not say
+     */
+    public long getParseNanos() {
+        return this.parseNanos;
+    }
+
+    /**
+     * Sets how long the phases of downloading the page took. Called by a
+     * fetcher once the page has been parsed.
+     * @param connect The time until the response headers arrived, in
+     *                nanoseconds
+     * @param parse The time taken to parse the page, in nanoseconds
+     */
+    public void setFetchTimes(long connect, long parse) {
+        this.connectNanos = connect;
+        this.parseNanos = parse;
     }
 
     /**
@@ -141,7 +536,35 @@ public class Page {
      * @param text A line of text to append to the page text
      */
     public void appendText(String text) {
-        this.text += text.toLowerCase();
+        this.appendText(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Appends a line to the page text, passing it to the keyword counter if
+     * there is one, and keeping it in lower case if text is retained
+     * @param data An array holding the line of text
+     * @param start The index of the first character of the line
+     * @param length The number of characters in the line
+     */
+    public void appendText(char[] data, int start, int length) {
+
+        if (this.keywords != null && !this.bytesSearched) {
+            this.keywords.feed(data, start, length);
+        }
+
+        if (this.openAnchor >= 0) {
+            this.anchorKeywords.feed(data, start, length);
+            if (this.anchorKeywords.anyFound()) {
+                this.anchorMatches.set(this.openAnchor);
+            }
+        }
+
+        if (this.retainText) {
+            this.text.ensureCapacity(this.text.length() + length);
+            for (int i = start; i < start + length; i++) {
+                this.text.append(Character.toLowerCase(data[i]));
+            }
+        }
     }
 
     /**
@@ -163,4 +586,14 @@ public class Page {
         }
 
     }
+
+    /**
+     * Returns a hash code for the Page that is consistent with equals, so
+     * that Pages can be stored in hash-based collections.
+     * @return The hash code of the page address
+     */
+    @Override
+    public int hashCode() {
+        return this.getAddress().hashCode();
+    }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.resong.crawler.resources;
 
+import java.io.IOException;
+import java.io.Reader;
 import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.html.HTML;
 import javax.swing.text.html.HTMLEditorKit;
@@ -17,6 +19,9 @@ public class PageParser extends HTMLEditorKit.ParserCallback {
     // The Page being parsed
     private Page page;
 
+    // The number of open elements whose content is not visible text
+    private int hiddenDepth;
+
     /***************************************************************************
      * CONSTRUCTORS
      **************************************************************************/
@@ -27,12 +32,29 @@ public class PageParser extends HTMLEditorKit.ParserCallback {
      */
     public PageParser(Page page) {
         this.page = page;
+        this.hiddenDepth = 0;
     }
 
     /***************************************************************************
      * PUBLIC METHODS
      **************************************************************************/
 
+    /**
+     * Adds the text and links read from an HTML document to a page, using
+     * the Swing HTML parser. Only this class refers to the Swing parser, so
+     * a crawl that never falls back to it never loads Swing.
+     * @param page The Page to populate
+     * @param r A reader over the HTML of the page
+     * @throws IOException If reading the document fails
+     */
+    public static void parse(Page page, Reader r) throws IOException {
+
+        // Get a parser and setup the callbacks to this class
+        ParserGetter kit = new ParserGetter();
+        HTMLEditorKit.Parser parser = kit.getParser();
+        parser.parse(r, new PageParser(page), true);
+    }
+
     /**
      * Callback method that is invoked when text is found in a page.  Adds the
      * text to the Page object.
@@ -42,13 +64,19 @@ public class PageParser extends HTMLEditorKit.ParserCallback {
     @Override
     public void handleText(char[] data, int pos) {
 
-        page.appendText(String.valueOf(data));
+        // Skip text that is not shown, if only visible text is wanted
+        if (hiddenDepth > 0) {
+            return;
+        }
+
+        page.appendText(data, 0, data.length);
     }
 
     /**
      * Callback method that is invoked when a starting HTML tag is encountered.
      * This method considers only opening <a> tags and adds the links they
-     * contain to the list of links in the Page object.
+     * contain to the list of links in the Page object, while the Page still
+     * accepts links.
      * @param tag The opening tag found
      * @param attributes A set of attributes found in the tag
      * @param position The position at which the start tag was found
@@ -56,8 +84,13 @@ public class PageParser extends HTMLEditorKit.ParserCallback {
     @Override
     public void handleStartTag(HTML.Tag tag, MutableAttributeSet attributes, int position) {
 
-        // If the tag is an anchor
-        if (tag == HTML.Tag.A) {
+        // Count elements whose content is not visible
+        if (isHidden(tag)) {
+            hiddenDepth++;
+        }
+
+        // If the tag is an anchor, and the page wants more links
+        if (tag == HTML.Tag.A && page.acceptsLinks()) {
 
             // Get its href value (the address)
             HTML.Attribute href = HTML.getAttributeKey("href");
@@ -76,6 +109,68 @@ public class PageParser extends HTMLEditorKit.ParserCallback {
             }
         }
     }
+
+    /**
+     * Callback method that is invoked when an ending HTML tag is encountered.
+     * Keeps track of the elements whose content is not visible, and tells
+     * the page where the text of a link ends.
+     * @param tag The closing tag found
+     * @param position The position at which the end tag was found
+     */
+    @Override
+    public void handleEndTag(HTML.Tag tag, int position) {
+
+        if (tag == HTML.Tag.A) {
+            page.endAnchor();
+        }
+        if (isHidden(tag) && hiddenDepth > 0) {
+            hiddenDepth--;
+        }
+    }
+
+    /**
+     * Callback method that is invoked when a tag without content is
+     * encountered. Elements the parser does not know, such as template,
+     * are reported this way, once for the start tag and once for the end
+     * tag.
+     * @param tag The tag found
+     * @param attributes A set of attributes found in the tag
+     * @param position The position at which the tag was found
+     */
+    @Override
+    public void handleSimpleTag(HTML.Tag tag, MutableAttributeSet attributes, int position) {
+
+        if (isHidden(tag)) {
+            if (attributes.getAttribute(HTML.Attribute.ENDTAG) == null) {
+                hiddenDepth++;
+            } else if (hiddenDepth > 0) {
+                hiddenDepth--;
+            }
+        }
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns whether the content of an element is left out of the page
+     * text, which is the case for scripts, style sheets, noscript and
+     * template elements if the page wants only visible text
+     * @param tag The tag of the element
+     * @return True, if the content of the element is skipped; false,
+     *         otherwise
+     */
+    private boolean isHidden(HTML.Tag tag) {
+
+        if (!page.isVisibleTextOnly()) {
+            return false;
+        }
+
+        String name = tag.toString();
+        return tag == HTML.Tag.SCRIPT || tag == HTML.Tag.STYLE
+                || name.equalsIgnoreCase("noscript") || name.equalsIgnoreCase("template");
+    }
 }
 
 /**
@@ -0,0 +1,640 @@
+package com.resong.crawler.resources;
+
+/**
+ * Subclass of the Crawler class that creates a web crawler, searching for a term using the
+ * breadth first approach, downloading several pages at once. All pages of one depth level
+ * are downloaded at the same time before the next level is started. Pages are numbered,
+ * recorded and expanded in the same order as the BreadthCrawler would visit them, so the
+ * results are the same, only faster. Downloads are started without waiting for them, each
+ * one finished starting the next, so no thread is tied up while a page downloads; when
+ * crawling politely, worker threads take the pages host by host instead.
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+import com.resong.crawler.structures.queue.*;
+
+public class ParallelBreadthCrawler extends Crawler {
+
+	/////////////// Attributes ////////////////
+
+	private static final int DEFAULT_WORKERS = 8; // number of pages downloaded at once by default
+
+	private static final long POLL_MILLIS = 50; // how often a polite worker waiting for a host checks for a stop request
+
+	private static final int PAGES_AHEAD = 4; // pages of a level downloaded ahead of the crawl thread, for each page downloaded at once
+
+	private IntCircularArrayQueue pagesToVisit;	// queue of ids of pages to visit
+	
+	private BitSet waiting;	// ids of pages waiting in the queue
+
+	private int workers; // number of pages downloaded at once
+
+	private volatile ArrayList<CompletableFuture<Boolean>> levelDownloads; // outcome of the download of each page of the current level, or null
+
+
+	////////////// Constructors ////////////////
+
+	/**
+	 * Constructor that creates a parallel breadth first crawler taking
+	 * a search term and a list to store results in.
+	 * @param keyword search term
+	 * @param list list that stores results of each page crawled
+	 */
+
+	public ParallelBreadthCrawler(String keyword, CrawlResultSink list) {
+		this(keyword, list, DEFAULT_WORKERS);
+	}
+
+	/**
+	 * Constructor that creates a parallel breadth first crawler taking
+	 * a search term, a list to store results in and a number of workers.
+	 * @param keyword search term
+	 * @param list list that stores results of each page crawled
+	 * @param workers number of pages to download at the same time
+	 */
+
+	public ParallelBreadthCrawler(String keyword, CrawlResultSink list, int workers) {
+		super(keyword, list);
+		this.pagesToVisit = new IntCircularArrayQueue();
+		this.waiting = new BitSet();
+		this.setWorkers(workers);
+	}
+
+
+	//////////////Methods ///////////////
+
+	/**
+	 * Method that returns the number of pages downloaded at once, which
+	 * is also the number of worker threads when crawling politely
+	 * @return number of pages downloaded at the same time
+	 */
+
+	public int getWorkers() {
+		return this.workers;
+	}
+
+	/**
+	 * Method that sets the number of pages downloaded at once by the next search
+	 * @param workers number of pages to download at the same time
+	 */
+
+	public void setWorkers(int workers) {
+		this.workers = Math.max(1, workers);
+	}
+
+	/**
+	 * Private method that adds the id of a page to the end of the queue,
+	 * remembering the depth it will be visited at
+	 * @param id id of the page's address
+	 * @param depth depth of the page
+	 */
+
+	private void enqueue(int id, int depth) {
+		this.setLinkDepth(id, depth);
+		this.waiting.set(id);
+		this.pagesToVisit.enqueue(id);
+		this.linkQueued(id, depth);
+	}
+
+	/**
+	 * Search method looks for the search term starting
+	 * at the String address while it has not been requested
+	 * that the crawl be stopped.
+	 * @param address URL of page to start searching from
+	 */
+
+	public void search(String address) {
+
+		int linksEnqueued = 0; // no links enqueued
+
+		super.setCrawling(true); // set to indicate crawler is crawling
+
+		ExecutorService pool = null; // worker threads downloading pages politely, made when first needed
+
+
+		this.startCheckpoints();
+
+		int[] frontier = this.takeRestoredFrontier(); // pages left to visit by a resumed crawl, or null
+
+		if(frontier != null)
+		{
+			// carry on with the pages the resumed crawl had left to visit
+
+			for(int i = 0; i < frontier.length; i += 2)
+			{
+				this.enqueue(frontier[i], frontier[i + 1]);
+				linksEnqueued++;
+			}
+		}
+		else
+		{
+			// create page object for starting URL
+			// and enqueue it to the queue
+
+			this.enqueue(this.getUrlDictionary().intern(address), 0);
+			linksEnqueued++;
+		}
+
+		try {
+
+			// while there are still levels to visit
+			// and it hasn't been requested to stop crawling
+
+			while(this.pagesToVisit.size() != 0 && this.stopCrawl == false)
+			{
+
+				// take every page of the current level off the queue and
+				// start downloading all of them, remembering which ones
+				// are still waiting their turn
+
+				ArrayList<Page> level = new ArrayList<Page>();
+				final ArrayList<Integer> levelIds = new ArrayList<Integer>(); // ids of the pages of the level
+				BitSet pending = new BitSet(); // ids of pages of the level not yet gone through
+				ArrayList<CompletableFuture<Boolean>> downloads = new ArrayList<CompletableFuture<Boolean>>(); // outcome of the download of each page
+
+				// when crawling politely, the workers take the pages of the
+				// level from queues kept for each host, by their index in the level
+
+				HostShardedQueue<Integer> hosts = this.newHostQueue(new ToIntFunction<Integer>() {
+
+					public int applyAsInt(Integer index) {
+						return levelIds.get(index);
+					}
+				});
+
+				while(this.pagesToVisit.isEmpty() == false)
+				{
+					int id = this.pagesToVisit.dequeue();
+					this.waiting.clear(id);
+					pending.set(id);
+					Page page = this.pageForLink(id);
+					level.add(page);
+					levelIds.add(id);
+					downloads.add(new CompletableFuture<Boolean>());
+
+					if(hosts != null)
+					{
+						hosts.enqueue(level.size() - 1);
+					}
+				}
+
+				this.levelDownloads = downloads;
+				LevelDownloads fetching = null; // starts the downloads of the level when not crawling politely
+
+				if(hosts != null)
+				{
+					if(pool == null)
+					{
+						pool = Executors.newFixedThreadPool(this.workers);
+					}
+					for(int w = 0; w < this.workers; w++)
+					{
+						pool.execute(new PoliteDownloads(level, hosts, downloads));
+					}
+				}
+				else
+				{
+					fetching = new LevelDownloads(level, downloads, this.workers);
+					fetching.start();
+				}
+
+				// go through the level in queue order, exactly as the
+				// breadth first crawler would have dequeued it
+
+				for(int i = 0; i < level.size() && this.stopCrawl == false; i++)
+				{
+					// pages of the level not gone through yet are still in the
+					// frontier of a checkpoint, ahead of the links they lead to
+
+					this.checkpointIfDue();
+
+					Page page = level.get(i);
+
+					boolean containsText; // true if page contains search term, false otherwise
+					boolean failed = false; // true if the page could not be downloaded, else false
+
+					try {
+						containsText = downloads.get(i).get();
+					}
+
+					catch (ExecutionException ex){
+						containsText = false;
+						failed = true;
+					}
+
+					if(fetching != null)
+					{
+						fetching.taken(); // let another page of the level be downloaded
+					}
+
+					// a download skipped because the crawl was stopped meanwhile
+					// says nothing about the page, so leave it waiting
+
+					if(this.stopCrawl == true)
+					{
+						break;
+					}
+
+					pending.clear(this.getUrlDictionary().find(page.getAddress()));
+					linksEnqueued--;
+
+					int sequence = this.crawlingNextPage(); // order of the page being recorded
+
+					if(failed == true)
+					{
+						// adds the failed page to crawl results
+						String error = "An error occurred while accessing " + page.getAddress();
+						super.addFailedPage(page, error, sequence);
+						continue;
+					}
+
+					// if it does contain the search term, print a message
+					// indicating a match has been found
+
+					if(containsText == true)
+					{
+						this.printMatch(page);
+					}
+
+					super.addCrawledPage(page, containsText, sequence); // add page and its search outcome to crawl results
+
+
+					long frontierStart = System.nanoTime(); // time at which the work on the page's links starts
+					int checked = 0; // number of links checked
+					int queued = 0; // number of links added to the queue
+
+					// if current page depth is less than maximum page depth
+
+					if(page.getDepth() < this.getMaxDepth())
+					{
+						// while there are links to go through, and the links added
+						// don't exceed the maximum number of links set
+
+						for(int l = 0; l < page.getLinkCount() && linksEnqueued < this.getMaxLinks(); l++)
+						{
+							int link = page.getLinkId(l); // id of the next link on the current page
+							checked++;
+
+							boolean visited = this.hasVisitedLink(link); // true if link has been visited, else false
+							boolean check = this.waiting.get(link)
+									|| pending.get(link); // true if link is still waiting to be visited, else false
+
+							// if it hasn't been visited already, and it's not
+							// waiting to be visited, add it to the queue
+
+							if( visited == false && check == false)
+							{
+								this.enqueue(link, page.getLinkDepth());
+								linksEnqueued++;
+								queued++;
+							}
+						}
+					}
+
+					this.linksChecked(frontierStart, checked, queued); // record the work done on the links
+					this.forgetVisitedLink(page); // drop the page's address if visited links are kept in a filter
+				}
+			}
+		}
+
+		catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+		}
+
+		finally {
+			this.levelDownloads = null;
+			if(pool != null)
+			{
+				pool.shutdownNow(); // cancel downloads left over if the crawl was stopped
+			}
+		}
+
+		this.finishCheckpoints();
+		super.setCrawling(false); // set so crawler is no longer crawling
+	}
+
+	/**
+	 * Method to indicate the crawler should stop crawling. The crawl
+	 * thread is not kept waiting for the downloads of the current level
+	 */
+
+	@Override
+	public void stop() {
+		super.stop();
+
+		ArrayList<CompletableFuture<Boolean>> downloads = this.levelDownloads; // downloads of the current level, if any
+		if(downloads != null)
+		{
+			for(CompletableFuture<Boolean> download : downloads)
+			{
+				download.complete(false);
+			}
+		}
+	}
+
+	/**
+	 * Downloads of the pages of a level when not crawling politely. A few
+	 * downloads are started at once, and each one finished starts the
+	 * next page of the level, so that no more than the given number are
+	 * in progress and no thread waits for them. Downloads only run a few
+	 * pages ahead of the crawl thread, so that a stopped crawl hasn't
+	 * downloaded much of the level for nothing, and downloaded pages
+	 * don't pile up in memory when the crawl thread is the slower one.
+	 */
+
+	private class LevelDownloads {
+
+		private ArrayList<Page> level; // pages of the level
+
+		private ArrayList<CompletableFuture<Boolean>> downloads; // outcome of the download of each page of the level
+
+		private int maxInFlight; // most pages downloaded at once
+
+		private AtomicInteger inFlight; // pages being downloaded
+
+		private AtomicInteger next; // index of the next page of the level to start
+
+		private AtomicInteger limit; // index of the first page of the level not to start yet
+
+		private LevelDownloads(ArrayList<Page> level, ArrayList<CompletableFuture<Boolean>> downloads, int maxInFlight) {
+			this.level = level;
+			this.downloads = downloads;
+			this.maxInFlight = maxInFlight;
+			this.inFlight = new AtomicInteger(0);
+			this.next = new AtomicInteger(0);
+			this.limit = new AtomicInteger(maxInFlight * PAGES_AHEAD);
+		}
+
+		/**
+		 * Starts the first downloads of the level
+		 */
+
+		private void start() {
+			this.startNext();
+		}
+
+		/**
+		 * Called by the crawl thread once it has taken a page of the
+		 * level, letting one more page be downloaded ahead of it
+		 */
+
+		private void taken() {
+			this.limit.incrementAndGet();
+			this.startNext();
+		}
+
+		/**
+		 * Starts downloading pages of the level while fewer than the
+		 * maximum are in progress and the crawl thread isn't too far
+		 * behind. Downloads that finish straight away are dealt with
+		 * here, in a loop rather than by starting the next one from their
+		 * completion
+		 */
+
+		private void startNext() {
+
+			while(true)
+			{
+				int index = this.next.get(); // index of the page to start
+
+				if(index >= this.level.size() || index >= this.limit.get())
+				{
+					return;
+				}
+
+				// take a download slot; if there is none left, a download
+				// finishing meanwhile may have missed this page, so look
+				// again unless every slot is still taken
+
+				if(this.inFlight.incrementAndGet() > this.maxInFlight)
+				{
+					if(this.inFlight.decrementAndGet() >= this.maxInFlight)
+					{
+						return;
+					}
+					continue;
+				}
+
+				if(this.next.compareAndSet(index, index + 1) == false)
+				{
+					this.inFlight.decrementAndGet();
+					continue;
+				}
+
+				// don't start new downloads once the crawl is stopped
+
+				if(stopCrawl == true)
+				{
+					this.downloads.get(index).complete(false);
+					this.inFlight.decrementAndGet();
+					continue;
+				}
+
+				Page page = this.level.get(index);
+				printVisiting(page);
+				final CompletableFuture<Page> download = startDownload(page);
+
+				if(download.isDone() == true)
+				{
+					this.finish(index, download);
+					continue;
+				}
+
+				final int started = index; // index of the page being downloaded
+				download.whenComplete(new BiConsumer<Page, Throwable>() {
+
+					public void accept(Page done, Throwable error) {
+						finish(started, download);
+						startNext();
+					}
+				});
+			}
+		}
+
+		/**
+		 * Records a downloaded page as visited and checks it for the
+		 * search term, giving the outcome to the crawl thread, and frees
+		 * its download slot
+		 * @param index index of the page in the level
+		 * @param download the completed download of the page
+		 */
+
+		private void finish(int index, CompletableFuture<Page> download) {
+
+			CompletableFuture<Boolean> outcome = this.downloads.get(index);
+
+			try {
+				Page page = download.join();
+				addVisitedLink(page.getAddress());
+				outcome.complete(matchesKeyWords(page));
+			}
+
+			catch (Exception ex){
+				outcome.completeExceptionally(ex);
+			}
+
+			finally {
+				this.inFlight.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Task run by a worker thread that downloads one page, records
+	 * it as visited and checks it for the search term.
+	 */
+
+	private class PageDownload implements Callable<Boolean> {
+
+		private Page page; // page to download
+
+		private PageDownload(Page page) {
+			this.page = page;
+		}
+
+		public Boolean call() throws Exception {
+
+			// don't start new downloads once the crawl is stopped
+
+			if(stopCrawl == true)
+			{
+				return false;
+			}
+
+			printVisiting(this.page);
+			downloadPage(this.page);
+			addVisitedLink(this.page.getAddress());
+
+			return matchesKeyWords(this.page);
+		}
+	}
+
+	/**
+	 * Task run by a worker thread when crawling politely, that downloads
+	 * the pages of a level as their hosts become ready, until none are left
+	 * or the crawl is stopped.
+	 */
+
+	private class PoliteDownloads implements Runnable {
+
+		private ArrayList<Page> level; // pages of the level
+
+		private HostShardedQueue<Integer> hosts; // indexes of the pages of the level not yet started, by host
+
+		private ArrayList<CompletableFuture<Boolean>> downloads; // outcome of the download of each page of the level
+
+		private PoliteDownloads(ArrayList<Page> level, HostShardedQueue<Integer> hosts, ArrayList<CompletableFuture<Boolean>> downloads) {
+			this.level = level;
+			this.hosts = hosts;
+			this.downloads = downloads;
+		}
+
+		public void run() {
+
+			try {
+				while(stopCrawl == false && this.hosts.isEmpty() == false)
+				{
+					Integer index = this.hosts.poll(POLL_MILLIS); // index of the next page, or null while no host is ready
+
+					if(index == null)
+					{
+						continue;
+					}
+
+					boolean containsText = false; // true if page contains search term, false otherwise
+					Exception error = null; // why the page could not be downloaded, or null
+
+					try {
+						containsText = new PageDownload(this.level.get(index)).call();
+					}
+
+					catch (Exception ex){
+						error = ex;
+					}
+
+					// let the next page of the host be downloaded before the
+					// crawl thread goes on with this one
+
+					this.hosts.release(index);
+
+					if(error != null)
+					{
+						this.downloads.get(index).completeExceptionally(error);
+					}
+					else
+					{
+						this.downloads.get(index).complete(containsText);
+					}
+				}
+			}
+
+			catch (IllegalStateException ex){
+				// interrupted while waiting for a host
+			}
+
+			finally {
+
+				// pages not started because the crawl was stopped are
+				// left waiting, so the crawl thread must not wait for them
+
+				if(stopCrawl == true || Thread.currentThread().isInterrupted() == true)
+				{
+					for(CompletableFuture<Boolean> download : this.downloads)
+					{
+						download.complete(false);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method that returns how many links found on a page are kept when it
+	 * is parsed. Whether a link is still waiting in the queue is only known
+	 * once the level is replayed, so pages below the maximum depth keep all
+	 * of their links, and only pages at the maximum depth keep none
+	 * @param page page about to be downloaded
+	 * @return number of links to keep
+	 */
+
+	protected int linkBudget(Page page) {
+		if(page.getDepth() < this.getMaxDepth())
+		{
+			return Integer.MAX_VALUE;
+		}
+		return 0;
+	}
+
+	/**
+	 * Method indicating that this crawler can write checkpoints and
+	 * resume from them. Checkpoints are taken while a level is gone
+	 * through in queue order, when the pages of the level still to be
+	 * gone through count as waiting in the queue
+	 * @return true
+	 */
+
+	protected boolean supportsCheckpoints() {
+		return true;
+	}
+	
+	/**
+	 * Method that gets the number of pages waiting in the queue,
+	 * not counting those being downloaded
+	 * @return number of pages waiting to be visited
+	 */
+	
+	public int getFrontierSize() {
+		return this.pagesToVisit.size();
+	}
+
+}
@@ -0,0 +1,501 @@
+package com.resong.crawler.resources;
+/**
+ * Subclass of the Crawler class that creates a web crawler, searching for a term using the
+ * depth first approach with several worker threads. Each worker keeps its own stack and
+ * explores its part of the web depth first. A worker that runs out of pages steals the
+ * shallowest page waiting on another worker's stack, so all workers stay busy while each
+ * one keeps a small, mostly depth first frontier. A worker that finds no page anywhere
+ * sleeps until another worker pushes one. When crawling politely, pages whose host
+ * is not ready are moved off the stacks into a queue for each host, and workers take pages
+ * from there as soon as their host is ready.
+ */
+
+import com.resong.crawler.structures.queue.*;
+import com.resong.crawler.structures.stack.*;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToIntFunction;
+
+
+public class ParallelDepthCrawler extends Crawler {
+
+	/////////////// Attributes ////////////////
+
+	private static final int DEFAULT_WORKERS = 8; // number of pages downloaded at once by default
+
+	private static final long IDLE_MILLIS = 50; // longest an idle worker sleeps before checking for a stop request
+
+	private WorkStealingStack[] pagesToVisit; // stack of links to visit for each worker, each an id and a depth
+
+	private HostShardedQueue<Long> hostQueues; // links taken off the stacks waiting for their host when crawling politely, else null
+
+	private UrlIdSet linksScheduled; // ids of addresses that have ever been pushed
+
+	private AtomicInteger linksPushed; // pages pushed and not yet popped
+
+	private AtomicInteger pagesOutstanding; // pages pushed and not yet fully visited
+
+	private ConcurrentLinkedQueue<Thread> idleWorkers; // workers sleeping until a page is pushed
+
+	private volatile Thread[] threads; // worker threads of the current search, if it has started
+
+	private int workers; // number of worker threads
+
+
+	////////////// Constructors ////////////////
+
+	/**
+	 * Constructor that creates a parallel depth first crawler taking
+	 * a search term and a list to store results in.
+	 * @param keyword search term
+	 * @param list list that stores results of each page crawled
+	 */
+	public ParallelDepthCrawler(String keyword, CrawlResultSink list) {
+		this(keyword, list, DEFAULT_WORKERS);
+	}
+
+	/**
+	 * Constructor that creates a parallel depth first crawler taking
+	 * a search term, a list to store results in and a number of workers.
+	 * @param keyword search term
+	 * @param list list that stores results of each page crawled
+	 * @param workers number of pages to download at the same time
+	 */
+	public ParallelDepthCrawler(String keyword, CrawlResultSink list, int workers) {
+		super(keyword, list);
+		this.setWorkers(workers);
+	}
+
+
+	////////////// Methods ///////////////
+
+	/**
+	 * Method that returns the number of worker threads
+	 * @return number of pages downloaded at the same time
+	 */
+
+	public int getWorkers() {
+		return this.workers;
+	}
+
+	/**
+	 * Method that sets the number of worker threads used by the next search
+	 * @param workers number of pages to download at the same time
+	 */
+
+	public void setWorkers(int workers) {
+		this.workers = Math.max(1, workers);
+	}
+
+	/**
+	 * Search method looks for the search term starting
+	 * at the String address while it has not been requested
+	 * that the crawl be stopped.
+	 * @param address URL of page to start searching from
+	 */
+
+	public void search(String address) {
+
+		super.setCrawling(true); // set to indicate crawler is crawling
+
+		this.pagesToVisit = new WorkStealingStack[this.workers];
+		this.linksScheduled = new UrlIdSet(this.getUrlDictionary());
+		this.linksPushed = new AtomicInteger(0);
+		this.pagesOutstanding = new AtomicInteger(0);
+		this.idleWorkers = new ConcurrentLinkedQueue<Thread>();
+
+		// when crawling politely, hand out pages host by host
+
+		this.hostQueues = this.newHostQueue(new ToIntFunction<Long>() {
+
+			public int applyAsInt(Long link) {
+				return linkId(link);
+			}
+		});
+
+		for(int i = 0; i < this.workers; i++)
+		{
+			this.pagesToVisit[i] = new WorkStealingStack();
+		}
+
+		// push the starting URL onto the first worker's stack
+
+		int start = this.getUrlDictionary().intern(address); // id of the starting URL
+		this.linksScheduled.add(start);
+		this.push(0, start, 0);
+
+		// start the workers and wait for all of them to finish
+
+		Thread[] started = new Thread[this.workers];
+
+		for(int i = 0; i < this.workers; i++)
+		{
+			started[i] = new Thread(new Worker(i), "ParallelDepthCrawler-" + i);
+		}
+		this.threads = started;
+
+		for(int i = 0; i < this.workers; i++)
+		{
+			started[i].start();
+		}
+
+		try {
+			for(int i = 0; i < this.workers; i++)
+			{
+				started[i].join();
+			}
+		}
+
+		catch (InterruptedException ex){
+			this.stop();
+			Thread.currentThread().interrupt();
+		}
+
+		this.threads = null;
+		super.setCrawling(false); // set so crawler is no longer crawling
+	}
+
+	/**
+	 * Method to indicate the crawler should stop crawling. Sleeping
+	 * workers are woken so they can finish straight away
+	 */
+
+	@Override
+	public void stop() {
+		super.stop();
+		this.wakeAll();
+	}
+
+	/**
+	 * Private method that pushes a link onto a worker's stack, waking a
+	 * sleeping worker to steal it. The link must already have been added
+	 * to linksScheduled. Only the worker owning the stack, or the crawl
+	 * thread before the workers start, may push onto it
+	 * @param worker index of the worker whose stack receives the link
+	 * @param id id of the link's address
+	 * @param depth depth of the page
+	 */
+
+	private void push(int worker, int id, int depth) {
+		this.pagesOutstanding.incrementAndGet();
+		this.linksPushed.incrementAndGet();
+		this.pagesToVisit[worker].push(((long) depth << 32) | (id & 0xFFFFFFFFL));
+
+		Thread idle = this.idleWorkers.poll(); // a sleeping worker, if any
+
+		if(idle != null)
+		{
+			LockSupport.unpark(idle);
+		}
+	}
+
+	/**
+	 * Private method that returns the id of a pushed link
+	 * @param link link as pushed
+	 * @return id of the link's address
+	 */
+
+	private static int linkId(long link) {
+		return (int) link;
+	}
+
+	/**
+	 * Private method that finds the next link for a worker: the top of
+	 * its own stack if it has one, otherwise the bottom of another
+	 * worker's stack
+	 * @param worker index of the worker looking for a link
+	 * @return link to visit next, or WorkStealingStack.EMPTY if none is waiting
+	 */
+
+	private long nextLink(int worker) {
+
+		long link = this.pagesToVisit[worker].tryPop();
+
+		// steal from the other workers in turn, starting with the next one
+
+		for(int i = 1; link == WorkStealingStack.EMPTY && i < this.workers; i++)
+		{
+			link = this.pagesToVisit[(worker + i) % this.workers].steal();
+		}
+
+		if(link != WorkStealingStack.EMPTY)
+		{
+			this.linksPushed.decrementAndGet();
+		}
+
+		return link;
+	}
+
+	/**
+	 * Private method that finds the next link for a worker when crawling
+	 * politely: a link whose host is ready, if one is waiting in the host
+	 * queues, otherwise the next link from the stacks. Links taken off the
+	 * stacks whose host is not ready are moved to the host queues
+	 * @param worker index of the worker looking for a link
+	 * @return link to visit next, or WorkStealingStack.EMPTY if none was ready in time
+	 */
+
+	private long nextPoliteLink(int worker) {
+
+		while(this.stopCrawl == false)
+		{
+			Long ready = this.hostQueues.poll(0); // link whose host is ready, if any
+
+			if(ready == null)
+			{
+				long link = this.nextLink(worker);
+
+				// if the stacks are empty, wait a while for a host to
+				// become ready
+
+				if(link == WorkStealingStack.EMPTY)
+				{
+					ready = this.hostQueues.poll(IDLE_MILLIS);
+
+					if(ready == null)
+					{
+						return WorkStealingStack.EMPTY;
+					}
+				}
+				else
+				{
+					// links in the host queues still count as waiting
+
+					this.linksPushed.incrementAndGet();
+					this.hostQueues.enqueue(link);
+					continue;
+				}
+			}
+
+			this.linksPushed.decrementAndGet();
+			return ready;
+		}
+		return WorkStealingStack.EMPTY;
+	}
+
+	/**
+	 * Private method that downloads one page, records it and pushes the
+	 * links found on it onto the worker's own stack
+	 * @param worker index of the worker visiting the page
+	 * @param link id and depth of the page, as pushed
+	 */
+
+	private void visit(int worker, long link) {
+
+		Page page = new Page(this.getUrlDictionary().address(linkId(link))); // page to visit
+		page.setDepth((int) (link >>> 32));
+
+		this.printVisiting(page);
+
+		try {
+
+			// download the page and add its address to the visited links
+
+			this.downloadPage(page);
+			this.addVisitedLink(page.getAddress());
+
+			boolean containsText = this.matchesKeyWords(page); // true if page contains search term, false otherwise
+
+
+			// if it does contain the search term, print a message
+			// indicating a match has been found
+
+			if(containsText == true)
+			{
+				this.printMatch(page);
+			}
+
+			super.addCrawledPage(page, containsText, this.crawlingNextPage()); // add page and its search outcome to crawl results
+
+
+			long frontierStart = System.nanoTime(); // time at which the work on the page's links starts
+			int checked = 0; // number of links checked
+			int pushed = 0; // number of links pushed onto the stack
+
+			// if current page depth is less than maximum page depth
+
+			if(page.getDepth() < this.getMaxDepth())
+			{
+				// while there are links to go through, and the number of
+				// links waiting don't exceed the maximum number of links set
+
+				for(int i = 0; i < page.getLinkCount() && this.linksPushed.get() < this.getMaxLinks(); i++)
+				{
+					int id = page.getLinkId(i); // id of the next link on the current page
+					checked++;
+
+					// if it hasn't been visited or pushed already, push it onto
+					// this worker's stack; adding to linksScheduled claims the
+					// link so that no other worker pushes it as well
+
+					if(this.hasVisitedLink(id) == false
+							&& this.linksScheduled.add(id) == true)
+					{
+						this.push(worker, id, page.getLinkDepth());
+						pushed++;
+					}
+				}
+			}
+
+			this.linksChecked(frontierStart, checked, pushed); // record the work done on the links
+		}
+
+		catch (Exception ex){
+
+			// adds the failed page to crawl results
+
+			String error = "An error occurred while accessing " + page.getAddress();
+			super.addFailedPage(page, error, this.crawlingNextPage());
+		}
+
+		// let the next page of this host be visited
+
+		if(this.hostQueues != null)
+		{
+			this.hostQueues.release(link);
+		}
+
+		this.forgetVisitedLink(page); // drop the page's address if visited links are kept in a filter
+	}
+
+	/**
+	 * Private method that puts an idle worker to sleep until a link is
+	 * pushed, the crawl ends or a while has passed. The worker looks for
+	 * work once more after saying it is idle, so a link pushed meanwhile
+	 * is never missed
+	 */
+
+	private void sleepUntilPushed() {
+
+		Thread self = Thread.currentThread();
+		this.idleWorkers.add(self);
+
+		if(this.hasWaitingLinks() == false && this.pagesOutstanding.get() != 0 && this.stopCrawl == false)
+		{
+			LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS));
+		}
+
+		this.idleWorkers.remove(self);
+	}
+
+	/**
+	 * Private method indicating whether any link is waiting on a stack
+	 * @return true if a link is waiting, else false
+	 */
+
+	private boolean hasWaitingLinks() {
+		for(int i = 0; i < this.workers; i++)
+		{
+			if(this.pagesToVisit[i].isEmpty() == false)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Private method that wakes every sleeping worker, once the crawl
+	 * is over or has been stopped
+	 */
+
+	private void wakeAll() {
+		Thread[] running = this.threads; // workers of the current search, if any
+
+		for(int i = 0; running != null && i < running.length; i++)
+		{
+			LockSupport.unpark(running[i]);
+		}
+	}
+
+	/**
+	 * Loop run by each worker thread until every page has been
+	 * visited or the crawl is stopped.
+	 */
+
+	private class Worker implements Runnable {
+
+		private int index; // index of this worker's stack
+
+		private Worker(int index) {
+			this.index = index;
+		}
+
+		public void run() {
+
+			while(pagesOutstanding.get() != 0 && stopCrawl == false)
+			{
+				long link = (hostQueues != null) ? nextPoliteLink(this.index) : nextLink(this.index);
+
+				// if no page is waiting anywhere, other workers are still
+				// downloading and may push more, so sleep until they do;
+				// polite workers have already waited for a host
+
+				if(link == WorkStealingStack.EMPTY)
+				{
+					if(hostQueues == null)
+					{
+						sleepUntilPushed();
+					}
+					continue;
+				}
+
+				try {
+					visit(this.index, link);
+				}
+
+				finally {
+
+					// the last page visited ends the crawl for every worker
+
+					if(pagesOutstanding.decrementAndGet() == 0)
+					{
+						wakeAll();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method indicating whether a link found on a page will certainly not
+	 * be followed: links that have ever been pushed are skipped as well
+	 * as visited links
+	 * @param page page on which the link was found
+	 * @param address address of the link
+	 * @return true if the link will be skipped, else false
+	 */
+
+	protected boolean skipsLink(Page page, String address) {
+		return super.skipsLink(page, address) || this.linksScheduled.contains(address);
+	}
+
+	/**
+	 * Method that gets the number of pages waiting on the stacks
+	 * of all the workers
+	 * @return number of pages waiting to be visited
+	 */
+
+	public int getFrontierSize() {
+		WorkStealingStack[] stacks = this.pagesToVisit; // stacks of the current search, if it has started
+		int size = 0;
+
+		for(int i = 0; stacks != null && i < stacks.length; i++)
+		{
+			if(stacks[i] != null)
+			{
+				size += stacks[i].size();
+			}
+		}
+		HostShardedQueue<Long> hosts = this.hostQueues; // host queues of the current search, if polite
+		if(hosts != null)
+		{
+			size += hosts.size();
+		}
+		return size;
+	}
+
+}
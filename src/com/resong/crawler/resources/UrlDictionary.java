@@ -0,0 +1,660 @@
+package com.resong.crawler.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.resong.crawler.structures.set.BloomFilterSet;
+
+/**
+ * Assigns every distinct URL a dense int id, starting at 0, and keeps the
+ * URLs themselves as UTF-8 bytes in growing arenas. A crawl can then refer
+ * to a link by its id in its queues, sets and link lists, and only turn it
+ * back into a String when the page is visited. Each URL costs its bytes
+ * plus about thirty bytes of index, instead of a String and the objects
+ * around it. Ids are never reused.
+ *
+ * A URL that is no longer needed can be forgotten: its bytes and index
+ * are freed for other URLs, and only four bytes are kept to remember that
+ * its id was forgotten. Finding or interning the URL afterwards treats it
+ * as new and gives it a new id.
+ *
+ * The dictionary may be shared by several threads. URLs are spread over
+ * stripes by their hash code, each with its own lock, hash table and
+ * arena, so threads interning different URLs seldom wait on each other.
+ * Where each id is stored is kept in an append-only table that is read
+ * without locking, so turning an id back into its URL never waits.
+ */
+public class UrlDictionary {
+
+    /***************************************************************************
+     * CONSTANT DECLARATIONS
+     **************************************************************************/
+
+    // The number of stripes, a power of two
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    // The most URLs a stripe can hold, given the bits left in a location
+    private static final int MAX_PER_STRIPE = (1 << (31 - STRIPE_BITS)) - 1;
+
+    // The number of URLs each stripe has room for at first
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The number of URL bytes each stripe's arena has room for at first
+    private static final int INITIAL_ARENA = 512;
+
+    // The number of ids whose locations are kept in one chunk
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // Marks a free slot of a hash table
+    private static final int FREE = -1;
+
+    // The location of an id that has been assigned but not yet stored, and
+    // of one that has been forgotten
+    private static final int STORING = 0;
+    private static final int FORGOTTEN = -1;
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // The stripes holding the URLs, each created when its first URL is
+    // added, so that an empty dictionary is small
+    private AtomicReferenceArray<Stripe> stripes;
+
+    // For each id, in chunks of CHUNK_SIZE, where its URL is kept: its
+    // index in its stripe shifted left by STRIPE_BITS, plus the stripe,
+    // plus one; or STORING or FORGOTTEN
+    private volatile AtomicIntegerArray[] locations;
+
+    // The next id to assign
+    private AtomicInteger count;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new, empty UrlDictionary
+     */
+    public UrlDictionary() {
+
+        this.stripes = new AtomicReferenceArray<Stripe>(STRIPES);
+        this.locations = new AtomicIntegerArray[0];
+        this.count = new AtomicInteger();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the id of a URL, adding it to the dictionary if it is new
+     * @param address The URL
+     * @return The id of the URL
+     */
+    public int intern(String address) {
+
+        int hash = address.hashCode();
+        int s = stripeOf(hash);
+        Stripe stripe = this.stripes.get(s);
+        if (stripe == null) {
+            this.stripes.compareAndSet(s, null, new Stripe());
+            stripe = this.stripes.get(s);
+        }
+
+        synchronized (stripe) {
+            int slot = stripe.slotOf(address, hash);
+            if (stripe.table[slot] != FREE) {
+                return stripe.ids[stripe.table[slot]];
+            }
+
+            if (stripe.count == MAX_PER_STRIPE) {
+                throw new IllegalStateException("Too many URLs in the dictionary");
+            }
+
+            int id = this.count.getAndIncrement();
+            int index = stripe.add(address, hash, slot, id);
+
+            // Publish where the URL is kept only once its bytes are stored
+            this.chunkFor(id).set(id & (CHUNK_SIZE - 1), (index << STRIPE_BITS) + s + 1);
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of a URL, without adding it
+     * @param address The URL
+     * @return The id of the URL, or -1 if it is not in the dictionary
+     */
+    public int find(String address) {
+
+        int hash = address.hashCode();
+        Stripe stripe = this.stripes.get(stripeOf(hash));
+        if (stripe == null) {
+            return FREE;
+        }
+
+        synchronized (stripe) {
+            int index = stripe.table[stripe.slotOf(address, hash)];
+            return (index == FREE) ? FREE : stripe.ids[index];
+        }
+    }
+
+    /**
+     * Returns the URL with the specified id
+     * @param id The id of the URL
+     * @return The URL
+     * @throws IndexOutOfBoundsException If no URL has that id
+     * @throws IllegalStateException If the URL has been forgotten
+     */
+    public String address(int id) {
+
+        int location = this.storedLocation(id);
+        return this.stripes.get(location & (STRIPES - 1)).address(location >>> STRIPE_BITS);
+    }
+
+    /**
+     * Returns the 64 bit hash BloomFilterSet.hash gives the URL with the
+     * specified id. URLs of only ASCII characters, as most are, are hashed
+     * from their bytes without building a String.
+     * @param id The id of the URL
+     * @return The hash of the URL
+     * @throws IndexOutOfBoundsException If no URL has that id
+     * @throws IllegalStateException If the URL has been forgotten
+     */
+    public long filterHash(int id) {
+
+        int location = this.storedLocation(id);
+        return this.stripes.get(location & (STRIPES - 1)).filterHash(location >>> STRIPE_BITS);
+    }
+
+    /**
+     * Forgets the URL with the specified id, freeing the memory it used.
+     * The id is not given to another URL, but it no longer has a URL, so
+     * it must not be in use anywhere the URL may still be asked for.
+     * @param id The id of the URL
+     * @throws IndexOutOfBoundsException If no URL has that id
+     */
+    public void forget(int id) {
+
+        int location = this.locationOf(id);
+        if (location == FORGOTTEN) {
+            return;
+        }
+
+        Stripe stripe = this.stripes.get(location & (STRIPES - 1));
+        synchronized (stripe) {
+            this.chunkAt(id).set(id & (CHUNK_SIZE - 1), FORGOTTEN);
+            stripe.remove(location >>> STRIPE_BITS);
+        }
+    }
+
+    /**
+     * Returns whether the URL with the specified id has been forgotten
+     * @param id The id of the URL
+     * @return True, if the URL has been forgotten; false, otherwise
+     * @throws IndexOutOfBoundsException If no URL has that id
+     */
+    public boolean isForgotten(int id) {
+        return this.locationOf(id) == FORGOTTEN;
+    }
+
+    /**
+     * Returns the number of ids assigned, which is also the smallest id
+     * not yet assigned. Ids of forgotten URLs are counted.
+     * @return The number of ids
+     */
+    public int size() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns roughly how many bytes of memory the dictionary holds,
+     * counting the room left in its arrays
+     * @return The size of the dictionary's arrays, in bytes
+     */
+    public long memoryBytes() {
+
+        long bytes = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = this.stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            synchronized (stripe) {
+                bytes += stripe.memoryBytes();
+            }
+        }
+        AtomicIntegerArray[] chunks = this.locations;
+        for (AtomicIntegerArray chunk : chunks) {
+            if (chunk != null) {
+                bytes += 4L * chunk.length();
+            }
+        }
+        return bytes;
+    }
+
+    /***************************************************************************
+     * PRIVATE METHODS
+     **************************************************************************/
+
+    /**
+     * Returns where the URL of an id is kept, waiting for it to be stored
+     * if another thread is still storing it
+     * @param id The id
+     * @return The location, less one, or FORGOTTEN
+     * @throws IndexOutOfBoundsException If no URL has that id
+     */
+    private int locationOf(int id) {
+
+        if (id < 0 || id >= this.count.get()) {
+            throw new IndexOutOfBoundsException("No URL with id " + id);
+        }
+
+        AtomicIntegerArray chunk = this.chunkAt(id);
+        int location;
+        while ((location = chunk.get(id & (CHUNK_SIZE - 1))) == STORING) {
+            Thread.onSpinWait();
+        }
+        return (location == FORGOTTEN) ? FORGOTTEN : location - 1;
+    }
+
+    /**
+     * Returns where the URL of an id is kept, if it has not been forgotten
+     * @param id The id
+     * @return The location, less one
+     * @throws IndexOutOfBoundsException If no URL has that id
+     * @throws IllegalStateException If the URL has been forgotten
+     */
+    private int storedLocation(int id) {
+
+        int location = this.locationOf(id);
+        if (location == FORGOTTEN) {
+            throw new IllegalStateException("URL with id " + id + " has been forgotten");
+        }
+        return location;
+    }
+
+    /**
+     * Returns the chunk holding the location of an id, adding chunks until
+     * there is one
+     * @param id The id
+     * @return The chunk
+     */
+    private AtomicIntegerArray chunkFor(int id) {
+
+        int c = id >>> CHUNK_BITS;
+        AtomicIntegerArray[] chunks = this.locations;
+        if (c < chunks.length && chunks[c] != null) {
+            return chunks[c];
+        }
+
+        synchronized (this) {
+            chunks = this.locations;
+            if (c >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(c + 1, chunks.length * 2));
+            }
+            if (chunks[c] == null) {
+                chunks[c] = new AtomicIntegerArray(CHUNK_SIZE);
+            }
+            this.locations = chunks;
+            return chunks[c];
+        }
+    }
+
+    /**
+     * Returns the chunk holding the location of an assigned id, waiting for
+     * the thread assigning it to add the chunk if needed
+     * @param id The id
+     * @return The chunk
+     */
+    private AtomicIntegerArray chunkAt(int id) {
+
+        int c = id >>> CHUNK_BITS;
+        while (true) {
+            AtomicIntegerArray[] chunks = this.locations;
+            if (c < chunks.length && chunks[c] != null) {
+                return chunks[c];
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the stripe a URL belongs to
+     * @param hash The hash code of the URL
+     * @return The index of the stripe
+     */
+    private static int stripeOf(int hash) {
+
+        // Use the high bits of a multiplicative hash, leaving the low bits
+        // to pick the slot within the stripe
+        return (hash * 0x9E3779B9) >>> (32 - STRIPE_BITS);
+    }
+
+    /**
+     * Mixes the high bits of a hash code into the low bits used to pick a
+     * slot, so that hash codes differing only in their high bits don't
+     * collide
+     * @param hash The hash code
+     * @return The mixed hash code
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The bytes of the URLs of a stripe and where each one is. A new Store
+     * replaces the old one whenever its arrays are reallocated, so that a
+     * thread reading a URL without the stripe's lock always sees arrays
+     * that belong together.
+     */
+    private static class Store {
+
+        // The bytes of the URLs, one after the other
+        private byte[] bytes;
+
+        // For each index of the stripe, where its URL starts in bytes and
+        // how many bytes it has
+        private int[] starts;
+        private int[] lengths;
+
+        // The number of bytes used, including those of forgotten URLs
+        private int used;
+
+        /**
+         * Initializes a new Store
+         * @param bytes The bytes of the URLs
+         * @param starts Where each URL starts
+         * @param lengths How many bytes each URL has
+         * @param used The number of bytes used
+         */
+        private Store(byte[] bytes, int[] starts, int[] lengths, int used) {
+            this.bytes = bytes;
+            this.starts = starts;
+            this.lengths = lengths;
+            this.used = used;
+        }
+    }
+
+    /**
+     * The URLs of one stripe, with the hash table finding them. Everything
+     * but reading a URL back is done holding the stripe's lock.
+     */
+    private static class Stripe {
+
+        // The bytes of the stripe's URLs
+        private volatile Store store;
+
+        // For each index of the stripe, its URL's hash code and its id
+        private int[] hashes;
+        private int[] ids;
+
+        // An open-addressed hash table of indexes into the stripe, or FREE
+        private int[] table;
+
+        // The number of indexes ever used, and the number of URLs held
+        private int top;
+        private int count;
+
+        // Indexes of forgotten URLs, to be used again
+        private int[] freeIndexes;
+        private int freeCount;
+
+        // The number of bytes of forgotten URLs in the store
+        private int garbage;
+
+        /**
+         * Initializes a new, empty Stripe
+         */
+        private Stripe() {
+
+            this.store = new Store(new byte[INITIAL_ARENA], new int[INITIAL_CAPACITY],
+                    new int[INITIAL_CAPACITY], 0);
+            this.hashes = new int[INITIAL_CAPACITY];
+            this.ids = new int[INITIAL_CAPACITY];
+            this.table = new int[INITIAL_CAPACITY * 2];
+            Arrays.fill(this.table, FREE);
+            this.freeIndexes = new int[0];
+        }
+
+        /**
+         * Adds a URL to the stripe
+         * @param address The URL
+         * @param hash The hash code of the URL
+         * @param slot The free slot of the hash table for the URL
+         * @param id The id of the URL
+         * @return The index of the URL in the stripe
+         */
+        private int add(String address, int hash, int slot, int id) {
+
+            byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+
+            // Make room for the URL, reusing the index of a forgotten URL
+            // if there is one
+            Store store = this.store;
+            int index;
+            if (this.freeCount > 0) {
+                index = this.freeIndexes[--this.freeCount];
+            } else {
+                index = this.top++;
+                if (index == this.hashes.length) {
+                    this.hashes = Arrays.copyOf(this.hashes, index * 2);
+                    this.ids = Arrays.copyOf(this.ids, index * 2);
+                    store = new Store(store.bytes, Arrays.copyOf(store.starts, index * 2),
+                            Arrays.copyOf(store.lengths, index * 2), store.used);
+                }
+            }
+            if (store.used + bytes.length > store.bytes.length) {
+                store = new Store(Arrays.copyOf(store.bytes, Math.max(store.bytes.length * 2,
+                        store.used + bytes.length)), store.starts, store.lengths, store.used);
+            }
+
+            System.arraycopy(bytes, 0, store.bytes, store.used, bytes.length);
+            store.starts[index] = store.used;
+            store.lengths[index] = bytes.length;
+            store.used += bytes.length;
+            this.hashes[index] = hash;
+            this.ids[index] = id;
+            this.table[slot] = index;
+            this.count++;
+
+            // Publish the store once it holds the URL
+            this.store = store;
+
+            // Keep the hash table at most half full
+            if (this.count * 2 > this.table.length) {
+                this.rehash(this.table.length * 2);
+            }
+            return index;
+        }
+
+        /**
+         * Forgets a URL of the stripe, compacting the store once most of
+         * its bytes belong to forgotten URLs
+         * @param index The index of the URL in the stripe
+         */
+        private void remove(int index) {
+
+            // Take the index out of the hash table, moving back any entries
+            // after it that would no longer be found
+            int mask = this.table.length - 1;
+            int slot = spread(this.hashes[index]) & mask;
+            while (this.table[slot] != index) {
+                slot = (slot + 1) & mask;
+            }
+            int gap = slot;
+            for (slot = (gap + 1) & mask; this.table[slot] != FREE; slot = (slot + 1) & mask) {
+                int home = spread(this.hashes[this.table[slot]]) & mask;
+                if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                    this.table[gap] = this.table[slot];
+                    gap = slot;
+                }
+            }
+            this.table[gap] = FREE;
+
+            if (this.freeCount == this.freeIndexes.length) {
+                this.freeIndexes = Arrays.copyOf(this.freeIndexes, Math.max(8, this.freeCount * 2));
+            }
+            this.freeIndexes[this.freeCount++] = index;
+            this.count--;
+            this.garbage += this.store.lengths[index];
+
+            if (this.garbage > INITIAL_ARENA && this.garbage * 2 > this.store.used) {
+                this.compact();
+            }
+        }
+
+        /**
+         * Copies the bytes of the URLs still held into a smaller store, and
+         * shrinks the hash table if it has become mostly empty
+         */
+        private void compact() {
+
+            Store old = this.store;
+            boolean[] free = new boolean[this.top];
+            for (int i = 0; i < this.freeCount; i++) {
+                free[this.freeIndexes[i]] = true;
+            }
+
+            Store store = new Store(new byte[Math.max(INITIAL_ARENA, 2 * (old.used - this.garbage))],
+                    old.starts.clone(), old.lengths.clone(), 0);
+            for (int index = 0; index < this.top; index++) {
+                if (!free[index]) {
+                    System.arraycopy(old.bytes, old.starts[index], store.bytes, store.used, old.lengths[index]);
+                    store.starts[index] = store.used;
+                    store.used += old.lengths[index];
+                }
+            }
+            this.garbage = 0;
+            this.store = store;
+
+            int size = INITIAL_CAPACITY * 2;
+            while (size < this.count * 4) {
+                size *= 2;
+            }
+            if (size < this.table.length) {
+                this.rehash(size);
+            }
+        }
+
+        /**
+         * Returns a URL of the stripe. Called without the stripe's lock.
+         * @param index The index of the URL in the stripe
+         * @return The URL
+         */
+        private String address(int index) {
+
+            Store store = this.store;
+            return new String(store.bytes, store.starts[index], store.lengths[index], StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the BloomFilterSet hash of a URL of the stripe. Called
+         * without the stripe's lock.
+         * @param index The index of the URL in the stripe
+         * @return The hash
+         */
+        private long filterHash(int index) {
+
+            Store store = this.store;
+            int start = store.starts[index];
+            int length = store.lengths[index];
+            for (int i = start; i < start + length; i++) {
+                if (store.bytes[i] < 0) {
+                    return BloomFilterSet.hash(new String(store.bytes, start, length, StandardCharsets.UTF_8));
+                }
+            }
+            return BloomFilterSet.hashAscii(store.bytes, start, length);
+        }
+
+        /**
+         * Returns how many bytes the stripe's arrays take
+         * @return The number of bytes
+         */
+        private long memoryBytes() {
+
+            Store store = this.store;
+            return store.bytes.length + 4L * (store.starts.length + store.lengths.length
+                    + this.hashes.length + this.ids.length + this.table.length + this.freeIndexes.length);
+        }
+
+        /**
+         * Finds the slot of the hash table holding a URL, or the free slot
+         * where it would be added
+         * @param address The URL
+         * @param hash The hash code of the URL
+         * @return The index of the slot
+         */
+        private int slotOf(String address, int hash) {
+
+            int mask = this.table.length - 1;
+            int slot = spread(hash) & mask;
+
+            while (this.table[slot] != FREE) {
+                int index = this.table[slot];
+                if (this.hashes[index] == hash && this.matches(index, address)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Returns whether a URL of the stripe is equal to a String
+         * @param index The index of the stored URL
+         * @param address The String to compare it with
+         * @return True, if they are equal; false, otherwise
+         */
+        private boolean matches(int index, String address) {
+
+            Store store = this.store;
+            int start = store.starts[index];
+            int length = store.lengths[index];
+
+            // A URL of only ASCII characters has one byte per character, so
+            // it can be compared without encoding the String
+            if (length == address.length()) {
+                for (int i = 0; i < length; i++) {
+                    char c = address.charAt(i);
+                    if (c >= 0x80 || store.bytes[start + i] != (byte) c) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+            return Arrays.equals(bytes, 0, bytes.length, store.bytes, start, start + length);
+        }
+
+        /**
+         * Moves every URL into a hash table of the specified size
+         * @param size The number of slots, a power of two
+         */
+        private void rehash(int size) {
+
+            int[] old = this.table;
+            this.table = new int[size];
+            Arrays.fill(this.table, FREE);
+            int mask = size - 1;
+
+            for (int index : old) {
+                if (index == FREE) {
+                    continue;
+                }
+                int slot = spread(this.hashes[index]) & mask;
+                while (this.table[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                this.table[slot] = index;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.resong.crawler.resources;
+
+import com.resong.crawler.structures.set.ConcurrentBitSet;
+import com.resong.crawler.structures.set.SetADT;
+
+/**
+ * A set of URLs that stores the id each URL has in a UrlDictionary rather
+ * than the URL itself, as one bit per id. URLs added are interned in the
+ * dictionary; URLs that were never interned are not in the set. The set
+ * may be shared by several threads, as may the dictionary.
+ */
+public class UrlIdSet implements SetADT<String> {
+
+    /***************************************************************************
+     * INSTANCE VARIABLES
+     **************************************************************************/
+
+    // Assigns the ids of the URLs
+    private UrlDictionary urls;
+
+    // The ids of the URLs in the set
+    private ConcurrentBitSet ids;
+
+    /***************************************************************************
+     * CONSTRUCTORS
+     **************************************************************************/
+
+    /**
+     * Initializes a new, empty UrlIdSet
+     * @param urls The dictionary assigning ids to the URLs
+     */
+    public UrlIdSet(UrlDictionary urls) {
+
+        this.urls = urls;
+        this.ids = new ConcurrentBitSet();
+    }
+
+    /***************************************************************************
+     * PUBLIC METHODS
+     **************************************************************************/
+
+    /**
+     * Returns the dictionary assigning ids to the URLs of the set
+     * @return The dictionary
+     */
+    public UrlDictionary getDictionary() {
+        return this.urls;
+    }
+
+    /**
+     * Adds a URL to the set if it is not already present
+     * @param address The URL
+     * @return True, if the URL was added; false, otherwise
+     */
+    @Override
+    public boolean add(String address) {
+        return this.ids.add(this.urls.intern(address));
+    }
+
+    /**
+     * Adds a URL to the set by its id
+     * @param id The id of the URL in the dictionary
+     * @return True, if the URL was added; false, otherwise
+     */
+    public boolean add(int id) {
+        return this.ids.add(id);
+    }
+
+    /**
+     * Returns whether a URL is in the set
+     * @param address The URL
+     * @return True, if the URL is in the set; false, otherwise
+     */
+    @Override
+    public boolean contains(String address) {
+        return this.ids.contains(this.urls.find(address));
+    }
+
+    /**
+     * Returns whether a URL is in the set, by its id
+     * @param id The id of the URL in the dictionary
+     * @return True, if the URL is in the set; false, otherwise
+     */
+    public boolean contains(int id) {
+        return this.ids.contains(id);
+    }
+
+    /**
+     * Returns whether the set is empty
+     * @return True, if the set holds no URLs; false, otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.ids.isEmpty();
+    }
+
+    /**
+     * Returns the number of URLs in the set
+     * @return The number of URLs
+     */
+    @Override
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Returns the URLs in the set, one per line, in the order they were
+     * first interned
+     * @return The URLs in the set
+     */
+    @Override
+    public String toString() {
+
+        StringBuilder result = new StringBuilder();
+        for (String id : this.ids.toString().split("\n")) {
+            if (!id.isEmpty()) {
+                result.append(this.urls.address(Integer.parseInt(id))).append("\n");
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,407 @@
+package com.resong.crawler.resources;
+
+/**
+ * Subclass of the Crawler class that creates a web crawler which downloads every page on
+ * its own virtual thread, so that thousands of slow downloads can be waiting at once
+ * without tying up a platform thread each. A cap limits how many pages are downloaded at
+ * the same time. Pages are visited roughly in breadth first order, but numbered in the
+ * order their downloads finish. When crawling politely, pages wait in a queue for each host
+ * until their host is ready. On Java versions without virtual threads a growable pool
+ * of ordinary threads is used instead, so each download in flight then ties up a
+ * platform thread; the cap still bounds the pool's size.
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import com.resong.crawler.structures.queue.*;
+
+
+public class VirtualThreadCrawler extends Crawler {
+
+	/////////////// Attributes ////////////////
+
+	public static final int DEFAULT_MAX_IN_FLIGHT = 256; // downloads allowed at once by default
+
+	private static final boolean VIRTUAL_THREADS = hasVirtualThreads(); // true if this Java version has virtual threads
+
+	private static final long POLL_MILLIS = 50; // how often the crawl thread checks for a stop request
+
+	private LinkedBlockingQueue<Long> pagesToVisit; // queue of links waiting for a download slot, each an id and a depth
+	
+	private HostShardedQueue<Long> hostQueues; // per-host queues used instead of pagesToVisit when crawling politely, else null
+
+	private UrlIdSet linksScheduled; // ids of addresses that have ever been queued
+
+	private AtomicInteger pagesOutstanding; // pages queued or being downloaded
+
+	private Semaphore downloadSlots; // limits the number of downloads in flight
+
+	private int maxInFlight; // maximum number of downloads in flight
+
+	private volatile ExecutorService executor; // starts a thread for each download
+
+
+	////////////// Constructors ////////////////
+
+	/**
+	 * Constructor that creates a virtual thread crawler taking
+	 * a search term and a list to store results in.
+	 * @param keyword search term
+	 * @param list list that stores results of each page crawled
+	 */
+
+	public VirtualThreadCrawler(String keyword, CrawlResultSink list) {
+		this(keyword, list, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * Constructor that creates a virtual thread crawler taking a search
+	 * term, a list to store results in and a cap on downloads in flight.
+	 * @param keyword search term
+	 * @param list list that stores results of each page crawled
+	 * @param maxInFlight maximum number of pages downloaded at the same time
+	 */
+
+	public VirtualThreadCrawler(String keyword, CrawlResultSink list, int maxInFlight) {
+		super(keyword, list);
+		this.setMaxInFlight(maxInFlight);
+	}
+
+
+	//////////////Methods ///////////////
+
+	/**
+	 * Method indicating whether downloads run on virtual threads. On Java
+	 * versions before 21 they run on a pool of ordinary threads instead
+	 * @return true if virtual threads are used, else false
+	 */
+
+	public static boolean usesVirtualThreads() {
+		return VIRTUAL_THREADS;
+	}
+
+	/**
+	 * Method that returns the cap on downloads in flight
+	 * @return maximum number of pages downloaded at the same time
+	 */
+
+	public int getMaxInFlight() {
+		return this.maxInFlight;
+	}
+
+	/**
+	 * Method that sets the cap on downloads in flight for the next search
+	 * @param maxInFlight maximum number of pages downloaded at the same time
+	 */
+
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = Math.max(1, maxInFlight);
+	}
+
+	/**
+	 * Search method looks for the search term starting
+	 * at the String address while it has not been requested
+	 * that the crawl be stopped.
+	 * @param address URL of page to start searching from
+	 */
+
+	public void search(String address) {
+
+		super.setCrawling(true); // set to indicate crawler is crawling
+
+		this.pagesToVisit = new LinkedBlockingQueue<Long>();
+		this.linksScheduled = new UrlIdSet(this.getUrlDictionary());
+		this.pagesOutstanding = new AtomicInteger(0);
+		this.downloadSlots = new Semaphore(this.maxInFlight);
+		this.executor = newThreadPerTaskExecutor();
+
+		// when crawling politely, hand out pages host by host
+
+		this.hostQueues = this.newHostQueue(new ToIntFunction<Long>() {
+
+			public int applyAsInt(Long link) {
+				return linkId(link);
+			}
+		});
+
+		// queue the starting URL to be visited
+
+		int start = this.getUrlDictionary().intern(address); // id of the starting URL
+		this.linksScheduled.add(start);
+		this.schedule(start, 0);
+
+		try {
+
+			// while pages are queued or downloading
+			// and it hasn't been requested to stop crawling
+
+			while(this.pagesOutstanding.get() != 0 && this.stopCrawl == false)
+			{
+
+				// wait for the next queued page and a free download
+				// slot, checking regularly whether to stop
+
+				Long link = (this.hostQueues != null) ? this.hostQueues.poll(POLL_MILLIS)
+						: this.pagesToVisit.poll(POLL_MILLIS, TimeUnit.MILLISECONDS); // next link to visit, if any is ready
+
+				if(link == null)
+				{
+					continue;
+				}
+
+				boolean acquired = false; // true once a download slot is free
+
+				while(acquired == false && this.stopCrawl == false)
+				{
+					acquired = this.downloadSlots.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				}
+
+				if(acquired == true)
+				{
+					this.executor.execute(new PageDownload(link));
+				}
+			}
+		}
+
+		catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+		}
+
+		catch (RejectedExecutionException ex){
+			// the crawl was stopped while a download was being started
+		}
+
+		finally {
+			this.executor.shutdownNow(); // interrupt downloads left over if the crawl was stopped
+		}
+
+		super.setCrawling(false); // set so crawler is no longer crawling
+	}
+
+	/**
+	 * Method to indicate the crawler should stop crawling. Downloads in
+	 * flight are interrupted rather than waited for
+	 */
+
+	@Override
+	public void stop() {
+		super.stop();
+
+		ExecutorService running = this.executor;
+		if(running != null)
+		{
+			running.shutdownNow();
+		}
+	}
+
+	/**
+	 * Private method that queues a link to be visited. The link must
+	 * already have been added to linksScheduled
+	 * @param id id of the link's address
+	 * @param depth depth of the page
+	 */
+
+	private void schedule(int id, int depth) {
+		long link = ((long) depth << 32) | (id & 0xFFFFFFFFL); // id and depth of the link in one value
+		this.pagesOutstanding.incrementAndGet();
+
+		if(this.hostQueues != null)
+		{
+			this.hostQueues.enqueue(link);
+		}
+		else
+		{
+			this.pagesToVisit.add(link);
+		}
+	}
+
+	/**
+	 * Private method that returns the id of a queued link
+	 * @param link link as queued by schedule
+	 * @return id of the link's address
+	 */
+
+	private static int linkId(long link) {
+		return (int) link;
+	}
+
+	/**
+	 * Private method indicating whether this Java version has virtual
+	 * threads. They only exist from Java 21 on, so they are looked up by name
+	 * @return true if virtual threads can be started, else false
+	 */
+
+	private static boolean hasVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		}
+		catch (NoSuchMethodException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Private method that returns an executor starting a new virtual
+	 * thread for every task, or on Java versions without virtual threads
+	 * an executor that starts ordinary threads as needed
+	 * @return executor running each task on its own thread
+	 */
+
+	private static ExecutorService newThreadPerTaskExecutor() {
+		if(VIRTUAL_THREADS == true)
+		{
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			}
+			catch (ReflectiveOperationException ex) {
+				// fall back to ordinary threads
+			}
+		}
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Task run on its own thread that downloads one page, records it
+	 * and queues the links found on it.
+	 */
+
+	private class PageDownload implements Runnable {
+
+		private long link; // id and depth of the page, as queued
+
+		private Page page; // page to download
+
+		private PageDownload(long link) {
+			this.link = link;
+			this.page = new Page(getUrlDictionary().address(linkId(link)));
+			this.page.setDepth((int) (link >>> 32));
+		}
+
+		public void run() {
+
+			try {
+				this.visit();
+			}
+
+			finally {
+
+				// let the next page of this host be visited
+
+				if(hostQueues != null)
+				{
+					hostQueues.release(this.link);
+				}
+
+				forgetVisitedLink(this.page); // drop the page's address if visited links are kept in a filter
+				downloadSlots.release();
+				pagesOutstanding.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Downloads the page and, unless the crawl has been stopped
+		 * meanwhile, records it and queues its links
+		 */
+
+		private void visit() {
+
+			printVisiting(this.page);
+
+			try {
+				downloadPage(this.page);
+			}
+
+			catch (Exception ex){
+
+				// adds the failed page to crawl results
+
+				if(stopCrawl == false)
+				{
+					String error = "An error occurred while accessing " + this.page.getAddress();
+					addFailedPage(this.page, error, crawlingNextPage());
+				}
+				return;
+			}
+
+			if(stopCrawl == true)
+			{
+				return;
+			}
+
+			addVisitedLink(this.page.getAddress());
+
+			boolean containsText = matchesKeyWords(this.page); // true if page contains search term, false otherwise
+
+			if(containsText == true)
+			{
+				printMatch(this.page);
+			}
+
+			addCrawledPage(this.page, containsText, crawlingNextPage()); // add page and its search outcome to crawl results
+
+
+			long frontierStart = System.nanoTime(); // time at which the work on the page's links starts
+			int checked = 0; // number of links checked
+			int queued = 0; // number of links queued
+
+			// if current page depth is less than maximum page depth
+
+			if(this.page.getDepth() < getMaxDepth())
+			{
+				// while there are links to go through, and the links waiting
+				// for a download slot don't exceed the maximum number of links set
+
+				for(int i = 0; i < this.page.getLinkCount() && getFrontierSize() < getMaxLinks(); i++)
+				{
+					int id = this.page.getLinkId(i); // id of the next link on the current page
+					checked++;
+
+					// if it hasn't been visited or queued already, queue it;
+					// adding to linksScheduled claims the link so that no
+					// other thread queues it as well
+
+					if(hasVisitedLink(id) == false
+							&& linksScheduled.add(id) == true)
+					{
+						schedule(id, this.page.getLinkDepth());
+						queued++;
+					}
+				}
+			}
+
+			linksChecked(frontierStart, checked, queued); // record the work done on the links
+		}
+	}
+
+	/**
+	 * Method indicating whether a link found on a page will certainly not
+	 * be followed: links that have ever been queued are skipped as well
+	 * as visited links
+	 * @param page page on which the link was found
+	 * @param address address of the link
+	 * @return true if the link will be skipped, else false
+	 */
+
+	protected boolean skipsLink(Page page, String address) {
+		return super.skipsLink(page, address) || this.linksScheduled.contains(address);
+	}
+	
+	/**
+	 * Method that gets the number of pages waiting for a download slot
+	 * @return number of pages waiting to be visited
+	 */
+	
+	public int getFrontierSize() {
+		HostShardedQueue<Long> hosts = this.hostQueues; // host queues of the current search, if polite
+		return (hosts != null) ? hosts.size() : this.pagesToVisit.size();
+	}
+
+}
@@ -1,9 +1,13 @@
 package com.resong.crawler.resources;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
-import javax.swing.text.html.HTMLEditorKit;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
 
 /**
  * Used to download a web page.
@@ -19,18 +23,88 @@ public class WebHelper {
      */
     public static void downloadPage(Page page) throws Exception {
 
-        // Create a URL from the page address and clear the page contents
+        // Create a URL from the page address
         URL u = new URL(page.getAddress());
+
+        // Open the URL, download its contents, and parse the page
+        URLConnection connection = u.openConnection();
+        InputStream in = connection.getInputStream();
+        try {
+            parsePage(page, in, charsetOf(connection.getContentType()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Clears the specified page and populates it with the text and links
+     * read from a stream of HTML, using the HtmlTokenizer of the current
+     * thread if it supports the character set of the document.
+     * @param page The Page to populate
+     * @param in A stream over the HTML of the page
+     * @param charset The character set of the document
+     * @throws IOException If reading the document fails
+     */
+    public static void parsePage(Page page, InputStream in, Charset charset) throws IOException {
+
+        if (HtmlTokenizer.supports(charset)) {
+            HtmlTokenizer.forCurrentThread().parse(page, in, charset);
+        } else {
+            parsePage(page, new InputStreamReader(in, charset));
+        }
+    }
+
+    /**
+     * Clears the specified page and populates it with the text and links
+     * of an HTML document that has already been downloaded.
+     * @param page The Page to populate
+     * @param data The HTML of the page
+     * @param charset The character set of the document
+     * @throws IOException If parsing the document fails
+     */
+    public static void parsePage(Page page, byte[] data, Charset charset) throws IOException {
+
+        if (HtmlTokenizer.supports(charset)) {
+            HtmlTokenizer.forCurrentThread().parse(page, data, 0, data.length, charset);
+        } else {
+            parsePage(page, new InputStreamReader(new ByteArrayInputStream(data), charset));
+        }
+    }
+
+    /**
+     * Clears the specified page and populates it with the text and links
+     * read from an HTML document, using the Swing HTML parser.
+     * @param page The Page to populate
+     * @param r A reader over the HTML of the page
+     * @throws IOException If reading the document fails
+     */
+    public static void parsePage(Page page, Reader r) throws IOException {
+
         page.clear();
+        PageParser.parse(page, r);
+    }
 
-        // Get a parser and setup the callbacks to the PageParser class
-        ParserGetter kit = new ParserGetter();
-        HTMLEditorKit.Parser parser = kit.getParser();
-        HTMLEditorKit.ParserCallback callback = new PageParser(page);
+    /**
+     * Returns the character set named in a Content-Type header, or the
+     * platform default if none is named or it is not supported.
+     * @param contentType The value of the Content-Type header, or null
+     * @return The character set of the document
+     */
+    public static Charset charsetOf(String contentType) {
 
-        // Open the URL, download its contents, and parse the page
-        InputStream in = u.openStream();
-        InputStreamReader r = new InputStreamReader(in);
-        parser.parse(r, callback, true);       
-    }   
-}
\ No newline at end of file
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                String p = param.trim();
+                if (p.toLowerCase().startsWith("charset=")) {
+                    try {
+                        return Charset.forName(p.substring(8).replace("\"", "").trim());
+                    } catch (Exception ex) {
+                        // Unknown charset -- fall back to the default
+                    }
+                }
+            }
+        }
+
+        return Charset.defaultCharset();
+    }
+}
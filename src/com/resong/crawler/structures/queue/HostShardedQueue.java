@@ -0,0 +1,339 @@
+package com.resong.crawler.structures.queue;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+import com.resong.crawler.exceptions.*;
+/**
+ * HostShardedQueue represents a queue that keeps a separate queue for
+ * each host and hands out elements politely: no more than a given number
+ * of elements per host may be in use at once, and elements of the same
+ * host are handed out at least a given delay apart. Hosts that are ready
+ * wait in a heap ordered by the time they become ready, so dequeue takes
+ * turns between hosts instead of letting one large host monopolise it.
+ *
+ * An element counts as in use from the moment it is dequeued until it is
+ * passed to release. Dequeue waits while no host is ready, so the queue
+ * may be shared by several consuming threads; poll waits no longer than
+ * a given time, so a consumer can give up, for example when asked to stop.
+ */
+
+public class HostShardedQueue<T> implements QueueADT<T>
+{
+  private Function<T, String> hostOf;
+  private int maxPerHost;
+  private long minDelayMillis;
+
+  private HashMap<String, Shard<T>> shards;
+  private PriorityQueue<Shard<T>> ready;
+  private ArrayDeque<Shard<T>> idle;
+  private long turn;
+  private int count;
+
+  /**
+   * Creates an empty queue.
+   *
+   * @param hostOf          function returning the host of an element
+   * @param maxPerHost      maximum number of elements of one host in use
+   *                        at the same time
+   * @param minDelayMillis  minimum number of milliseconds between handing
+   *                        out two elements of the same host
+   */
+  public HostShardedQueue (Function<T, String> hostOf, int maxPerHost, long minDelayMillis)
+  {
+    this.hostOf = hostOf;
+    this.maxPerHost = Math.max(1, maxPerHost);
+    this.minDelayMillis = Math.max(0, minDelayMillis);
+
+    shards = new HashMap<String, Shard<T>>();
+    ready = new PriorityQueue<Shard<T>>(new Comparator<Shard<T>>()
+    {
+      public int compare (Shard<T> a, Shard<T> b)
+      {
+        if (a.readyAt != b.readyAt)
+          return Long.compare(a.readyAt, b.readyAt);
+        return Long.compare(a.turn, b.turn);
+      }
+    });
+    idle = new ArrayDeque<Shard<T>>();
+    turn = 0;
+    count = 0;
+  }
+
+  /**
+   * Adds the specified element to the rear of its host's queue.
+   *
+   * @param element  the element to add to the queue
+   */
+  public synchronized void enqueue (T element)
+  {
+    expireIdle(System.currentTimeMillis());
+
+    String host = hostOf.apply(element);
+    Shard<T> shard = shards.get(host);
+
+    if (shard == null)
+    {
+      shard = new Shard<T>(host);
+      shards.put(host, shard);
+    }
+
+    shard.queue.enqueue(element);
+    count++;
+
+    schedule(shard);
+  }
+
+  /**
+   * Removes the front element of the host that becomes ready first and
+   * returns a reference to it, waiting until that host's delay has passed
+   * and it has fewer than the maximum elements in use. Throws an
+   * EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the element removed from the queue
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public synchronized T dequeue() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("queue");
+
+    T result = null;
+
+    while (result == null)
+      result = poll(Long.MAX_VALUE);
+
+    return result;
+  }
+
+  /**
+   * Removes the front element of the host that becomes ready first and
+   * returns a reference to it, waiting at most the given time for that
+   * host's delay to pass and for it to have fewer than the maximum
+   * elements in use. If the queue is empty, waits at most the given time
+   * for an element to be added.
+   *
+   * @param timeoutMillis  maximum number of milliseconds to wait
+   * @return               the element removed from the queue, or null if
+   *                       no element could be handed out in time
+   */
+  public synchronized T poll (long timeoutMillis)
+  {
+    long start = System.currentTimeMillis();
+    long deadline = (timeoutMillis > Long.MAX_VALUE - start) ? Long.MAX_VALUE : start + timeoutMillis;
+
+    while (true)
+    {
+      Shard<T> shard = ready.peek();
+      long now = System.currentTimeMillis();
+
+      if (shard != null && shard.readyAt <= now)
+      {
+        ready.poll();
+        shard.scheduled = false;
+
+        T result = shard.queue.dequeue();
+        count--;
+        shard.inUse++;
+        shard.readyAt = now + minDelayMillis;
+
+        schedule(shard);
+        return result;
+      }
+
+      if (now >= deadline)
+        return null;
+
+      // wait for the first host to become ready, for an element to be
+      // released if every host with waiting elements is fully in use, or
+      // for an element to be added
+
+      long wait = deadline - now;
+      if (shard != null)
+        wait = Math.min(wait, shard.readyAt - now);
+
+      try
+      {
+        wait(wait);
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while waiting for a host", ex);
+      }
+    }
+  }
+
+  /**
+   * Signals that an element previously returned by dequeue is no longer
+   * in use, allowing another element of its host to be handed out.
+   *
+   * @param element  the element that is no longer in use
+   */
+  public synchronized void release (T element)
+  {
+    expireIdle(System.currentTimeMillis());
+
+    Shard<T> shard = shards.get(hostOf.apply(element));
+
+    if (shard == null || shard.inUse == 0)
+      return;
+
+    shard.inUse--;
+    schedule(shard);
+  }
+
+  /**
+   * Returns a reference to the element that would be dequeued next if
+   * no host had to wait. The element is not removed from the queue.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           a reference to the next element
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public synchronized T first() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("queue");
+
+    if (!ready.isEmpty())
+      return ready.peek().queue.first();
+
+    for (Shard<T> shard : shards.values())
+    {
+      if (!shard.queue.isEmpty())
+        return shard.queue.first();
+    }
+
+    throw new EmptyCollectionException ("queue");
+  }
+
+  /**
+   * Returns true if no elements are waiting in this queue.
+   *
+   * @return  true if this queue is empty
+   */
+  public synchronized boolean isEmpty()
+  {
+    return (count == 0);
+  }
+
+  /**
+   * Returns the number of elements waiting in this queue.
+   *
+   * @return  the integer representation of the size of this queue
+   */
+  public synchronized int size()
+  {
+    return count;
+  }
+
+  /**
+   * Returns the number of hosts with elements waiting or in use.
+   *
+   * @return  the number of hosts tracked by this queue
+   */
+  public synchronized int hostCount()
+  {
+    return shards.size();
+  }
+
+  /**
+   * Returns a string representation of this queue, host by host.
+   *
+   * @return  the string representation of this queue
+   */
+  public synchronized String toString()
+  {
+    String result = "";
+
+    for (Shard<T> shard : shards.values())
+      result += shard.queue.toString();
+
+    return result;
+  }
+
+  /**
+   * Puts a host in the ready heap if it has waiting elements and room
+   * for another element in use, and forgets hosts with nothing left.
+   *
+   * @param shard  the host whose state has changed
+   */
+  private void schedule (Shard<T> shard)
+  {
+    if (shard.scheduled)
+      return;
+
+    // an idle host is kept until its delay has passed, so that a new
+    // element for it still has to wait its turn, and looked at again then
+
+    if (shard.queue.isEmpty())
+    {
+      if (shard.inUse == 0)
+      {
+        if (shard.readyAt <= System.currentTimeMillis())
+          shards.remove(shard.host);
+        else if (!shard.expiring)
+        {
+          shard.expiring = true;
+          idle.add(shard);
+        }
+      }
+      return;
+    }
+
+    if (shard.inUse < maxPerHost)
+    {
+      shard.turn = turn++;
+      shard.scheduled = true;
+      ready.add(shard);
+      notifyAll();
+    }
+  }
+
+  /**
+   * Forgets the idle hosts whose delay has passed. Hosts are looked at in
+   * the order they became idle, which is roughly the order their delays
+   * pass in; hosts given new elements meanwhile are simply passed over.
+   *
+   * @param now  the current time in milliseconds
+   */
+  private void expireIdle (long now)
+  {
+    while (!idle.isEmpty() && idle.peek().readyAt <= now)
+    {
+      Shard<T> shard = idle.poll();
+      shard.expiring = false;
+
+      if (shard.queue.isEmpty() && shard.inUse == 0 && shards.get(shard.host) == shard)
+        shards.remove(shard.host);
+    }
+  }
+
+  /**
+   * The elements waiting for one host and that host's politeness state.
+   */
+  private static class Shard<T>
+  {
+    private String host;
+    private LinkedQueue<T> queue;
+    private int inUse;
+    private long readyAt;
+    private long turn;
+    private boolean scheduled;
+    private boolean expiring;
+
+    private Shard (String host)
+    {
+      this.host = host;
+      this.queue = new LinkedQueue<T>();
+      this.inUse = 0;
+      this.readyAt = 0;
+      this.scheduled = false;
+      this.expiring = false;
+    }
+  }
+}
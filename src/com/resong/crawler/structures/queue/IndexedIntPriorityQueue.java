@@ -0,0 +1,323 @@
+package com.resong.crawler.structures.queue;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.resong.crawler.exceptions.*;
+/**
+ * IndexedIntPriorityQueue represents a priority queue of small non-negative
+ * ints, such as dense ids, each with an int priority. It is a binary heap
+ * that also remembers where in the heap each element is, so an element
+ * already in the queue can have its priority raised in place in O(log n)
+ * time instead of being added a second time. Elements of equal priority
+ * leave the queue in the order they were added.
+ */
+
+public class IndexedIntPriorityQueue
+{
+  private final int DEFAULT_CAPACITY = 100;
+  private final int ABSENT = -1;
+
+  private int[] heap;        // elements, in heap order
+  private int[] priorities;  // priority of the element at each heap slot
+  private long[] orders;     // when the element at each heap slot was added
+  private int[] positions;   // heap slot of each element, or ABSENT
+  private int count;
+  private long added;
+
+  /**
+   * Creates an empty priority queue using the default capacity.
+   */
+  public IndexedIntPriorityQueue()
+  {
+    heap = new int[DEFAULT_CAPACITY];
+    priorities = new int[DEFAULT_CAPACITY];
+    orders = new long[DEFAULT_CAPACITY];
+    positions = new int[0];
+    count = 0;
+    added = 0;
+  }
+
+  /**
+   * Adds the specified element with the specified priority, or raises the
+   * priority of the element if it is already in the queue with a lower
+   * one. An element keeps its place among elements of equal priority.
+   *
+   * @param element   the element to add
+   * @param priority  the priority of the element; higher comes out first
+   * @return          true if the element was added or its priority raised,
+   *                  false if it was already in the queue with at least
+   *                  that priority
+   * @throws IllegalArgumentException  if the element is negative
+   */
+  public boolean offer (int element, int priority)
+  {
+    if (element < 0)
+      throw new IllegalArgumentException("negative element " + element);
+
+    int slot = slotOf(element);
+
+    if (slot != ABSENT)
+    {
+      if (priorities[slot] >= priority)
+        return false;
+
+      priorities[slot] = priority;
+      siftUp(slot);
+      return true;
+    }
+
+    if (count == heap.length)
+      expandCapacity();
+    if (element >= positions.length)
+    {
+      int old = positions.length;
+      positions = Arrays.copyOf(positions, Math.max(element + 1, old * 2));
+      Arrays.fill(positions, old, positions.length, ABSENT);
+    }
+
+    heap[count] = element;
+    priorities[count] = priority;
+    orders[count] = added++;
+    positions[element] = count;
+    count++;
+    siftUp(count - 1);
+
+    return true;
+  }
+
+  /**
+   * Removes the element with the highest priority and returns it.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the element with the highest priority
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public int removeFirst() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("priority queue");
+
+    int result = heap[0];
+    positions[result] = ABSENT;
+    count--;
+
+    if (count > 0)
+    {
+      move(count, 0);
+      siftDown(0);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the element with the highest priority without removing it.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the element with the highest priority
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public int first() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("priority queue");
+
+    return heap[0];
+  }
+
+  /**
+   * Returns the highest priority in the queue.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the priority of the first element
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public int firstPriority() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("priority queue");
+
+    return priorities[0];
+  }
+
+  /**
+   * Returns true if the specified element is in the queue.
+   *
+   * @param element  the element to look for
+   * @return         true if the element is waiting in the queue
+   */
+  public boolean contains (int element)
+  {
+    return slotOf(element) != ABSENT;
+  }
+
+  /**
+   * Returns the priority of the specified element.
+   *
+   * @param element  the element to look for
+   * @return         its priority
+   * @throws NoSuchElementException  if the element is not in the queue
+   */
+  public int priorityOf (int element)
+  {
+    int slot = slotOf(element);
+    if (slot == ABSENT)
+      throw new NoSuchElementException ("no element " + element);
+
+    return priorities[slot];
+  }
+
+  /**
+   * Returns true if this queue is empty and false otherwise.
+   *
+   * @return  returns true if this queue is empty and false if otherwise
+   */
+  public boolean isEmpty()
+  {
+    return (count == 0);
+  }
+
+  /**
+   * Returns the number of elements currently in this queue.
+   *
+   * @return  the integer representation of the size of this queue
+   */
+  public int size()
+  {
+    return count;
+  }
+
+  /**
+   * Returns a string representation of this queue, in heap order.
+   *
+   * @return  the string representation of this queue
+   */
+  public String toString()
+  {
+    StringBuilder result = new StringBuilder();
+
+    for (int i = 0; i < count; i++)
+      result.append(heap[i]).append(" (").append(priorities[i]).append(")\n");
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the heap slot of an element.
+   *
+   * @param element  the element
+   * @return         its slot, or ABSENT if it is not in the queue
+   */
+  private int slotOf (int element)
+  {
+    if (element < 0 || element >= positions.length)
+      return ABSENT;
+
+    return positions[element];
+  }
+
+  /**
+   * Returns true if the element at slot a should leave the queue before
+   * the element at slot b.
+   */
+  private boolean before (int a, int b)
+  {
+    if (priorities[a] != priorities[b])
+      return priorities[a] > priorities[b];
+
+    return orders[a] < orders[b];
+  }
+
+  /**
+   * Moves the element at a slot up towards the root until its parent
+   * comes before it.
+   *
+   * @param slot  the slot of the element
+   */
+  private void siftUp (int slot)
+  {
+    int element = heap[slot];
+    int priority = priorities[slot];
+    long order = orders[slot];
+
+    while (slot > 0)
+    {
+      int parent = (slot - 1) >>> 1;
+      if (priorities[parent] > priority
+          || (priorities[parent] == priority && orders[parent] < order))
+        break;
+
+      move(parent, slot);
+      slot = parent;
+    }
+
+    heap[slot] = element;
+    priorities[slot] = priority;
+    orders[slot] = order;
+    positions[element] = slot;
+  }
+
+  /**
+   * Moves the element at a slot down towards the leaves until it comes
+   * before both of its children.
+   *
+   * @param slot  the slot of the element
+   */
+  private void siftDown (int slot)
+  {
+    while (true)
+    {
+      int child = 2 * slot + 1;
+      if (child >= count)
+        return;
+
+      if (child + 1 < count && before(child + 1, child))
+        child++;
+      if (!before(child, slot))
+        return;
+
+      swap(slot, child);
+      slot = child;
+    }
+  }
+
+  /**
+   * Copies the element at one slot into another.
+   */
+  private void move (int from, int to)
+  {
+    heap[to] = heap[from];
+    priorities[to] = priorities[from];
+    orders[to] = orders[from];
+    positions[heap[to]] = to;
+  }
+
+  /**
+   * Exchanges the elements at two slots.
+   */
+  private void swap (int a, int b)
+  {
+    int element = heap[a];
+    int priority = priorities[a];
+    long order = orders[a];
+
+    move(b, a);
+
+    heap[b] = element;
+    priorities[b] = priority;
+    orders[b] = order;
+    positions[element] = b;
+  }
+
+  /**
+   * Creates new arrays to store the contents of this queue with twice
+   * the capacity of the old ones.
+   */
+  private void expandCapacity()
+  {
+    heap = Arrays.copyOf(heap, heap.length * 2);
+    priorities = Arrays.copyOf(priorities, priorities.length * 2);
+    orders = Arrays.copyOf(orders, orders.length * 2);
+  }
+}
@@ -0,0 +1,146 @@
+package com.resong.crawler.structures.queue;
+
+import com.resong.crawler.exceptions.*;
+/**
+ * IntCircularArrayQueue represents a circular array queue of primitive
+ * ints. It works like CircularArrayQueue, but keeps its elements in an
+ * int array, so an element costs four bytes instead of a reference to a
+ * separate object.
+ */
+
+public class IntCircularArrayQueue implements IntQueueADT
+{
+  private final int DEFAULT_CAPACITY = 100;
+  private int front, rear, count;
+  private int[] queue;
+
+  /**
+   * Creates an empty queue using the default capacity.
+   */
+  public IntCircularArrayQueue()
+  {
+    front = rear = count = 0;
+    queue = new int[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Creates an empty queue using the specified capacity.
+   *
+   * @param initialCapacity  the integer representation of the initial
+   *                         size of the circular array queue
+   */
+  public IntCircularArrayQueue (int initialCapacity)
+  {
+    front = rear = count = 0;
+    queue = new int[Math.max(1, initialCapacity)];
+  }
+
+  /**
+   * Adds the specified element to the rear of this queue, expanding
+   * the capacity of the queue array if necessary.
+   *
+   * @param element  the element to add to the rear of the queue
+   */
+  public void enqueue (int element)
+  {
+    if (size() == queue.length)
+      expandCapacity();
+
+    queue[rear] = element;
+    rear = (rear+1) % queue.length;
+
+    count++;
+  }
+
+  /**
+   * Removes the element at the front of this queue and returns it.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the element at the front of the queue
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public int dequeue() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("queue");
+
+    int result = queue[front];
+    front = (front+1) % queue.length;
+
+    count--;
+
+    return result;
+  }
+
+  /**
+   * Returns the element at the front of this queue without removing it.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the first element in the queue
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public int first() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException("queue");
+
+    return queue[front];
+  }
+
+  /**
+   * Returns true if this queue is empty and false otherwise.
+   *
+   * @return  returns true if this queue is empty and false if otherwise
+   */
+  public boolean isEmpty()
+  {
+    return (count == 0);
+  }
+
+  /**
+   * Returns the number of elements currently in this queue.
+   *
+   * @return  the integer representation of the size of this queue
+   */
+  public int size()
+  {
+    return count;
+  }
+
+  /**
+   * Returns a string representation of this queue.
+   *
+   * @return  the string representation of this queue
+   */
+  public String toString()
+  {
+    StringBuilder result = new StringBuilder();
+    int scan = front;
+
+    for (int i = 0; i < count; i++)
+    {
+      result.append(queue[scan]).append("\n");
+      scan = (scan+1) % queue.length;
+    }
+    return result.toString();
+  }
+
+  /**
+   * Creates a new array to store the contents of this queue with
+   * twice the capacity of the old one.
+   */
+  public void expandCapacity()
+  {
+    int[] larger = new int[queue.length *2];
+
+    for(int scan=0; scan < count; scan++)
+    {
+      larger[scan] = queue[front];
+      front=(front+1) % queue.length;
+    }
+
+    front = 0;
+    rear = count;
+    queue = larger;
+  }
+}
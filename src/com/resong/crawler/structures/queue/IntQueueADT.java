@@ -0,0 +1,52 @@
+package com.resong.crawler.structures.queue;
+
+/**
+ * IntQueueADT defines the interface to a queue collection of primitive
+ * ints, like QueueADT but without boxing each element.
+ */
+
+public interface IntQueueADT
+{
+
+   /**
+    * Adds one element to the rear of this queue.
+    *
+    * @param element  the element to be added to the rear of this queue
+    */
+   public void enqueue (int element);
+
+   /**
+    * Removes and returns the element at the front of this queue.
+    *
+    * @return  the element at the front of this queue
+    */
+   public int dequeue();
+
+   /**
+    * Returns without removing the element at the front of this queue.
+    *
+    * @return  the first element in this queue
+    */
+   public int first();
+
+   /**
+    * Returns true if this queue contains no elements.
+    *
+    * @return  true if this queue is empty
+    */
+   public boolean isEmpty();
+
+   /**
+    * Returns the number of elements in this queue.
+    *
+    * @return  the integer representation of the size of this queue
+    */
+   public int size();
+
+   /**
+    * Returns a string representation of this queue.
+    *
+    * @return  the string representation of this queue
+    */
+   public String toString();
+}
@@ -0,0 +1,318 @@
+package com.resong.crawler.structures.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+import com.resong.crawler.exceptions.*;
+/**
+ * SpillingIntQueue represents a queue of primitive ints that can grow far
+ * beyond the heap. Only two blocks of elements are kept in memory: the
+ * head block, which dequeue reads from, and the tail block, which enqueue
+ * writes to. When the tail block fills up while older elements are still
+ * waiting, it is written to a memory-mapped segment file; when the head
+ * block runs out, the oldest segment is read back into it. A segment that
+ * has been read back is recycled for the next block written out, so the
+ * queue never copies more than one block at a time and keeps only as
+ * many files as it has blocks waiting.
+ *
+ * Segment files are created in a directory given when the queue is made,
+ * and deleted whenever the queue becomes empty or is closed.
+ */
+
+public class SpillingIntQueue implements IntQueueADT, Closeable
+{
+  private final int DEFAULT_BLOCK_SIZE = 1 << 20;
+  private final int SPARE_SEGMENTS = 2;
+
+  private Path directory;
+  private int blockSize;
+
+  private int[] head;
+  private int headFront, headRear;
+  private int[] tail;
+  private int tailCount;
+
+  private ArrayDeque<Segment> spilled;
+  private ArrayDeque<Segment> spare;
+  private long count;
+
+  /**
+   * Creates an empty queue spilling to the specified directory, using the
+   * default block size of one million elements.
+   *
+   * @param directory  the directory to keep segment files in
+   */
+  public SpillingIntQueue (Path directory)
+  {
+    this(directory, 0);
+  }
+
+  /**
+   * Creates an empty queue spilling to the specified directory.
+   *
+   * @param directory  the directory to keep segment files in
+   * @param blockSize  the number of elements in each block and segment,
+   *                   or 0 for the default
+   */
+  public SpillingIntQueue (Path directory, int blockSize)
+  {
+    this.directory = directory;
+    this.blockSize = (blockSize > 0) ? blockSize : DEFAULT_BLOCK_SIZE;
+
+    head = new int[this.blockSize];
+    tail = new int[this.blockSize];
+    headFront = headRear = tailCount = 0;
+
+    spilled = new ArrayDeque<Segment>();
+    spare = new ArrayDeque<Segment>();
+    count = 0;
+  }
+
+  /**
+   * Adds the specified element to the rear of this queue, writing the
+   * tail block out to a segment first if it is full.
+   *
+   * @param element  the element to add to the rear of the queue
+   * @throws UncheckedIOException  if a segment file cannot be written
+   */
+  public void enqueue (int element)
+  {
+    if (tailCount == blockSize)
+      flushTail();
+
+    tail[tailCount++] = element;
+    count++;
+  }
+
+  /**
+   * Removes the element at the front of this queue and returns it,
+   * reading the next block in first if the head block is used up.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the element at the front of the queue
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   * @throws UncheckedIOException      if a segment file cannot be read
+   */
+  public int dequeue() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("queue");
+
+    if (headFront == headRear)
+      refillHead();
+
+    int result = head[headFront++];
+    count--;
+
+    if (count == 0)
+      releaseFiles();
+
+    return result;
+  }
+
+  /**
+   * Returns the element at the front of this queue without removing it.
+   * Throws an EmptyCollectionException if the queue is empty.
+   *
+   * @return                           the first element in the queue
+   * @throws EmptyCollectionException  if an empty collections exception occurs
+   */
+  public int first() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException ("queue");
+
+    if (headFront == headRear)
+      refillHead();
+
+    return head[headFront];
+  }
+
+  /**
+   * Returns true if this queue is empty and false otherwise.
+   *
+   * @return  returns true if this queue is empty and false if otherwise
+   */
+  public boolean isEmpty()
+  {
+    return (count == 0);
+  }
+
+  /**
+   * Returns the number of elements currently in this queue, or
+   * Integer.MAX_VALUE if there are more.
+   *
+   * @return  the integer representation of the size of this queue
+   */
+  public int size()
+  {
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the number of segments currently holding spilled elements.
+   *
+   * @return  the number of spilled segments
+   */
+  public int spilledSegments()
+  {
+    return spilled.size();
+  }
+
+  /**
+   * Returns a short description of this queue; the elements themselves
+   * may not fit in memory.
+   *
+   * @return  the string representation of this queue
+   */
+  public String toString()
+  {
+    return "SpillingIntQueue of " + count + " elements, " + spilled.size()
+        + " segments spilled to " + directory;
+  }
+
+  /**
+   * Empties this queue and deletes every segment file. The queue stays
+   * usable; later spills create new files.
+   */
+  public void close()
+  {
+    while (!spilled.isEmpty())
+      spare.add(spilled.poll());
+    releaseFiles();
+
+    headFront = headRear = tailCount = 0;
+    count = 0;
+  }
+
+  /**
+   * Makes room in the tail block. If nothing is waiting between the head
+   * and the tail, the tail block simply becomes the head block; otherwise
+   * it is written to a segment behind the ones already spilled.
+   */
+  private void flushTail()
+  {
+    if (headFront == headRear && spilled.isEmpty())
+    {
+      int[] swap = head;
+      head = tail;
+      tail = swap;
+      headFront = 0;
+      headRear = tailCount;
+      tailCount = 0;
+      return;
+    }
+
+    Segment segment = spare.isEmpty() ? newSegment() : spare.poll();
+    segment.ints.clear();
+    segment.ints.put(tail, 0, tailCount);
+    segment.count = tailCount;
+    spilled.add(segment);
+    tailCount = 0;
+  }
+
+  /**
+   * Refills the empty head block from the oldest segment, or from the
+   * tail block if nothing was spilled.
+   */
+  private void refillHead()
+  {
+    Segment segment = spilled.poll();
+
+    if (segment == null)
+    {
+      int[] swap = head;
+      head = tail;
+      tail = swap;
+      headFront = 0;
+      headRear = tailCount;
+      tailCount = 0;
+      return;
+    }
+
+    segment.ints.clear();
+    segment.ints.get(head, 0, segment.count);
+    headFront = 0;
+    headRear = segment.count;
+    spare.add(segment);
+
+    // keep only a few spare segments once the queue has shrunk
+    while (spare.size() > SPARE_SEGMENTS)
+      spare.poll().delete();
+  }
+
+  /**
+   * Deletes the files of all spare segments.
+   */
+  private void releaseFiles()
+  {
+    while (!spare.isEmpty())
+      spare.poll().delete();
+  }
+
+  /**
+   * Creates and maps a new segment file.
+   *
+   * @return  the new segment
+   */
+  private Segment newSegment()
+  {
+    try
+    {
+      Files.createDirectories(directory);
+      Path file = Files.createTempFile(directory, "frontier-", ".seg");
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+      {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) blockSize * Integer.BYTES);
+        return new Segment(file, buffer.asIntBuffer());
+      }
+    }
+    catch (IOException ex)
+    {
+      throw new UncheckedIOException("cannot create frontier segment in " + directory, ex);
+    }
+  }
+
+  /**
+   * One segment file, mapped into memory, holding one block of elements.
+   */
+  private static class Segment
+  {
+    private Path file;
+    private IntBuffer ints;
+    private int count;
+
+    private Segment (Path file, IntBuffer ints)
+    {
+      this.file = file;
+      this.ints = ints;
+      this.count = 0;
+    }
+
+    /**
+     * Deletes the file of this segment. The mapping stays valid until it
+     * is garbage collected, but nothing reads it any more.
+     */
+    private void delete()
+    {
+      ints = null;
+      try
+      {
+        Files.deleteIfExists(file);
+      }
+      catch (IOException ex)
+      {
+        file.toFile().deleteOnExit();
+      }
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package com.resong.crawler.structures.set;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BloomFilterSet represents a probabilistic set of strings stored in a
+ * fixed-size bit array outside the Java heap. It never reports that an
+ * added string is missing, but may report, with a small configurable
+ * probability, that a string is present when it was never added. In
+ * return each element costs only a handful of bits, whatever its length.
+ * Bits are set atomically, so the set may be shared by several threads.
+ */
+
+public class BloomFilterSet implements SetADT<String>
+{
+  private final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+  private final int MAX_WORDS = (Integer.MAX_VALUE - 8) / 8;
+
+  private static final VarHandle WORD =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private ByteBuffer bits;
+  private long numBits;
+  private int numHashes;
+  private LongAdder bitsSet;
+  private LongAdder count;
+
+  /**
+   * Creates an empty filter sized for the specified number of elements
+   * at the default false positive rate of one percent.
+   *
+   * @param expectedElements  the number of elements expected in the set
+   */
+  public BloomFilterSet (long expectedElements)
+  {
+    init(expectedElements, DEFAULT_FALSE_POSITIVE_RATE);
+  }
+
+  /**
+   * Creates an empty filter sized so that, once it holds the specified
+   * number of elements, lookups of absent elements wrongly succeed at
+   * roughly the specified rate.
+   *
+   * @param expectedElements   the number of elements expected in the set
+   * @param falsePositiveRate  the acceptable false positive rate, between
+   *                           0 and 1 exclusive
+   */
+  public BloomFilterSet (long expectedElements, double falsePositiveRate)
+  {
+    init(expectedElements, falsePositiveRate);
+  }
+
+  /**
+   * Adds the specified string to this set.
+   *
+   * @param element  the string to be added to this set
+   * @return         true if the string was added, false if it was already
+   *                 in this set or collides with strings already added
+   */
+  public boolean add (String element)
+  {
+    return addHash(hash(element));
+  }
+
+  /**
+   * Adds a string to this set by its hash, as returned by hash, for
+   * callers that can work out the hash without building the string.
+   *
+   * @param h1  the 64 bit hash of the string to be added
+   * @return    true if the string was added, false if it was already in
+   *            this set or collides with strings already added
+   */
+  public boolean addHash (long h1)
+  {
+    long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+    boolean added = false;
+
+    for (int i = 0; i < numHashes; i++)
+    {
+      long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+      long mask = 1L << (bit & 63);
+      long old = (long) WORD.getAndBitwiseOr(bits, (int) (bit >>> 6) << 3, mask);
+
+      if ((old & mask) == 0)
+      {
+        bitsSet.increment();
+        added = true;
+      }
+    }
+
+    if (added)
+      count.increment();
+
+    return added;
+  }
+
+  /**
+   * Returns true if this set probably contains the specified string.
+   *
+   * @param element  the string to look for
+   * @return         true if the string may have been added, false if it
+   *                 definitely was not
+   */
+  public boolean contains (String element)
+  {
+    return containsHash(hash(element));
+  }
+
+  /**
+   * Returns true if this set probably contains the string with the
+   * specified hash, as returned by hash.
+   *
+   * @param h1  the 64 bit hash of the string to look for
+   * @return    true if the string may have been added, false if it
+   *            definitely was not
+   */
+  public boolean containsHash (long h1)
+  {
+    long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+
+    for (int i = 0; i < numHashes; i++)
+    {
+      long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+      long word = (long) WORD.getVolatile(bits, (int) (bit >>> 6) << 3);
+
+      if ((word & (1L << (bit & 63))) == 0)
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns true if nothing has been added to this set.
+   *
+   * @return  true if this set is empty
+   */
+  public boolean isEmpty()
+  {
+    return (count.sum() == 0);
+  }
+
+  /**
+   * Returns the number of strings added to this set, not counting those
+   * that collided with earlier strings.
+   *
+   * @return  the approximate number of elements in this set
+   */
+  public int size()
+  {
+    return (int) Math.min(count.sum(), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the fraction of bits in the filter that are set.
+   *
+   * @return  the fill ratio, between 0 and 1
+   */
+  public double getFillRatio()
+  {
+    return (double) bitsSet.sum() / numBits;
+  }
+
+  /**
+   * Returns the probability that a lookup of a string that was never
+   * added currently succeeds, estimated from the fill ratio.
+   *
+   * @return  the estimated false positive rate, between 0 and 1
+   */
+  public double getFalsePositiveRate()
+  {
+    return Math.pow(getFillRatio(), numHashes);
+  }
+
+  /**
+   * Returns the number of bytes of memory used by the bit array.
+   *
+   * @return  the size of the filter in bytes
+   */
+  public long getSizeInBytes()
+  {
+    return bits.capacity();
+  }
+
+  /**
+   * Returns a string representation of this set. The elements themselves
+   * are not stored, so only the filter's statistics can be shown.
+   *
+   * @return  the string representation of this set
+   */
+  public String toString()
+  {
+    return "BloomFilterSet[size=" + size() + ", bits=" + numBits
+        + ", hashes=" + numHashes + ", fill=" + getFillRatio()
+        + ", fpp=" + getFalsePositiveRate() + "]";
+  }
+
+  /**
+   * Sizes and allocates the bit array of an empty filter.
+   *
+   * @param expectedElements   the number of elements expected in the set
+   * @param falsePositiveRate  the acceptable false positive rate
+   */
+  private void init (long expectedElements, double falsePositiveRate)
+  {
+    if (expectedElements < 1)
+      throw new IllegalArgumentException("expected elements must be positive");
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+      throw new IllegalArgumentException("false positive rate must be between 0 and 1");
+
+    // optimal number of bits and hash functions for n elements at rate p
+    double ln2 = Math.log(2);
+    double optimalBits = -expectedElements * Math.log(falsePositiveRate) / (ln2 * ln2);
+    long words = Math.max(1, Math.min(MAX_WORDS, (long) Math.ceil(optimalBits / 64)));
+
+    numBits = words * 64;
+    numHashes = (int) Math.max(1, Math.round((double) numBits / expectedElements * ln2));
+
+    // over-allocate so the words can be aligned for atomic access
+    bits = ByteBuffer.allocateDirect((int) (words * 8) + 8).alignedSlice(8);
+    bitsSet = new LongAdder();
+    count = new LongAdder();
+  }
+
+  /**
+   * Returns a 64 bit hash of the characters of a string. String.hashCode
+   * has only 32 bits, too few to derive independent bit positions for a
+   * filter holding many millions of elements.
+   *
+   * @param element  the string to hash
+   * @return         the 64 bit hash
+   */
+  public static long hash (String element)
+  {
+    long h = 0xcbf29ce484222325L;
+
+    for (int i = 0; i < element.length(); i++)
+    {
+      h ^= element.charAt(i);
+      h *= 0x100000001b3L;
+    }
+
+    return mix(h);
+  }
+
+  /**
+   * Returns the same 64 bit hash as hash, of a string made only of ASCII
+   * characters given as one byte each, without building the string.
+   *
+   * @param chars   the bytes holding the characters
+   * @param offset  the index of the first character
+   * @param length  the number of characters
+   * @return        the 64 bit hash
+   */
+  public static long hashAscii (byte[] chars, int offset, int length)
+  {
+    long h = 0xcbf29ce484222325L;
+
+    for (int i = offset; i < offset + length; i++)
+    {
+      h ^= chars[i];
+      h *= 0x100000001b3L;
+    }
+
+    return mix(h);
+  }
+
+  /**
+   * Scrambles the bits of a 64 bit value.
+   *
+   * @param h  the value to scramble
+   * @return   the scrambled value
+   */
+  private static long mix (long h)
+  {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+
+    return h;
+  }
+}
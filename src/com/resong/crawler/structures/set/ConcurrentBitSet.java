@@ -0,0 +1,207 @@
+package com.resong.crawler.structures.set;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ConcurrentBitSet represents a set of small non-negative ints, such as
+ * dense ids, as one bit per possible element. It may be shared by several
+ * threads: bits are set with compare-and-set, so adding and looking up
+ * elements never takes a lock. The bits are kept in fixed-size segments
+ * that are created the first time an element in their range is added, so
+ * the set grows without ever copying bits.
+ */
+
+public class ConcurrentBitSet
+{
+  /** number of bits in a segment is 1 << SEGMENT_SHIFT */
+  private final int SEGMENT_SHIFT = 16;
+  private final int WORDS_PER_SEGMENT = (1 << SEGMENT_SHIFT) / Long.SIZE;
+
+  private volatile AtomicLongArray[] segments;
+  private AtomicInteger count;
+
+  /**
+   * Creates an empty set.
+   */
+  public ConcurrentBitSet()
+  {
+    segments = new AtomicLongArray[0];
+    count = new AtomicInteger(0);
+  }
+
+  /**
+   * Adds the specified element to this set if it is not already present.
+   *
+   * @param element  the element to be added to this set
+   * @return         true if the element was added, false if it was
+   *                 already in this set
+   * @throws IllegalArgumentException  if the element is negative
+   */
+  public boolean add (int element)
+  {
+    if (element < 0)
+      throw new IllegalArgumentException("negative element " + element);
+
+    AtomicLongArray segment = segmentFor(element);
+    int word = (element >>> 6) & (WORDS_PER_SEGMENT - 1);
+    long bit = 1L << element;
+
+    while (true)
+    {
+      long old = segment.get(word);
+      if ((old & bit) != 0)
+        return false;
+      if (segment.compareAndSet(word, old, old | bit))
+      {
+        count.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Removes the specified element from this set if it is present.
+   *
+   * @param element  the element to remove
+   * @return         true if the element was removed, false if it was
+   *                 not in this set
+   */
+  public boolean remove (int element)
+  {
+    AtomicLongArray segment = existingSegment(element);
+    if (segment == null)
+      return false;
+
+    int word = (element >>> 6) & (WORDS_PER_SEGMENT - 1);
+    long bit = 1L << element;
+
+    while (true)
+    {
+      long old = segment.get(word);
+      if ((old & bit) == 0)
+        return false;
+      if (segment.compareAndSet(word, old, old & ~bit))
+      {
+        count.decrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns true if this set contains the specified element. Negative
+   * elements are never in the set.
+   *
+   * @param element  the element to look for
+   * @return         true if the element is in this set
+   */
+  public boolean contains (int element)
+  {
+    AtomicLongArray segment = existingSegment(element);
+    if (segment == null)
+      return false;
+
+    int word = (element >>> 6) & (WORDS_PER_SEGMENT - 1);
+    return (segment.get(word) & (1L << element)) != 0;
+  }
+
+  /**
+   * Returns true if this set is empty and false otherwise.
+   *
+   * @return  true if this set is empty
+   */
+  public boolean isEmpty()
+  {
+    return (size() == 0);
+  }
+
+  /**
+   * Returns the number of elements currently in this set.
+   *
+   * @return  the integer representation of the size of this set
+   */
+  public int size()
+  {
+    return count.get();
+  }
+
+  /**
+   * Returns a string representation of this set, in increasing order.
+   *
+   * @return  the string representation of this set
+   */
+  public String toString()
+  {
+    StringBuilder result = new StringBuilder();
+    AtomicLongArray[] current = segments;
+
+    for (int s = 0; s < current.length; s++)
+    {
+      if (current[s] == null)
+        continue;
+
+      for (int w = 0; w < WORDS_PER_SEGMENT; w++)
+      {
+        long bits = current[s].get(w);
+        while (bits != 0)
+        {
+          int element = (s << SEGMENT_SHIFT) + (w << 6) + Long.numberOfTrailingZeros(bits);
+          result.append(element).append("\n");
+          bits &= bits - 1;
+        }
+      }
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the segment holding the bit of an element, if it exists.
+   *
+   * @param element  the element
+   * @return         its segment, or null if no element of its range
+   *                 has been added
+   */
+  private AtomicLongArray existingSegment (int element)
+  {
+    if (element < 0)
+      return null;
+
+    AtomicLongArray[] current = segments;
+    int index = element >>> SEGMENT_SHIFT;
+
+    return (index < current.length) ? current[index] : null;
+  }
+
+  /**
+   * Returns the segment holding the bit of an element, creating it if
+   * necessary. A new segments array is published whenever a segment is
+   * created, so threads reading the old array never see a half-made one.
+   *
+   * @param element  the element
+   * @return         its segment
+   */
+  private AtomicLongArray segmentFor (int element)
+  {
+    AtomicLongArray segment = existingSegment(element);
+    if (segment != null)
+      return segment;
+
+    synchronized (this)
+    {
+      AtomicLongArray[] current = segments;
+      int index = element >>> SEGMENT_SHIFT;
+
+      if (index < current.length && current[index] != null)
+        return current[index];
+
+      AtomicLongArray[] larger = Arrays.copyOf(current, Math.max(current.length, index + 1));
+      larger[index] = new AtomicLongArray(WORDS_PER_SEGMENT);
+      segments = larger;
+
+      return larger[index];
+    }
+  }
+}
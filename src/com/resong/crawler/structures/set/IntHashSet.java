@@ -0,0 +1,180 @@
+package com.resong.crawler.structures.set;
+
+import java.util.Arrays;
+
+/**
+ * IntHashSet represents a hash table implementation of a set of
+ * primitive ints. Elements are kept in an open-addressed int array using
+ * linear probing, so adding an element allocates nothing. It is not safe
+ * for use by several threads at once.
+ */
+
+public class IntHashSet
+{
+  private final int DEFAULT_CAPACITY = 16;
+
+  /** marks a free slot; the element equal to it is tracked separately */
+  private final int FREE = 0;
+
+  private int[] table;
+  private int count;
+  private boolean hasFree;
+
+  /**
+   * Creates an empty set using the default capacity.
+   */
+  public IntHashSet()
+  {
+    table = new int[DEFAULT_CAPACITY];
+    count = 0;
+    hasFree = false;
+  }
+
+  /**
+   * Adds the specified element to this set if it is not already present.
+   *
+   * @param element  the element to be added to this set
+   * @return         true if the element was added, false if it was
+   *                 already in this set
+   */
+  public boolean add (int element)
+  {
+    if (element == FREE)
+    {
+      if (hasFree)
+        return false;
+      hasFree = true;
+      count++;
+      return true;
+    }
+
+    int mask = table.length - 1;
+    int slot = hash(element) & mask;
+
+    while (table[slot] != FREE)
+    {
+      if (table[slot] == element)
+        return false;
+      slot = (slot + 1) & mask;
+    }
+
+    table[slot] = element;
+    count++;
+
+    // keep the table at most half full
+    if (count * 2 > table.length)
+      expandCapacity();
+
+    return true;
+  }
+
+  /**
+   * Returns true if this set contains the specified element.
+   *
+   * @param element  the element to look for
+   * @return         true if the element is in this set
+   */
+  public boolean contains (int element)
+  {
+    if (element == FREE)
+      return hasFree;
+
+    int mask = table.length - 1;
+    int slot = hash(element) & mask;
+
+    while (table[slot] != FREE)
+    {
+      if (table[slot] == element)
+        return true;
+      slot = (slot + 1) & mask;
+    }
+
+    return false;
+  }
+
+  /**
+   * Removes every element from this set, keeping its capacity.
+   */
+  public void clear()
+  {
+    if (count > 0)
+      Arrays.fill(table, FREE);
+    count = 0;
+    hasFree = false;
+  }
+
+  /**
+   * Returns true if this set is empty and false otherwise.
+   *
+   * @return  true if this set is empty
+   */
+  public boolean isEmpty()
+  {
+    return (count == 0);
+  }
+
+  /**
+   * Returns the number of elements currently in this set.
+   *
+   * @return  the integer representation of the size of this set
+   */
+  public int size()
+  {
+    return count;
+  }
+
+  /**
+   * Returns a string representation of this set.
+   *
+   * @return  the string representation of this set
+   */
+  public String toString()
+  {
+    StringBuilder result = new StringBuilder();
+
+    if (hasFree)
+      result.append(FREE).append("\n");
+
+    for (int element : table)
+    {
+      if (element != FREE)
+        result.append(element).append("\n");
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Spreads the bits of an element, so that runs of consecutive
+   * elements don't fill runs of consecutive slots.
+   *
+   * @param element  the element to hash
+   * @return         the hash of the element
+   */
+  private int hash (int element)
+  {
+    int h = element * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Moves the elements into a table twice the size of the current one.
+   */
+  private void expandCapacity()
+  {
+    int[] old = table;
+    table = new int[old.length * 2];
+    int mask = table.length - 1;
+
+    for (int element : old)
+    {
+      if (element != FREE)
+      {
+        int slot = hash(element) & mask;
+        while (table[slot] != FREE)
+          slot = (slot + 1) & mask;
+        table[slot] = element;
+      }
+    }
+  }
+}
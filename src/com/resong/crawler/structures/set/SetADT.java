@@ -0,0 +1,49 @@
+package com.resong.crawler.structures.set;
+
+/**
+ * SetADT defines the interface to a set collection, in which each
+ * element is stored at most once.
+ */
+
+public interface SetADT<T>
+{
+
+   /**
+    * Adds the specified element to this set if it is not already
+    * present.
+    *
+    * @param element  the element to be added to this set
+    * @return         true if the element was added, false if it was
+    *                 already in this set
+    */
+   public boolean add (T element);
+
+   /**
+    * Returns true if this set contains the specified element.
+    *
+    * @param element  the element to look for
+    * @return         true if the element is in this set
+    */
+   public boolean contains (T element);
+
+   /**
+    * Returns true if this set contains no elements.
+    *
+    * @return  true if this set is empty
+    */
+   public boolean isEmpty();
+
+   /**
+    * Returns the number of elements in this set.
+    *
+    * @return  the integer representation of the size of this set
+    */
+   public int size();
+
+   /**
+    * Returns a string representation of this set.
+    *
+    * @return  the string representation of this set
+    */
+   public String toString();
+}
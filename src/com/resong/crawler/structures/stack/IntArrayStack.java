@@ -0,0 +1,124 @@
+package com.resong.crawler.structures.stack;
+
+import com.resong.crawler.exceptions.*;
+
+/**
+ *  Represents an array implementation of a stack of primitive ints. It
+ *  is used like LinkedStack, but an element costs four bytes in a
+ *  growing array instead of a separate node object.
+ */
+
+public class IntArrayStack
+{
+  private final int DEFAULT_CAPACITY = 100;
+
+  /** indicates number of elements stored, and the next free index */
+  private int top;
+  /** array holding the elements, bottom first */
+  private int[] stack;
+
+  /**
+   * Creates an empty stack using the default capacity.
+   */
+  public IntArrayStack()
+  {
+    top = 0;
+    stack = new int[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Creates an empty stack using the specified capacity.
+   * @param initialCapacity the initial size of the stack array
+   */
+  public IntArrayStack (int initialCapacity)
+  {
+    top = 0;
+    stack = new int[Math.max(1, initialCapacity)];
+  }
+
+  /**
+   * Adds the specified element to the top of this stack, expanding the
+   * capacity of the stack array if necessary.
+   * @param element element to be pushed on stack
+   */
+  public void push (int element)
+  {
+    if (top == stack.length)
+      expandCapacity();
+
+    stack[top] = element;
+    top++;
+  }
+
+  /**
+   * Removes the element at the top of this stack and returns it. Throws
+   * an EmptyCollectionException if the stack is empty.
+   * @return int element from top of stack
+   * @throws EmptyCollectionException on pop from empty stack
+   */
+  public int pop() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException("Stack");
+
+    top--;
+    return stack[top];
+  }
+
+  /**
+   * Returns the element at the top of this stack without removing it.
+   * Throws an EmptyCollectionException if the stack is empty.
+   * @return int element on top of stack
+   * @throws EmptyCollectionException on peek at empty stack
+   */
+  public int peek() throws EmptyCollectionException
+  {
+    if (isEmpty())
+      throw new EmptyCollectionException("Stack");
+
+    return stack[top-1];
+  }
+
+  /**
+   * Returns true if this stack is empty and false otherwise.
+   * @return boolean true if stack is empty
+   */
+  public boolean isEmpty()
+  {
+    return (top == 0);
+  }
+
+  /**
+   * Returns the number of elements in this stack.
+   * @return int number of elements in this stack
+   */
+  public int size()
+  {
+    return top;
+  }
+
+  /**
+   * Returns a string representation of this stack, top first.
+   * @return String representation of this stack
+   */
+  public String toString()
+  {
+    StringBuilder result = new StringBuilder();
+
+    for (int scan = top-1; scan >= 0; scan--)
+      result.append(stack[scan]).append("\n");
+
+    return result.toString();
+  }
+
+  /**
+   * Creates a new array to store the contents of this stack with twice
+   * the capacity of the old one.
+   */
+  private void expandCapacity()
+  {
+    int[] larger = new int[stack.length * 2];
+    System.arraycopy(stack, 0, larger, 0, top);
+    stack = larger;
+  }
+}
@@ -0,0 +1,208 @@
+package com.resong.crawler.structures.stack;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.resong.crawler.exceptions.*;
+
+/**
+ *  Represents a circular array implementation of a stack of primitive
+ *  longs that other threads may steal from. The owning thread pushes and
+ *  pops at the top like any stack, while idle threads take the oldest
+ *  element from the bottom. No locks are taken: the owner only competes
+ *  with thieves for the last element, and thieves with each other for
+ *  the bottom one, which is settled by compare-and-set on the bottom
+ *  index (the Chase-Lev work-stealing deque).
+ *
+ *  Only the owning thread may call push, pop and tryPop. Any thread may
+ *  call steal, isEmpty and size. EMPTY may not be pushed, as it is what
+ *  tryPop and steal return when there is nothing to take.
+ */
+
+public class WorkStealingStack
+{
+  /** value returned by tryPop and steal when the stack is empty */
+  public static final long EMPTY = Long.MIN_VALUE;
+
+  private final int DEFAULT_CAPACITY = 64;
+
+  /** index of the bottom (oldest) element, only ever increased */
+  private final AtomicLong bottom;
+  /** index one past the top element */
+  private volatile long top;
+  /** array holding the elements at their index modulo its length */
+  private volatile long[] stack;
+
+  /**
+   * Creates an empty stack using the default capacity.
+   */
+  public WorkStealingStack()
+  {
+    this(0);
+  }
+
+  /**
+   * Creates an empty stack using the specified capacity, rounded up to
+   * a power of two.
+   * @param initialCapacity initial size of the array, or 0 for the default
+   */
+  public WorkStealingStack (int initialCapacity)
+  {
+    int capacity = (initialCapacity > 0) ? initialCapacity : DEFAULT_CAPACITY;
+
+    bottom = new AtomicLong(0);
+    top = 0;
+    stack = new long[Math.max(2, Integer.highestOneBit(capacity - 1) << 1)];
+  }
+
+  /**
+   * Adds the specified element to the top of this stack, expanding the
+   * capacity of the array if necessary. Only the owner may push.
+   * @param element element to be pushed on stack
+   */
+  public void push (long element)
+  {
+    long t = top;
+    long[] array = stack;
+
+    if (t - bottom.get() >= array.length)
+      array = expandCapacity(t);
+
+    array[(int) t & (array.length - 1)] = element;
+    top = t + 1;
+  }
+
+  /**
+   * Removes the element at the top of this stack and returns it. Throws
+   * an EmptyCollectionException if the stack is empty. Only the owner
+   * may pop.
+   * @return long element from top of stack
+   * @throws EmptyCollectionException on pop from empty stack
+   */
+  public long pop() throws EmptyCollectionException
+  {
+    long result = tryPop();
+
+    if (result == EMPTY)
+      throw new EmptyCollectionException("Stack");
+
+    return result;
+  }
+
+  /**
+   * Removes and returns the element at the top of this stack, or
+   * returns EMPTY if the stack is empty. Only the owner may pop.
+   * @return long element from top of stack, or EMPTY
+   */
+  public long tryPop()
+  {
+    long t = top - 1;
+    long[] array = stack;
+
+    // claim the top element before looking at the bottom, so a thief
+    // that has not yet seen the claim sees it before taking it
+
+    top = t;
+    long b = bottom.get();
+
+    if (b > t)
+    {
+      top = t + 1;
+      return EMPTY;
+    }
+
+    long result = array[(int) t & (array.length - 1)];
+
+    // the last element may be stolen at the same time; whoever moves
+    // the bottom index past it first gets it
+
+    if (b == t)
+    {
+      if (!bottom.compareAndSet(b, b + 1))
+        result = EMPTY;
+      top = t + 1;
+    }
+
+    return result;
+  }
+
+  /**
+   * Removes and returns the element at the bottom of this stack, the one
+   * that has waited longest, or returns EMPTY if the stack is empty.
+   * Meant to be called by threads other than the owner.
+   * @return long element from bottom of stack, or EMPTY
+   */
+  public long steal()
+  {
+    while (true)
+    {
+      long b = bottom.get();
+      long t = top;
+
+      if (b >= t)
+        return EMPTY;
+
+      long[] array = stack;
+      long result = array[(int) b & (array.length - 1)];
+
+      if (bottom.compareAndSet(b, b + 1))
+        return result;
+    }
+  }
+
+  /**
+   * Returns true if this stack is empty and false otherwise.
+   * @return boolean true if stack is empty
+   */
+  public boolean isEmpty()
+  {
+    return (size() == 0);
+  }
+
+  /**
+   * Returns the number of elements in this stack. While other threads
+   * push, pop or steal, the number may already be out of date.
+   * @return int number of elements in this stack
+   */
+  public int size()
+  {
+    long b = bottom.get();
+    long t = top;
+
+    return (int) Math.max(0, t - b);
+  }
+
+  /**
+   * Returns a string representation of this stack, from top to bottom.
+   * Only meant to be called while no other thread is using the stack.
+   * @return String representation of this stack
+   */
+  public String toString()
+  {
+    String result = "";
+    long[] array = stack;
+
+    for (long scan = top - 1; scan >= bottom.get(); scan--)
+      result = result + array[(int) scan & (array.length - 1)] + "\n";
+
+    return result;
+  }
+
+  /**
+   * Creates a new array to store the contents of this stack with
+   * twice the capacity of the old one. Elements keep their index, so
+   * thieves reading the old array still find the right element.
+   * @param t index one past the top element
+   * @return the new array
+   */
+  private long[] expandCapacity (long t)
+  {
+    long[] old = stack;
+    long[] larger = new long[old.length * 2];
+
+    for (long scan = bottom.get(); scan < t; scan++)
+      larger[(int) scan & (larger.length - 1)] = old[(int) scan & (old.length - 1)];
+
+    stack = larger;
+    return larger;
+  }
+}